@@ -0,0 +1,108 @@
+package com.oakfusion.router.load;
+
+/**
+ * Log-linear histogram of latencies in nanoseconds: values below 64 are
+ * counted exactly, larger ones in 64 sub-buckets per power of two, which keeps
+ * the relative error under 2%. Not thread safe; each load thread records into
+ * its own histogram and they are merged at the end.
+ */
+final class LatencyHistogram {
+
+	private static final int SUB_BUCKETS = 64;
+	private static final int SUB_BUCKET_BITS = 6;
+
+	private final long[] counts = new long[SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS];
+	private long total;
+	private long max;
+
+	void record(long value) {
+		counts[indexOf(value)]++;
+		total++;
+		max = Math.max(max, value);
+	}
+
+	/**
+	 * Records {@code value}, plus the samples a closed-loop client would have
+	 * missed while it was stalled for longer than {@code expectedInterval}.
+	 */
+	void recordCorrected(long value, long expectedInterval) {
+		record(value);
+		if (expectedInterval <= 0) {
+			return;
+		}
+		for (long missing = value - expectedInterval; missing >= expectedInterval; missing -= expectedInterval) {
+			record(missing);
+		}
+	}
+
+	/**
+	 * Copy with {@link #recordCorrected(long, long)} applied to every value
+	 * recorded here.
+	 */
+	LatencyHistogram copyCorrected(long expectedInterval) {
+		LatencyHistogram copy = new LatencyHistogram();
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] == 0) {
+				continue;
+			}
+			long value = Math.min(max, highestValueOf(i));
+			for (long n = 0; n < counts[i]; n++) {
+				copy.recordCorrected(value, expectedInterval);
+			}
+		}
+		return copy;
+	}
+
+	void add(LatencyHistogram other) {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] += other.counts[i];
+		}
+		total += other.total;
+		max = Math.max(max, other.max);
+	}
+
+	long getTotalCount() {
+		return total;
+	}
+
+	long getMax() {
+		return max;
+	}
+
+	/**
+	 * Upper bound of the bucket holding the {@code percentile}-th value.
+	 */
+	long valueAt(double percentile) {
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(max, highestValueOf(i));
+			}
+		}
+		return max;
+	}
+
+	private static int indexOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) Math.max(0, value);
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+		return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + sub;
+	}
+
+	private static long highestValueOf(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int exponent = (index - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+		long sub = (index - SUB_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+		return ((sub + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+
+}
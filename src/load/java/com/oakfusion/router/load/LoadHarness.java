@@ -0,0 +1,221 @@
+package com.oakfusion.router.load;
+
+import com.oakfusion.router.RouteMatch;
+import com.oakfusion.router.Router;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a Zipfian mix of requests against a synthetic route table from
+ * several threads and reports throughput and lookup latency percentiles.
+ *
+ * Each thread issues lookups on a fixed schedule ({@code rate} per second
+ * across all threads) and measures latency from the time a lookup was due,
+ * not from when it was actually issued; a stall therefore counts against every
+ * lookup it delayed instead of hiding them (coordinated omission). Service
+ * times, measured from the actual start, are reported alongside. With a rate
+ * of 0 threads run flat out and the correction falls back to back-filling
+ * samples from the mean interval between lookups.
+ */
+public final class LoadHarness {
+
+	private final Settings settings;
+
+	public LoadHarness(Settings settings) {
+		this.settings = settings;
+	}
+
+	public Report run() throws InterruptedException {
+		RouteTable table = RouteTable.generate(settings.routes, settings.seed);
+		Router router = settings.pathFirst ? new Router().pathFirst() : new Router();
+		table.registerIn(router);
+
+		run(router, table, TimeUnit.SECONDS.toNanos(settings.warmupSeconds));
+		return run(router, table, TimeUnit.SECONDS.toNanos(settings.seconds));
+	}
+
+	private Report run(final Router router, final RouteTable table, final long duration) throws InterruptedException {
+		final ZipfDistribution distribution = new ZipfDistribution(table.size(), settings.skew);
+		final long interval = settings.rate > 0 ? TimeUnit.SECONDS.toNanos(settings.threads) / settings.rate : 0;
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Worker> workers = new ArrayList<>();
+		for (int i = 0; i < settings.threads; i++) {
+			Worker worker = new Worker(router, table, distribution, new Random(settings.seed + i), interval, start,
+					duration);
+			worker.start();
+			workers.add(worker);
+		}
+		start.countDown();
+		Report report = new Report(table.size(), duration);
+		for (Worker worker : workers) {
+			worker.join();
+			report.add(worker);
+		}
+		return report;
+	}
+
+	private static final class Worker extends Thread {
+
+		private final Router router;
+		private final RouteTable table;
+		private final ZipfDistribution distribution;
+		private final Random random;
+		private final long interval;
+		private final CountDownLatch start;
+		private final long duration;
+		private LatencyHistogram latency = new LatencyHistogram();
+		private final LatencyHistogram serviceTime = new LatencyHistogram();
+		private long found;
+
+		Worker(Router router, RouteTable table, ZipfDistribution distribution, Random random, long interval,
+			   CountDownLatch start, long duration) {
+			this.router = router;
+			this.table = table;
+			this.distribution = distribution;
+			this.random = random;
+			this.interval = interval;
+			this.start = start;
+			this.duration = duration;
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			try {
+				start.await();
+			} catch (InterruptedException e) {
+				return;
+			}
+			long begin = System.nanoTime();
+			long end = begin + duration;
+			long due = begin;
+			while (true) {
+				int index = distribution.sample(random);
+				String method = table.methodOf(index);
+				String request = table.requestOf(index);
+				long now = waitUntil(due);
+				if (now >= end) {
+					break;
+				}
+				RouteMatch match = router.match(method, request);
+				long done = System.nanoTime();
+				if (match.isFound()) {
+					found++;
+				}
+				serviceTime.record(done - now);
+				if (interval > 0) {
+					latency.record(done - due);
+					due += interval;
+				} else {
+					due = done;
+				}
+			}
+			if (interval == 0 && serviceTime.getTotalCount() > 0) {
+				latency = serviceTime.copyCorrected((System.nanoTime() - begin) / serviceTime.getTotalCount());
+			}
+		}
+
+		private static long waitUntil(long due) {
+			long now = System.nanoTime();
+			while (now < due) {
+				if (due - now > 50000) {
+					LockSupport.parkNanos(due - now - 50000);
+				}
+				now = System.nanoTime();
+			}
+			return now;
+		}
+
+	}
+
+	public static final class Report {
+
+		private final int routes;
+		private final long duration;
+		private LatencyHistogram latency = new LatencyHistogram();
+		private final LatencyHistogram serviceTime = new LatencyHistogram();
+		private long lookups;
+		private long found;
+
+		Report(int routes, long duration) {
+			this.routes = routes;
+			this.duration = duration;
+		}
+
+		void add(Worker worker) {
+			latency.add(worker.latency);
+			serviceTime.add(worker.serviceTime);
+			lookups += worker.serviceTime.getTotalCount();
+			found += worker.found;
+		}
+
+		public long getLookups() {
+			return lookups;
+		}
+
+		public long getFound() {
+			return found;
+		}
+
+		public double getThroughput() {
+			return lookups / (duration / 1e9);
+		}
+
+		public long getLatency(double percentile) {
+			return latency.valueAt(percentile);
+		}
+
+		public long getServiceTime(double percentile) {
+			return serviceTime.valueAt(percentile);
+		}
+
+		public void print(PrintStream out) {
+			out.printf("routes: %d, lookups: %d (%d found), throughput: %.0f lookups/s%n",
+					routes, lookups, found, getThroughput());
+			out.printf("%-14s %10s %10s %10s %10s%n", "ns", "p50", "p99", "p999", "max");
+			print(out, "latency", latency);
+			print(out, "service time", serviceTime);
+		}
+
+		private static void print(PrintStream out, String name, LatencyHistogram histogram) {
+			out.printf("%-14s %10d %10d %10d %10d%n", name, histogram.valueAt(50), histogram.valueAt(99),
+					histogram.valueAt(99.9), histogram.getMax());
+		}
+
+	}
+
+	/**
+	 * Read from {@code load.*} system properties.
+	 */
+	public static final class Settings {
+
+		final int routes = Integer.getInteger("load.routes", 5000);
+		final int threads = Integer.getInteger("load.threads", Runtime.getRuntime().availableProcessors());
+		final long rate = Long.getLong("load.rate", 200000);
+		final int seconds = Integer.getInteger("load.seconds", 10);
+		final int warmupSeconds = Integer.getInteger("load.warmupSeconds", 5);
+		final double skew = Double.parseDouble(System.getProperty("load.skew", "1.0"));
+		final boolean pathFirst = Boolean.getBoolean("load.pathFirst");
+		final long seed = Long.getLong("load.seed", 42);
+
+		@Override
+		public String toString() {
+			return String.format("routes=%d threads=%d rate=%d/s seconds=%d warmup=%d skew=%.2f pathFirst=%b",
+					routes, threads, rate, seconds, warmupSeconds, skew, pathFirst);
+		}
+
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		Settings settings = new Settings();
+		System.out.println(settings);
+		new LoadHarness(settings).run().print(System.out);
+	}
+
+}
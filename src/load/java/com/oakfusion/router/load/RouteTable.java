@@ -0,0 +1,92 @@
+package com.oakfusion.router.load;
+
+import com.oakfusion.router.Router;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic route table shaped like a REST API: versioned collections and
+ * members, nested sub-resources and a few static endpoints per resource, each
+ * with the methods a REST API would expose. Every route comes with a concrete
+ * request path, parameters filled in with random ids.
+ */
+final class RouteTable {
+
+	private static final String[] VERSIONS = {"v1", "v2", "v3"};
+	private static final String[] SUB_RESOURCES = {"comments", "tags", "attachments", "history"};
+	private static final String[] ACTIONS = {"search", "export", "count"};
+
+	private final List<String> methods = new ArrayList<>();
+	private final List<String> patterns = new ArrayList<>();
+	private final List<String> requests = new ArrayList<>();
+
+	/**
+	 * Builds at least {@code size} routes.
+	 */
+	static RouteTable generate(int size, long seed) {
+		RouteTable table = new RouteTable();
+		Random random = new Random(seed);
+		for (int resource = 0; table.size() < size; resource++) {
+			String version = VERSIONS[resource % VERSIONS.length];
+			String collection = "/api/" + version + "/resource" + resource;
+			table.add(random, "GET", collection);
+			table.add(random, "POST", collection);
+			table.add(random, "GET", collection + "/{id}");
+			table.add(random, "PUT", collection + "/{id}");
+			table.add(random, "DELETE", collection + "/{id}");
+			for (String sub : SUB_RESOURCES) {
+				table.add(random, "GET", collection + "/{id}/" + sub);
+				table.add(random, "POST", collection + "/{id}/" + sub);
+				table.add(random, "GET", collection + "/{id}/" + sub + "/{subId}");
+			}
+			for (String action : ACTIONS) {
+				table.add(random, "GET", collection + "/" + action);
+			}
+		}
+		return table;
+	}
+
+	private void add(Random random, String method, String pattern) {
+		methods.add(method);
+		patterns.add(pattern);
+		StringBuilder request = new StringBuilder();
+		for (String segment : pattern.substring(1).split("/")) {
+			request.append('/');
+			if (segment.startsWith("{")) {
+				request.append(random.nextInt(1000000));
+			} else {
+				request.append(segment);
+			}
+		}
+		requests.add(request.toString());
+	}
+
+	void registerIn(Router router) {
+		for (int i = 0; i < size(); i++) {
+			router.route(patterns.get(i)).when(methods.get(i)).handleIn(LoadController.class).by("handle");
+		}
+	}
+
+	int size() {
+		return patterns.size();
+	}
+
+	String methodOf(int index) {
+		return methods.get(index);
+	}
+
+	String requestOf(int index) {
+		return requests.get(index);
+	}
+
+	public static class LoadController {
+
+		public Object handle() {
+			return null;
+		}
+
+	}
+
+}
@@ -0,0 +1,27 @@
+package com.oakfusion.router.load;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Entry point for {@code mvn -Pload test}; see {@link LoadHarness.Settings}
+ * for the {@code -Dload.*} options.
+ */
+public class RouterLoad {
+
+	@Test
+	public void should_report_lookup_latency_under_load() throws InterruptedException {
+		// given
+		LoadHarness.Settings settings = new LoadHarness.Settings();
+		System.out.println(settings);
+
+		// when
+		LoadHarness.Report report = new LoadHarness(settings).run();
+
+		// then
+		report.print(System.out);
+		assertThat(report.getFound()).isEqualTo(report.getLookups());
+	}
+
+}
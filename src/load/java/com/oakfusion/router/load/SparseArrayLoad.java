@@ -0,0 +1,93 @@
+package com.oakfusion.router.load;
+
+import com.oakfusion.router.util.FrozenSparseArray;
+import com.oakfusion.router.util.FrozenSparseIntArray;
+import com.oakfusion.router.util.SparseArray;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Compares lookups in {@link SparseArray} with its frozen forms over key sets
+ * from a few entries to well beyond the CPU caches; run with
+ * {@code mvn -Pload test -Dtest=SparseArrayLoad}.
+ */
+public class SparseArrayLoad {
+
+	private static final int[] SIZES = {8, 64, 1024, 65536, 1 << 21};
+	private static final int LOOKUPS = Integer.getInteger("load.lookups", 5000000);
+	private static final int ROUNDS = 5;
+
+	private long sink;
+
+	@Test
+	public void should_report_lookup_cost_per_layout() {
+		System.out.printf("%-10s %14s %14s %14s%n", "keys", "binary ns/op", "frozen ns/op", "int ns/op");
+		for (int size : SIZES) {
+			Random random = new Random(size);
+			int[] keys = new int[size];
+			int[] intValues = new int[size];
+			String[] values = new String[size];
+			int key = 0;
+			for (int i = 0; i < size; i++) {
+				key += 1 + random.nextInt(8);
+				keys[i] = key;
+				intValues[i] = i;
+				values[i] = "v" + i;
+			}
+			SparseArray<String> array = new SparseArray<>();
+			array.appendAll(keys, values, size);
+			FrozenSparseArray<String> frozen = array.freeze();
+			FrozenSparseIntArray frozenInts = FrozenSparseIntArray.of(keys, intValues, size);
+			int[] probes = new int[LOOKUPS];
+			for (int i = 0; i < probes.length; i++) {
+				probes[i] = random.nextInt(key + 1);
+			}
+
+			double binary = Double.MAX_VALUE;
+			double eytzinger = Double.MAX_VALUE;
+			double primitive = Double.MAX_VALUE;
+			for (int round = 0; round < ROUNDS; round++) {
+				binary = Math.min(binary, time(array, probes));
+				eytzinger = Math.min(eytzinger, time(frozen, probes));
+				primitive = Math.min(primitive, time(frozenInts, probes));
+			}
+			System.out.printf("%-10d %14.1f %14.1f %14.1f%n", size, binary, eytzinger, primitive);
+		}
+	}
+
+	private double time(SparseArray<String> array, int[] probes) {
+		long start = System.nanoTime();
+		long found = 0;
+		for (int probe : probes) {
+			if (array.get(probe) != null) {
+				found++;
+			}
+		}
+		sink += found;
+		return (System.nanoTime() - start) / (double) probes.length;
+	}
+
+	private double time(FrozenSparseArray<String> array, int[] probes) {
+		long start = System.nanoTime();
+		long found = 0;
+		for (int probe : probes) {
+			if (array.get(probe) != null) {
+				found++;
+			}
+		}
+		sink += found;
+		return (System.nanoTime() - start) / (double) probes.length;
+	}
+
+	private double time(FrozenSparseIntArray array, int[] probes) {
+		long start = System.nanoTime();
+		long found = 0;
+		for (int probe : probes) {
+			found += array.get(probe, 0);
+		}
+		sink += found;
+		return (System.nanoTime() - start) / (double) probes.length;
+	}
+
+}
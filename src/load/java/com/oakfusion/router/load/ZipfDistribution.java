@@ -0,0 +1,32 @@
+package com.oakfusion.router.load;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Ranks {@code 0..n-1} drawn with probability proportional to
+ * {@code 1 / (rank + 1)^exponent}, sampled by binary search over the
+ * precomputed cumulative distribution.
+ */
+final class ZipfDistribution {
+
+	private final double[] cumulative;
+
+	ZipfDistribution(int n, double exponent) {
+		cumulative = new double[n];
+		double sum = 0;
+		for (int i = 0; i < n; i++) {
+			sum += 1 / Math.pow(i + 1, exponent);
+			cumulative[i] = sum;
+		}
+		for (int i = 0; i < n; i++) {
+			cumulative[i] /= sum;
+		}
+	}
+
+	int sample(Random random) {
+		int index = Arrays.binarySearch(cumulative, random.nextDouble());
+		return Math.min(cumulative.length - 1, index < 0 ? -index - 1 : index);
+	}
+
+}
@@ -0,0 +1,132 @@
+package com.oakfusion.router;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission limits of a route: a cap on concurrent invocations and a token
+ * bucket rate, both enforced with lock-free atomics.
+ *
+ * The rate is kept as a generic cell rate algorithm: a single theoretical
+ * arrival time advanced by one emission interval per admitted request, which
+ * is equivalent to a token bucket of {@code burst} tokens refilled at
+ * {@code permitsPerSecond} without a refill task. A request over either limit
+ * is refused straight away instead of waiting.
+ */
+public final class Admission {
+
+	private static final int UNBOUNDED = Integer.MAX_VALUE;
+
+	private final int maxConcurrent;
+	private final long intervalNanos;
+	private final long burstNanos;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+	private final AtomicLong rejected = new AtomicLong();
+
+	private Admission(int maxConcurrent, long intervalNanos, long burstNanos) {
+		this.maxConcurrent = maxConcurrent;
+		this.intervalNanos = intervalNanos;
+		this.burstNanos = burstNanos;
+	}
+
+	/**
+	 * No more than {@code maxConcurrent} invocations at a time.
+	 */
+	public static Admission concurrency(int maxConcurrent) {
+		if (maxConcurrent <= 0) {
+			throw new IllegalArgumentException("maxConcurrent must be positive: " + maxConcurrent);
+		}
+		return new Admission(maxConcurrent, 0, 0);
+	}
+
+	/**
+	 * No more than {@code permitsPerSecond} invocations per second on average,
+	 * with up to {@code burst} admitted at once.
+	 */
+	public static Admission rate(double permitsPerSecond, int burst) {
+		return new Admission(UNBOUNDED, 0, 0).withRate(permitsPerSecond, burst);
+	}
+
+	/**
+	 * Same concurrency cap, with a rate limit added; see {@link #rate(double, int)}.
+	 */
+	public Admission withRate(double permitsPerSecond, int burst) {
+		if (permitsPerSecond <= 0 || burst <= 0) {
+			throw new IllegalArgumentException("rate and burst must be positive");
+		}
+		long interval = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+		return new Admission(maxConcurrent, interval, interval * (burst - 1));
+	}
+
+	/**
+	 * Same rate limit, with a concurrency cap added.
+	 */
+	public Admission withConcurrency(int maxConcurrent) {
+		if (maxConcurrent <= 0) {
+			throw new IllegalArgumentException("maxConcurrent must be positive: " + maxConcurrent);
+		}
+		return new Admission(maxConcurrent, intervalNanos, burstNanos);
+	}
+
+	/**
+	 * Fresh limits with the same configuration and no state, for another route.
+	 */
+	Admission copy() {
+		return new Admission(maxConcurrent, intervalNanos, burstNanos);
+	}
+
+	/**
+	 * Admits a request, which has to be followed by {@link #release()} once
+	 * handled, or refuses it.
+	 */
+	public boolean tryAcquire() {
+		return tryAcquire(System.nanoTime());
+	}
+
+	boolean tryAcquire(long now) {
+		if (maxConcurrent != UNBOUNDED && inFlight.incrementAndGet() > maxConcurrent) {
+			inFlight.decrementAndGet();
+			rejected.incrementAndGet();
+			return false;
+		}
+		if (intervalNanos > 0 && !takeToken(now)) {
+			if (maxConcurrent != UNBOUNDED) {
+				inFlight.decrementAndGet();
+			}
+			rejected.incrementAndGet();
+			return false;
+		}
+		return true;
+	}
+
+	public void release() {
+		if (maxConcurrent != UNBOUNDED) {
+			inFlight.decrementAndGet();
+		}
+	}
+
+	private boolean takeToken(long now) {
+		while (true) {
+			long arrival = theoreticalArrival.get();
+			long start = arrival == Long.MIN_VALUE || arrival - now < 0 ? now : arrival;
+			if (start - now > burstNanos) {
+				return false;
+			}
+			if (theoreticalArrival.compareAndSet(arrival, start + intervalNanos)) {
+				return true;
+			}
+		}
+	}
+
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	public long getRejected() {
+		return rejected.get();
+	}
+
+}
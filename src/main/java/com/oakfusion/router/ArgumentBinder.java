@@ -0,0 +1,225 @@
+package com.oakfusion.router;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static java.lang.String.format;
+
+/**
+ * Binds the path parameters of a matched route to the arguments of its handler,
+ * compiled once when the route is registered into a method handle taking the
+ * controller and the match.
+ *
+ * Parameters are bound by position: the n-th handler argument that is not a
+ * {@link RouteMatch} receives the n-th path parameter of the route pattern,
+ * parsed from the request characters according to the declared type. Handlers
+ * can declare {@code int}, {@code long}, {@link UUID}, enum and {@code String}
+ * arguments (primitive wrappers and {@link CharSequence} too); anything else,
+ * or more arguments than the pattern has parameters, fails registration.
+ *
+ * Each argument is filtered through the {@link RouteMatch} accessor for its
+ * type straight into the handler, so {@code int} and {@code long} arguments
+ * are never boxed, and no argument array or reflective call is involved.
+ */
+final class ArgumentBinder {
+
+	private static final int MATCH = 0;
+	private static final int STRING = 1;
+	private static final int INT = 2;
+	private static final int LONG = 3;
+	private static final int UUID_VALUE = 4;
+	private static final int ENUM = 5;
+
+	private static final MethodHandle GET_PARAMETER = accessor("getParameter", String.class, int.class);
+	private static final MethodHandle GET_INT = accessor("getInt", int.class, int.class);
+	private static final MethodHandle GET_LONG = accessor("getLong", long.class, int.class);
+	private static final MethodHandle GET_UUID = accessor("getUuid", UUID.class, int.class);
+	private static final MethodHandle GET_ENUM = accessor("getEnum", Enum.class, int.class, Class.class, Enum[].class);
+
+	private final int[] kinds;
+	private final int[] parameters;
+	private final Enum<?>[][] enumConstants;
+	private final MethodHandle handler;
+	private final MethodHandle parser;
+
+	private ArgumentBinder(int[] kinds, int[] parameters, Enum<?>[][] enumConstants, MethodHandle handler,
+						   MethodHandle parser) {
+		this.kinds = kinds;
+		this.parameters = parameters;
+		this.enumConstants = enumConstants;
+		this.handler = handler;
+		this.parser = parser;
+	}
+
+	static ArgumentBinder compile(Method method, UrlTemplate template) {
+		Class<?>[] types = method.getParameterTypes();
+		int[] kinds = new int[types.length];
+		int[] parameters = new int[types.length];
+		Enum<?>[][] enumConstants = new Enum<?>[types.length][];
+		MethodHandle[] extractors = new MethodHandle[types.length];
+		int next = 0;
+		for (int i = 0; i < types.length; i++) {
+			Class<?> type = types[i];
+			if (type == RouteMatch.class) {
+				kinds[i] = MATCH;
+				extractors[i] = MethodHandles.identity(RouteMatch.class);
+				continue;
+			}
+			kinds[i] = kindOf(method, type);
+			if (kinds[i] == ENUM) {
+				enumConstants[i] = (Enum<?>[]) type.getEnumConstants();
+			}
+			if (next == template.getParameterCount()) {
+				throw new IllegalArgumentException(format("%s has more arguments than %s has parameters",
+						method, template.getPattern()));
+			}
+			parameters[i] = next++;
+			extractors[i] = extractor(kinds[i], parameters[i], type, enumConstants[i]);
+		}
+		MethodHandle handler = bound(controllerFirst(method), 1, extractors);
+		MethodHandle parser = bound(MethodHandles.dropArguments(MethodHandles.constant(Object.class, null), 0, types),
+				0, extractors).asType(MethodType.methodType(void.class, RouteMatch.class));
+		return new ArgumentBinder(kinds, parameters, enumConstants, handler, parser);
+	}
+
+	private static int kindOf(Method method, Class<?> type) {
+		if (type == String.class || type == CharSequence.class) {
+			return STRING;
+		}
+		if (type == int.class || type == Integer.class) {
+			return INT;
+		}
+		if (type == long.class || type == Long.class) {
+			return LONG;
+		}
+		if (type == UUID.class) {
+			return UUID_VALUE;
+		}
+		if (type.isEnum()) {
+			return ENUM;
+		}
+		throw new IllegalArgumentException(format("%s takes a %s, which cannot be bound to a path parameter",
+				method, type.getName()));
+	}
+
+	/**
+	 * {@code (RouteMatch)type} reading path parameter {@code parameter}.
+	 */
+	private static MethodHandle extractor(int kind, int parameter, Class<?> type, Enum<?>[] constants) {
+		MethodHandle accessor;
+		switch (kind) {
+			case STRING:
+				accessor = GET_PARAMETER;
+				break;
+			case INT:
+				accessor = GET_INT;
+				break;
+			case LONG:
+				accessor = GET_LONG;
+				break;
+			case UUID_VALUE:
+				accessor = GET_UUID;
+				break;
+			default:
+				accessor = MethodHandles.insertArguments(GET_ENUM, 2, type, constants);
+		}
+		return MethodHandles.insertArguments(accessor, 1, parameter).asType(MethodType.methodType(type,
+				RouteMatch.class));
+	}
+
+	/**
+	 * The handler as {@code (Object controller, declared arguments...)Object}.
+	 */
+	private static MethodHandle controllerFirst(Method method) {
+		MethodHandle target;
+		try {
+			target = MethodHandles.lookup().unreflect(method);
+		} catch (IllegalAccessException e) {
+			throw new IllegalArgumentException(format("%s cannot be invoked by the router", method), e);
+		}
+		if (Modifier.isStatic(method.getModifiers())) {
+			target = MethodHandles.dropArguments(target, 0, Object.class);
+		}
+		return target.asType(target.type().changeParameterType(0, Object.class).changeReturnType(Object.class));
+	}
+
+	/**
+	 * {@code target} with the arguments from {@code offset} on filtered by
+	 * {@code extractors} out of a single trailing {@link RouteMatch}.
+	 */
+	private static MethodHandle bound(MethodHandle target, int offset, MethodHandle[] extractors) {
+		MethodHandle filtered = MethodHandles.filterArguments(target, offset, extractors);
+		MethodType type = filtered.type().dropParameterTypes(offset, filtered.type().parameterCount())
+				.appendParameterTypes(RouteMatch.class);
+		int[] reorder = new int[offset + extractors.length];
+		for (int i = 0; i < reorder.length; i++) {
+			reorder[i] = Math.min(i, offset);
+		}
+		return MethodHandles.permuteArguments(filtered, type, reorder);
+	}
+
+	private static MethodHandle accessor(String name, Class<?> returnType, Class<?>... parameterTypes) {
+		try {
+			return MethodHandles.lookup().findVirtual(RouteMatch.class, name,
+					MethodType.methodType(returnType, parameterTypes));
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * The handler with its arguments bound, as
+	 * {@code (Object controller, RouteMatch match)Object}; a {@code void}
+	 * handler returns <code>null</code>.
+	 */
+	MethodHandle handler() {
+		return handler;
+	}
+
+	/**
+	 * Parses the arguments the handler would be invoked with, failing the way
+	 * dispatching would, without invoking it; see {@link WarmUp}.
+	 */
+	void parse(RouteMatch match) {
+		try {
+			parser.invokeExact(match);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Values for the {@code count} path parameters of the route that its handler
+	 * arguments accept, such as the first constant for an enum; used to build
+	 * synthetic requests, see {@link WarmUp#synthetic()}.
+	 */
+	Object[] sampleParameters(int count) {
+		Object[] values = new Object[count];
+		Arrays.fill(values, "1");
+		for (int i = 0; i < kinds.length; i++) {
+			switch (kinds[i]) {
+				case STRING:
+					values[parameters[i]] = "w";
+					break;
+				case UUID_VALUE:
+					values[parameters[i]] = new UUID(0, 1);
+					break;
+				case ENUM:
+					if (enumConstants[i].length > 0) {
+						values[parameters[i]] = enumConstants[i][0].name();
+					}
+					break;
+				default:
+			}
+		}
+		return values;
+	}
+
+}
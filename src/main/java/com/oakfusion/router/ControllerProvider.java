@@ -0,0 +1,10 @@
+package com.oakfusion.router;
+
+/**
+ * Supplies the controller instance a route is dispatched to.
+ */
+public interface ControllerProvider {
+
+	Object get(Class<?> controllerClass);
+
+}
@@ -0,0 +1,56 @@
+package com.oakfusion.router;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.SettingDefinition;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event for {@link Router#dispatch(RouteMatch)}, covering interceptors,
+ * admission and the response cache along with the handler. Thresholds and
+ * sampling work as for {@link LookupEvent}.
+ */
+@Name("com.oakfusion.router.Dispatch")
+@Label("Route Dispatch")
+@Category("Router")
+@StackTrace(false)
+@Threshold("10 ms")
+class DispatchEvent extends jdk.jfr.Event {
+
+	static final DispatchEvent PROBE = new DispatchEvent();
+
+	@Label("Method")
+	String method;
+
+	@Label("Pattern")
+	String pattern;
+
+	@Label("Handler")
+	String handler;
+
+	@Label("Failure")
+	@Description("Class of the exception thrown by the handler, null on success")
+	String failure;
+
+	private transient boolean sampled;
+	private transient boolean kept;
+
+	/**
+	 * Decided once per event, as both {@code shouldCommit} and {@code commit}
+	 * evaluate settings.
+	 */
+	@Label("Sampling")
+	@Description("Keeps one in this many events over the threshold")
+	@SettingDefinition
+	boolean sampling(SamplingControl control) {
+		if (!sampled) {
+			sampled = true;
+			kept = control.sample();
+		}
+		return kept;
+	}
+
+}
@@ -0,0 +1,113 @@
+package com.oakfusion.router;
+
+import java.util.Arrays;
+
+import static org.apache.commons.lang3.StringUtils.splitByWholeSeparator;
+
+/**
+ * Header values a route requires, telling it apart from other routes of the
+ * same method and path. Names and values are kept in lower case.
+ */
+final class HeaderConditions {
+
+	static final String ACCEPT = "accept";
+	static final String CONTENT_TYPE = "content-type";
+
+	private static final String SEPARATOR = ", ";
+
+	final String[] names;
+	final String[] values;
+
+	private HeaderConditions(String[] names, String[] values) {
+		this.names = names;
+		this.values = values;
+	}
+
+	/**
+	 * {@code conditions} (which may be <code>null</code>) requiring {@code value}
+	 * of header {@code name} in addition, or instead of what it required before.
+	 */
+	static HeaderConditions with(HeaderConditions conditions, String name, String value) {
+		String headerName = HeaderValues.fold(name.trim());
+		String headerValue = HeaderValues.fold(value.trim());
+		if (headerName.isEmpty() || headerValue.isEmpty() || headerValue.indexOf(',') >= 0) {
+			throw new IllegalArgumentException("Invalid header condition " + name + ": " + value);
+		}
+		if (conditions == null) {
+			return new HeaderConditions(new String[]{headerName}, new String[]{headerValue});
+		}
+		int index = Arrays.asList(conditions.names).indexOf(headerName);
+		String[] names = conditions.names;
+		String[] values;
+		if (index < 0) {
+			index = names.length;
+			names = Arrays.copyOf(names, index + 1);
+			names[index] = headerName;
+			values = Arrays.copyOf(conditions.values, index + 1);
+		} else {
+			values = conditions.values.clone();
+		}
+		values[index] = headerValue;
+		return new HeaderConditions(names, values);
+	}
+
+	/**
+	 * Reverse of {@link #toString()}; <code>null</code> for an empty string.
+	 */
+	static HeaderConditions parse(String conditions) {
+		HeaderConditions result = null;
+		for (String condition : splitByWholeSeparator(conditions, SEPARATOR)) {
+			int colon = condition.indexOf(':');
+			if (colon < 0) {
+				throw new IllegalArgumentException("Invalid header condition " + condition);
+			}
+			result = with(result, condition.substring(0, colon), condition.substring(colon + 1));
+		}
+		return result;
+	}
+
+	static boolean isMediaType(String name) {
+		return name.equals(ACCEPT) || name.equals(CONTENT_TYPE);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof HeaderConditions)) {
+			return false;
+		}
+		HeaderConditions other = (HeaderConditions) o;
+		if (names.length != other.names.length) {
+			return false;
+		}
+		for (int i = 0; i < names.length; i++) {
+			int index = Arrays.asList(other.names).indexOf(names[i]);
+			if (index < 0 || !values[i].equals(other.values[index])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = 0;
+		for (int i = 0; i < names.length; i++) {
+			hash += names[i].hashCode() ^ values[i].hashCode();
+		}
+		return hash;
+	}
+
+	/**
+	 * Conditions sorted by header name, e.g. {@code accept: application/json, api-version: 2}.
+	 */
+	@Override
+	public String toString() {
+		String[] conditions = new String[names.length];
+		for (int i = 0; i < names.length; i++) {
+			conditions[i] = names[i] + ": " + values[i];
+		}
+		Arrays.sort(conditions);
+		return String.join(SEPARATOR, conditions);
+	}
+
+}
@@ -0,0 +1,113 @@
+package com.oakfusion.router;
+
+/**
+ * Small integer ids of the header values routes are told apart by, such as
+ * media types and API versions, so that selecting among the routes of a path
+ * compares ints; see {@link RouteVariants}. Values are compared ignoring ASCII
+ * case. Ids are handed out when a route is registered, and looked up by a
+ * region of the request header without creating a String.
+ */
+final class HeaderValues {
+
+	private static volatile Table table = new Table(16);
+	private static int size;
+
+	private HeaderValues() {
+	}
+
+	/**
+	 * Id of {@code chars[start, end)}, or -1 if no route was ever registered for
+	 * that value.
+	 */
+	static int idOf(CharSequence chars, int start, int end) {
+		Table current = table;
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + lowerCase(chars.charAt(i));
+		}
+		int mask = current.values.length - 1;
+		for (int i = spread(hash) & mask; ; i = (i + 1) & mask) {
+			String value = current.values[i];
+			if (value == null) {
+				return -1;
+			}
+			if (value.hashCode() == hash && regionMatches(chars, start, end, value)) {
+				return current.ids[i];
+			}
+		}
+	}
+
+	static synchronized int register(String value) {
+		String folded = fold(value);
+		int id = idOf(folded, 0, folded.length());
+		if (id >= 0) {
+			return id;
+		}
+		Table current = table;
+		Table extended = new Table((size + 1) * 2 > current.values.length ? current.values.length * 2
+				: current.values.length);
+		for (int i = 0; i < current.values.length; i++) {
+			if (current.values[i] != null) {
+				extended.insert(current.values[i], current.ids[i]);
+			}
+		}
+		extended.insert(folded, size);
+		table = extended;
+		return size++;
+	}
+
+	static String fold(String value) {
+		char[] chars = value.toCharArray();
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = lowerCase(chars[i]);
+		}
+		return new String(chars);
+	}
+
+	private static boolean regionMatches(CharSequence chars, int start, int end, String value) {
+		if (end - start != value.length()) {
+			return false;
+		}
+		for (int i = start; i < end; i++) {
+			if (lowerCase(chars.charAt(i)) != value.charAt(i - start)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static char lowerCase(char c) {
+		return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Open-addressing table replaced as a whole on registration, so lookups
+	 * never see it half-built.
+	 */
+	private static final class Table {
+
+		private final String[] values;
+		private final int[] ids;
+
+		private Table(int capacity) {
+			this.values = new String[capacity];
+			this.ids = new int[capacity];
+		}
+
+		private void insert(String value, int id) {
+			int mask = values.length - 1;
+			int i = spread(value.hashCode()) & mask;
+			while (values[i] != null) {
+				i = (i + 1) & mask;
+			}
+			values[i] = value;
+			ids[i] = id;
+		}
+
+	}
+
+}
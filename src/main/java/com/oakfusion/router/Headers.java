@@ -0,0 +1,15 @@
+package com.oakfusion.router;
+
+/**
+ * Request headers routes are selected by, see
+ * {@link Router#match(String, CharSequence, Headers)}. Names are asked for in
+ * lower case; a view over the headers a server has already parsed is enough.
+ */
+public interface Headers {
+
+	/**
+	 * Value of header {@code name}, or <code>null</code> if the request has none.
+	 */
+	CharSequence get(String name);
+
+}
@@ -0,0 +1,78 @@
+package com.oakfusion.router;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Small integer ids of HTTP method names, so that a set of methods fits in a
+ * {@code long} bitmask and routes of one path can sit in an array indexed by
+ * method. Standard methods come first; custom ones get the next free id when
+ * a route is first registered for them.
+ */
+final class HttpMethods {
+
+	static final int MAX_METHODS = Long.SIZE;
+
+	private static volatile String[] names = standardNames();
+
+	private HttpMethods() {
+	}
+
+	/**
+	 * Id of {@code name}, or -1 if no route was ever registered for it.
+	 */
+	static int idOf(String name) {
+		String[] known = names;
+		for (int i = 0; i < known.length; i++) {
+			if (known[i].equals(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	static synchronized int register(String name) {
+		int id = idOf(name);
+		if (id >= 0) {
+			return id;
+		}
+		String[] known = names;
+		if (known.length == MAX_METHODS) {
+			throw new IllegalStateException("Too many HTTP methods, cannot register " + name);
+		}
+		String[] extended = new String[known.length + 1];
+		System.arraycopy(known, 0, extended, 0, known.length);
+		extended[known.length] = name;
+		names = extended;
+		return known.length;
+	}
+
+	static String nameOf(int id) {
+		return names[id];
+	}
+
+	static long bit(int id) {
+		return 1L << id;
+	}
+
+	/**
+	 * Names of the methods in {@code mask}, in id order.
+	 */
+	static List<String> namesOf(long mask) {
+		List<String> result = new ArrayList<>(Long.bitCount(mask));
+		for (long remaining = mask; remaining != 0; remaining &= remaining - 1) {
+			result.add(nameOf(Long.numberOfTrailingZeros(remaining)));
+		}
+		return result;
+	}
+
+	private static String[] standardNames() {
+		Router.HttpMethod[] standard = Router.HttpMethod.values();
+		String[] result = new String[standard.length];
+		for (int i = 0; i < standard.length; i++) {
+			result[i] = standard[i].name();
+		}
+		return result;
+	}
+
+}
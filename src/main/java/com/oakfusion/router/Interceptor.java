@@ -0,0 +1,12 @@
+package com.oakfusion.router;
+
+/**
+ * Runs around the invocation of the routes it is registered for, e.g. for
+ * authentication, logging or tracing. Calling {@code next} proceeds with the
+ * rest of the chain; not calling it short-circuits the request.
+ */
+public interface Interceptor {
+
+	Object intercept(RouteMatch match, Invoker next) throws Exception;
+
+}
@@ -0,0 +1,11 @@
+package com.oakfusion.router;
+
+/**
+ * Invocation of a matched route, composed once per route out of its
+ * interceptors, response cache, admission limits and handler.
+ */
+public interface Invoker {
+
+	Object invoke(RouteMatch match) throws Exception;
+
+}
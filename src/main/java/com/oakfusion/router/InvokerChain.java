@@ -0,0 +1,179 @@
+package com.oakfusion.router;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Composes the {@link Invoker} of a route when it is registered, or when the
+ * interceptors of its router change, folding what the route needs into one
+ * method handle of type {@code (RouteMatch)Object}: interceptors registered
+ * for a prefix of the route, then its response cache, then its admission
+ * limits, then the handler with its arguments bound by {@link ArgumentBinder}.
+ * A route with none of these invokes its handler directly, and routes pay
+ * nothing for interceptors outside their prefix.
+ *
+ * Every route is dispatched through the same invoker class, which invokes its
+ * handle exactly, so the call from the router does not go through a different
+ * {@link Invoker} implementation per link of the chain.
+ */
+final class InvokerChain {
+
+	private static final MethodHandle CONTROLLER = find("controller", Object.class, Router.class, Class.class);
+	private static final MethodHandle TRY_ACQUIRE = find("tryAcquire", boolean.class, Admission.class);
+	private static final MethodHandle RELEASED = find("released", Object.class, Admission.class, Object.class);
+	private static final MethodHandle RELEASED_RETHROWING = find("releasedRethrowing", Object.class,
+			Admission.class, Throwable.class);
+	private static final MethodHandle REJECTION = find("rejection", Object.class, Router.class);
+	private static final MethodHandle CACHED = find("cached", Object.class, Router.class, ResponseCache.class,
+			MethodHandle.class, RouteMatch.class);
+	private static final MethodHandle INTERCEPTED = find("intercepted", Object.class, Interceptor.class,
+			Invoker.class, RouteMatch.class);
+	private static final MethodHandle DELEGATED = find("delegated", Object.class, Route.class, RouteMatch.class);
+
+	private InvokerChain() {
+	}
+
+	static Invoker compose(Router router, Route route, List<Interceptor> interceptors) {
+		MethodHandle chain = MethodHandles.foldArguments(route.binder.handler(),
+				MethodHandles.dropArguments(MethodHandles.insertArguments(CONTROLLER, 0, router, route.controllerClass),
+						0, RouteMatch.class));
+		if (route.admission != null) {
+			chain = admitting(router, route.admission, chain);
+		}
+		if (route.responseCache != null) {
+			chain = MethodHandles.insertArguments(CACHED, 0, router, route.responseCache, chain);
+		}
+		for (int i = interceptors.size() - 1; i >= 0; i--) {
+			chain = MethodHandles.insertArguments(INTERCEPTED, 0, interceptors.get(i), new ComposedInvoker(chain));
+		}
+		return new ComposedInvoker(chain);
+	}
+
+	/**
+	 * Invoker following the current invoker of {@code route}, for routes copied
+	 * from another router.
+	 */
+	static Invoker delegateTo(Route route) {
+		return new ComposedInvoker(DELEGATED.bindTo(route));
+	}
+
+	/**
+	 * {@code next} run while holding a permit of {@code admission}, released
+	 * however {@code next} completes; the rejection result of {@code router}
+	 * when no permit is left.
+	 */
+	private static MethodHandle admitting(Router router, Admission admission, MethodHandle next) {
+		MethodHandle admitted = MethodHandles.catchException(
+				MethodHandles.filterReturnValue(next, RELEASED.bindTo(admission)), Throwable.class,
+				MethodHandles.dropArguments(RELEASED_RETHROWING.bindTo(admission), 1, RouteMatch.class));
+		return MethodHandles.guardWithTest(
+				MethodHandles.dropArguments(TRY_ACQUIRE.bindTo(admission), 0, RouteMatch.class),
+				admitted,
+				MethodHandles.dropArguments(REJECTION.bindTo(router), 0, RouteMatch.class));
+	}
+
+	private static Object controller(Router router, Class<?> controllerClass) {
+		return router.getControllerProvider().get(controllerClass);
+	}
+
+	private static boolean tryAcquire(Admission admission) {
+		return admission.tryAcquire();
+	}
+
+	private static Object released(Admission admission, Object result) {
+		admission.release();
+		return result;
+	}
+
+	private static Object releasedRethrowing(Admission admission, Throwable failure) throws Throwable {
+		admission.release();
+		throw failure;
+	}
+
+	private static Object rejection(Router router) {
+		return router.getRejection();
+	}
+
+	private static Object cached(final Router router, ResponseCache cache, final MethodHandle next,
+								 final RouteMatch match) throws Exception {
+		try {
+			return cache.get(match, new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					Object result = invoke(next, match);
+					if (result == router.getRejection()) {
+						throw Rejected.INSTANCE;
+					}
+					return result;
+				}
+			});
+		} catch (Rejected e) {
+			return router.getRejection();
+		}
+	}
+
+	private static Object intercepted(Interceptor interceptor, Invoker next, RouteMatch match) throws Exception {
+		return interceptor.intercept(match, next);
+	}
+
+	private static Object delegated(Route route, RouteMatch match) throws Exception {
+		return route.invoker.invoke(match);
+	}
+
+	private static Object invoke(MethodHandle chain, RouteMatch match) throws Exception {
+		try {
+			return (Object) chain.invokeExact(match);
+		} catch (Exception | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new UndeclaredThrowableException(e);
+		}
+	}
+
+	private static MethodHandle find(String name, Class<?> returnType, Class<?>... parameterTypes) {
+		try {
+			return MethodHandles.lookup().findStatic(InvokerChain.class, name, methodType(returnType, parameterTypes));
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * The invoker of every route, running the chain composed for it.
+	 */
+	private static final class ComposedInvoker implements Invoker {
+
+		private final MethodHandle chain;
+
+		ComposedInvoker(MethodHandle chain) {
+			this.chain = chain;
+		}
+
+		@Override
+		public Object invoke(RouteMatch match) throws Exception {
+			return InvokerChain.invoke(chain, match);
+		}
+
+	}
+
+	/**
+	 * Unwinds a cache load refused by admission limits, so that nothing is cached.
+	 */
+	private static final class Rejected extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		private static final Rejected INSTANCE = new Rejected();
+
+		private Rejected() {
+			super("rejected", null, false, false);
+		}
+
+	}
+
+}
@@ -0,0 +1,66 @@
+package com.oakfusion.router;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.SettingDefinition;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event for {@link Router#match(String, CharSequence)} and
+ * {@link Router#getRouteFor(String, String)}. Lookups faster than
+ * the threshold are dropped, and of the rest one in {@code sampling} is kept:
+ * <pre>
+ * recording.enable("com.oakfusion.router.Lookup").withThreshold(Duration.ofMillis(1)).with("sampling", "100");
+ * </pre>
+ * With no recording asking for the event, the router pays one enabled check
+ * per lookup.
+ */
+@Name("com.oakfusion.router.Lookup")
+@Label("Route Lookup")
+@Category("Router")
+@StackTrace(false)
+@Threshold("1 ms")
+class LookupEvent extends jdk.jfr.Event {
+
+	static final LookupEvent PROBE = new LookupEvent();
+
+	@Label("Method")
+	String method;
+
+	@Label("Path")
+	String path;
+
+	@Label("Pattern")
+	@Description("Pattern of the matched route, null on a miss")
+	String pattern;
+
+	@Label("Status")
+	@Description("200 on a hit, 404, 405, 406 or 415 on a miss")
+	int status;
+
+	@Label("Depth")
+	@Description("Path segments the deepest branch of the route tree walk got through")
+	int depth;
+
+	private transient boolean sampled;
+	private transient boolean kept;
+
+	/**
+	 * Decided once per event, as both {@code shouldCommit} and {@code commit}
+	 * evaluate settings.
+	 */
+	@Label("Sampling")
+	@Description("Keeps one in this many events over the threshold")
+	@SettingDefinition
+	boolean sampling(SamplingControl control) {
+		if (!sampled) {
+			sampled = true;
+			kept = control.sample();
+		}
+		return kept;
+	}
+
+}
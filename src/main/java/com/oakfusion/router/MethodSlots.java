@@ -0,0 +1,93 @@
+package com.oakfusion.router;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * Routes of one path indexed by {@link HttpMethods} id, with the bitmask of
+ * methods having a route. Terminal data of the path-first route tree.
+ */
+final class MethodSlots {
+
+	private static final Having[] HAVING = new Having[HttpMethods.MAX_METHODS];
+	private static final Having NONE = new Having(0L);
+
+	static {
+		for (int i = 0; i < HAVING.length; i++) {
+			HAVING[i] = new Having(HttpMethods.bit(i));
+		}
+	}
+
+	private Route[] routes = new Route[0];
+	private long mask;
+
+	Route get(int methodId) {
+		return methodId >= 0 && methodId < routes.length ? routes[methodId] : null;
+	}
+
+	void put(int methodId, Route route) {
+		if (methodId >= routes.length) {
+			routes = Arrays.copyOf(routes, methodId + 1);
+		}
+		routes[methodId] = route;
+		mask |= HttpMethods.bit(methodId);
+	}
+
+	Route remove(int methodId) {
+		Route removed = get(methodId);
+		if (removed != null) {
+			routes[methodId] = null;
+			mask &= ~HttpMethods.bit(methodId);
+		}
+		return removed;
+	}
+
+	long mask() {
+		return mask;
+	}
+
+	boolean isEmpty() {
+		return mask == 0;
+	}
+
+	/**
+	 * Accepts the slots having a route for {@code methodId} (-1 for a method
+	 * nothing is registered for), so that the path-first tree backtracks past
+	 * paths with routes for other methods only.
+	 */
+	static Predicate<MethodSlots> having(int methodId) {
+		return methodId < 0 ? NONE : HAVING[methodId];
+	}
+
+	private static final class Having implements Predicate<MethodSlots> {
+
+		private final long bit;
+
+		private Having(long bit) {
+			this.bit = bit;
+		}
+
+		@Override
+		public boolean test(MethodSlots slots) {
+			return (slots.mask & bit) != 0;
+		}
+
+	}
+
+	/**
+	 * Collects the methods of every path it is shown while accepting none, so
+	 * that a match walks all paths matching a request.
+	 */
+	static final class AllowedMethods implements Predicate<MethodSlots> {
+
+		long mask;
+
+		@Override
+		public boolean test(MethodSlots slots) {
+			mask |= slots.mask;
+			return false;
+		}
+
+	}
+
+}
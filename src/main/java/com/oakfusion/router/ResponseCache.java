@@ -0,0 +1,264 @@
+package com.oakfusion.router;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memoizes handler results of an idempotent route, keyed on the values of its
+ * path parameters (the query string is not part of the key).
+ *
+ * Entries expire after a time to live and are evicted oldest first once the
+ * cache holds more than a maximum number of entries or a maximum total weight.
+ * Every result cached also drops the expired entries at the old end of the
+ * cache, so a cache bounded by time alone does not grow with keys that are
+ * never asked for again. Concurrent misses for one key are collapsed: the
+ * first caller invokes the handler, the others wait for its result.
+ */
+public final class ResponseCache {
+
+	/**
+	 * Weight of a cached result, e.g. its size in bytes.
+	 */
+	public interface Weigher {
+		long weigh(Object result);
+	}
+
+	private static final Weigher SINGLETON_WEIGHER = new Weigher() {
+		@Override
+		public long weigh(Object result) {
+			return 1;
+		}
+	};
+
+	private final long ttlNanos;
+	private final long maximumWeight;
+	private final Weigher weigher;
+
+	private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<>();
+	/** Loaded entries, oldest first; entries already removed from the map are skipped when polled */
+	private final ArrayDeque<Entry> insertionOrder = new ArrayDeque<>();
+	private final AtomicLong weight = new AtomicLong();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	Clock clock = new Clock();
+
+	private ResponseCache(long ttlNanos, long maximumWeight, Weigher weigher) {
+		this.ttlNanos = ttlNanos;
+		this.maximumWeight = maximumWeight;
+		this.weigher = weigher;
+	}
+
+	/**
+	 * Entries live for {@code ttl}, with no bound on their number other than
+	 * the results loaded within a {@code ttl}.
+	 */
+	public static ResponseCache expiringAfter(long ttl, TimeUnit unit) {
+		if (ttl <= 0) {
+			throw new IllegalArgumentException("ttl must be positive: " + ttl);
+		}
+		return new ResponseCache(unit.toNanos(ttl), Long.MAX_VALUE, SINGLETON_WEIGHER);
+	}
+
+	public ResponseCache withMaximumSize(long maximumSize) {
+		return withMaximumWeight(maximumSize, SINGLETON_WEIGHER);
+	}
+
+	public ResponseCache withMaximumWeight(long maximumWeight, Weigher weigher) {
+		if (maximumWeight <= 0) {
+			throw new IllegalArgumentException("maximum must be positive: " + maximumWeight);
+		}
+		return new ResponseCache(ttlNanos, maximumWeight, weigher);
+	}
+
+	/**
+	 * Empty cache with the same configuration, for another route.
+	 */
+	ResponseCache copy() {
+		return new ResponseCache(ttlNanos, maximumWeight, weigher);
+	}
+
+	/**
+	 * Cached result for the parameters of {@code match}, or the result of
+	 * {@code handler}, which is then cached. Exceptions thrown by the handler
+	 * propagate to every caller waiting for it and nothing is cached.
+	 */
+	Object get(RouteMatch match, Callable<Object> handler) throws Exception {
+		Key key = Key.of(match);
+		while (true) {
+			Entry entry = entries.get(key);
+			if (entry != null && entry.isExpired(clock.nanoTime())) {
+				remove(entry);
+				entry = null;
+			}
+			if (entry != null) {
+				hits.incrementAndGet();
+				return entry.await();
+			}
+			Entry created = new Entry(key, handler);
+			entry = entries.putIfAbsent(key, created);
+			if (entry == null) {
+				misses.incrementAndGet();
+				return load(created);
+			}
+		}
+	}
+
+	private Object load(Entry entry) throws Exception {
+		entry.task.run();
+		Object result;
+		try {
+			result = entry.await();
+		} catch (Exception e) {
+			entries.remove(entry.key, entry);
+			throw e;
+		}
+		long now = clock.nanoTime();
+		entry.expiresAt = now + ttlNanos;
+		entry.weight = weigher.weigh(result);
+		weight.addAndGet(entry.weight);
+		synchronized (insertionOrder) {
+			insertionOrder.add(entry);
+			entry.loaded = true;
+			purgeExpired(now);
+			evictOverWeight();
+		}
+		return result;
+	}
+
+	/**
+	 * Drops expired entries, and entries removed already, from the old end.
+	 * Entries are loaded with the same time to live, so the first one alive
+	 * ends the purge.
+	 */
+	private void purgeExpired(long now) {
+		Entry oldest;
+		while ((oldest = insertionOrder.peek()) != null
+				&& (oldest.isExpired(now) || entries.get(oldest.key) != oldest)) {
+			insertionOrder.poll();
+			remove(oldest);
+		}
+	}
+
+	private void evictOverWeight() {
+		while (weight.get() > maximumWeight) {
+			Entry oldest = insertionOrder.poll();
+			if (oldest == null) {
+				return;
+			}
+			remove(oldest);
+		}
+	}
+
+	/**
+	 * Removes {@code entry} from the map, unless it is gone already. The entry
+	 * stays in the insertion order until it is polled from there.
+	 */
+	private void remove(Entry entry) {
+		if (entries.remove(entry.key, entry)) {
+			evictions.incrementAndGet();
+			weight.addAndGet(-entry.weight);
+		}
+	}
+
+	public long size() {
+		return entries.size();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	public double getHitRatio() {
+		long hits = this.hits.get();
+		long requests = hits + misses.get();
+		return requests == 0 ? 1.0 : (double) hits / requests;
+	}
+
+	static class Clock {
+		long nanoTime() {
+			return System.nanoTime();
+		}
+	}
+
+	private static final class Key {
+
+		private final String[] values;
+		private final int hash;
+
+		private Key(String[] values) {
+			this.values = values;
+			this.hash = Arrays.hashCode(values);
+		}
+
+		static Key of(RouteMatch match) {
+			String[] values = new String[match.getParameterCount()];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = match.getParameter(i);
+			}
+			return new Key(values);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key && Arrays.equals(values, ((Key) o).values);
+		}
+
+	}
+
+	private static final class Entry {
+
+		private final Key key;
+		private final FutureTask<Object> task;
+		private volatile boolean loaded;
+		private volatile long expiresAt;
+		private volatile long weight;
+
+		private Entry(Key key, Callable<Object> handler) {
+			this.key = key;
+			this.task = new FutureTask<>(handler);
+		}
+
+		boolean isExpired(long now) {
+			return loaded && now - expiresAt >= 0;
+		}
+
+		Object await() throws Exception {
+			try {
+				return task.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw e;
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof Exception) {
+					throw (Exception) cause;
+				}
+				throw (Error) cause;
+			}
+		}
+
+	}
+
+}
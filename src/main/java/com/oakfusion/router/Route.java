@@ -8,12 +8,34 @@ public class Route {
 	public final String uri;
 	public final Class<?> controllerClass;
 	public final Method controllerMethod;
+	public final UrlTemplate urlTemplate;
+	public final Admission admission;
+	public final ResponseCache responseCache;
+	final HeaderConditions conditions;
+	ArgumentBinder binder;
+	Route origin;
+	RouteVariants variants;
+	volatile Invoker invoker;
 
 	public Route(String httpMethod, String uri, Class<?> controllerClass, Method controllerMethod) {
+		this(httpMethod, uri, controllerClass, controllerMethod, null, null);
+	}
+
+	Route(String httpMethod, String uri, Class<?> controllerClass, Method controllerMethod, Admission admission,
+		  ResponseCache responseCache) {
+		this(httpMethod, uri, controllerClass, controllerMethod, admission, responseCache, null);
+	}
+
+	Route(String httpMethod, String uri, Class<?> controllerClass, Method controllerMethod, Admission admission,
+		  ResponseCache responseCache, HeaderConditions conditions) {
 		this.httpMethod = httpMethod;
 		this.uri = uri;
 		this.controllerClass = controllerClass;
 		this.controllerMethod = controllerMethod;
+		this.urlTemplate = UrlTemplate.compile(uri);
+		this.admission = admission;
+		this.responseCache = responseCache;
+		this.conditions = conditions;
 	}
 
 	public String getHttpMethod() {
@@ -32,4 +54,54 @@ public class Route {
 		return controllerMethod;
 	}
 
+	public UrlTemplate getUrlTemplate() {
+		return urlTemplate;
+	}
+
+	/**
+	 * Admission limits of this route, or <code>null</code> if it has none.
+	 */
+	public Admission getAdmission() {
+		return admission;
+	}
+
+	/**
+	 * Cache of handler results of this route, or <code>null</code> if it has none.
+	 */
+	public ResponseCache getResponseCache() {
+		return responseCache;
+	}
+
+	/**
+	 * Header values this route requires, e.g. {@code accept: application/json},
+	 * or an empty string if it serves any request for its method and path.
+	 */
+	public String getHeaderConditions() {
+		return conditions == null ? "" : conditions.toString();
+	}
+
+	/**
+	 * Invocation chain composed for this route by its router.
+	 */
+	public Invoker getInvoker() {
+		return invoker;
+	}
+
+	@Override
+	public String toString() {
+		return key();
+	}
+
+	/**
+	 * Key of this route in the table of its router, unique per method, pattern
+	 * and header conditions.
+	 */
+	String key() {
+		return keyOf(httpMethod, uri, conditions);
+	}
+
+	static String keyOf(String httpMethod, String uri, HeaderConditions conditions) {
+		return conditions == null ? httpMethod + " " + uri : httpMethod + " " + uri + " [" + conditions + "]";
+	}
+
 }
@@ -0,0 +1,274 @@
+package com.oakfusion.router;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.lang.String.format;
+
+/**
+ * Loads route definitions into a {@link Router} from a line-oriented source,
+ * one route per line:
+ *
+ * <pre>
+ * # method  pattern            controller                      handler
+ * GET       /users/{id}        com.example.UserController      show
+ * </pre>
+ *
+ * Fields are separated by whitespace; blank lines and lines starting with
+ * {@code #} are skipped. Lines are read through a fixed-size buffer and each
+ * route is inserted as soon as it is read, so memory beyond the route table
+ * stays bounded by the longest line. Controllers and handlers are resolved
+ * once per distinct name.
+ *
+ * Methods have to be standard ones or already have routes in some router;
+ * custom methods are registered process-wide and their number is limited, so
+ * a definition file cannot add them unless they are allowed with
+ * {@link #allowMethod(String)}.
+ *
+ * A line that cannot be loaded is reported in the {@link Report} and skipped;
+ * only the first {@link #MAX_PROBLEMS} problems are kept, all are counted.
+ */
+public class RouteLoader {
+
+	public static final int MAX_PROBLEMS = 1000;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int MAX_REPORTED_LINE = 200;
+
+	private final Router router;
+	private final ClassLoader classLoader;
+	private final MethodLoader methodLoader = new MethodLoader();
+	private final Map<String, Class<?>> classes = new HashMap<>();
+	private final Map<String, Method> methods = new HashMap<>();
+	private final Set<String> allowedMethods = new HashSet<>();
+	private final String[] fields = new String[4];
+
+	public RouteLoader(Router router) {
+		this(router, Thread.currentThread().getContextClassLoader());
+	}
+
+	public RouteLoader(Router router, ClassLoader classLoader) {
+		this.router = router;
+		this.classLoader = classLoader != null ? classLoader : RouteLoader.class.getClassLoader();
+	}
+
+	/**
+	 * Accepts routes for the custom method {@code httpMethod}, which has to be
+	 * an RFC 7230 token.
+	 */
+	public RouteLoader allowMethod(String httpMethod) {
+		if (!isToken(httpMethod)) {
+			throw new IllegalArgumentException("Not an HTTP method token: " + httpMethod);
+		}
+		allowedMethods.add(httpMethod);
+		return this;
+	}
+
+	public Report load(Path path) throws IOException {
+		try (InputStream in = Files.newInputStream(path)) {
+			return load(in);
+		}
+	}
+
+	/**
+	 * Loads routes from {@code in}, UTF-8 encoded. The stream is not closed.
+	 */
+	public Report load(InputStream in) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE);
+		Report report = new Report();
+		long lineNumber = 0;
+		for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+			lineNumber++;
+			int count = split(line);
+			if (count == 0) {
+				continue;
+			}
+			String problem = count == fields.length ? loadRoute()
+					: format("expected method, pattern, controller and handler, found %d field%s",
+					count, count == 1 ? "" : "s");
+			if (problem == null) {
+				report.loaded++;
+			} else {
+				report.reject(lineNumber, line, problem);
+			}
+		}
+		return report;
+	}
+
+	/**
+	 * Registers the route in {@link #fields}.
+	 *
+	 * @return <code>null</code> once registered, otherwise why it could not be
+	 */
+	private String loadRoute() {
+		String httpMethod = fields[0];
+		if (HttpMethods.idOf(httpMethod) < 0 && !allowedMethods.contains(httpMethod)) {
+			return isToken(httpMethod) ? "unknown HTTP method " + httpMethod
+					: "not an HTTP method token: " + httpMethod;
+		}
+		String pattern = fields[1];
+		if (!pattern.startsWith("/")) {
+			return "pattern has to start with /: " + pattern;
+		}
+		try {
+			Class<?> controllerClass = controllerClass(fields[2]);
+			Method method = handler(controllerClass, fields[3]);
+			router.register(httpMethod, pattern, controllerClass, method);
+			return null;
+		} catch (ClassNotFoundException e) {
+			return "no controller class " + fields[2];
+		} catch (NoSuchMethodException e) {
+			return format("no single handler %s in %s", fields[3], fields[2]);
+		} catch (RuntimeException e) {
+			return e.getMessage() != null ? e.getMessage() : e.toString();
+		}
+	}
+
+	/**
+	 * Splits {@code line} on whitespace into {@link #fields}, up to one more
+	 * field than expected, returning the number of fields; 0 for a blank or
+	 * comment line.
+	 */
+	private int split(String line) {
+		int count = 0;
+		int i = 0;
+		int length = line.length();
+		while (true) {
+			while (i < length && Character.isWhitespace(line.charAt(i))) {
+				i++;
+			}
+			if (i == length) {
+				return count;
+			}
+			if (count == 0 && line.charAt(i) == '#') {
+				return 0;
+			}
+			int start = i;
+			while (i < length && !Character.isWhitespace(line.charAt(i))) {
+				i++;
+			}
+			if (count == fields.length) {
+				return count + 1;
+			}
+			fields[count++] = line.substring(start, i);
+		}
+	}
+
+	/**
+	 * Whether {@code value} is a token of RFC 7230: visible ASCII characters
+	 * other than separators.
+	 */
+	private static boolean isToken(String value) {
+		if (value.isEmpty()) {
+			return false;
+		}
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			boolean alphanumeric = c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9';
+			if (!alphanumeric && "!#$%&'*+-.^_`|~".indexOf(c) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private Class<?> controllerClass(String name) throws ClassNotFoundException {
+		Class<?> controllerClass = classes.get(name);
+		if (controllerClass == null) {
+			controllerClass = Class.forName(name, true, classLoader);
+			classes.put(name, controllerClass);
+		}
+		return controllerClass;
+	}
+
+	private Method handler(Class<?> controllerClass, String name) throws NoSuchMethodException {
+		String key = controllerClass.getName() + '#' + name;
+		Method method = methods.get(key);
+		if (method == null) {
+			method = methodLoader.load(controllerClass, name);
+			methods.put(key, method);
+		}
+		return method;
+	}
+
+	public static final class Report {
+
+		private long loaded;
+		private long rejected;
+		private final List<Problem> problems = new ArrayList<>();
+
+		private void reject(long lineNumber, String line, String message) {
+			rejected++;
+			if (problems.size() < MAX_PROBLEMS) {
+				String shown = line.length() > MAX_REPORTED_LINE ? line.substring(0, MAX_REPORTED_LINE) + "..." : line;
+				problems.add(new Problem(lineNumber, shown, message));
+			}
+		}
+
+		public long getLoaded() {
+			return loaded;
+		}
+
+		public long getRejected() {
+			return rejected;
+		}
+
+		/**
+		 * Problems of the first {@link #MAX_PROBLEMS} rejected lines.
+		 */
+		public List<Problem> getProblems() {
+			return Collections.unmodifiableList(problems);
+		}
+
+		@Override
+		public String toString() {
+			return format("%d routes loaded, %d lines rejected", loaded, rejected);
+		}
+
+	}
+
+	public static final class Problem {
+
+		private final long lineNumber;
+		private final String line;
+		private final String message;
+
+		Problem(long lineNumber, String line, String message) {
+			this.lineNumber = lineNumber;
+			this.line = line;
+			this.message = message;
+		}
+
+		public long getLineNumber() {
+			return lineNumber;
+		}
+
+		public String getLine() {
+			return line;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+
+		@Override
+		public String toString() {
+			return format("line %d: %s (%s)", lineNumber, message, line);
+		}
+
+	}
+
+}
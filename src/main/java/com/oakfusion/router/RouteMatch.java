@@ -0,0 +1,228 @@
+package com.oakfusion.router;
+
+import com.oakfusion.router.util.Captures;
+import com.oakfusion.router.util.CharRanges;
+import com.oakfusion.router.util.QueryString;
+import com.oakfusion.router.util.UriNormalization;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Result of matching a request against the routes of a {@link Router}.
+ *
+ * Path parameters are kept as bounds into the request characters; a value is
+ * decoded into a String the first time it is asked for, and numeric accessors
+ * parse the request characters in place. The query string is exposed the same
+ * way through a {@link QueryString} view created on first access.
+ */
+public class RouteMatch {
+
+	private final Route route;
+	private final CharSequence uri;
+	private final Captures captures;
+	private final UriNormalization normalization;
+	private final long allowedMethods;
+	private String[] values;
+	private QueryString query;
+	private int rejectionStatus;
+	private int mountDepth;
+
+	RouteMatch(Route route, CharSequence uri, Captures captures, UriNormalization normalization,
+			   long allowedMethods) {
+		this.route = route;
+		this.uri = uri;
+		this.captures = captures;
+		this.normalization = normalization;
+		this.allowedMethods = allowedMethods;
+	}
+
+	/**
+	 * Result for a path and method whose routes all have header conditions the
+	 * request does not meet, reported as {@code status} (406 or 415).
+	 */
+	static RouteMatch rejected(CharSequence uri, Captures captures, UriNormalization normalization,
+							   long allowedMethods, int status) {
+		RouteMatch match = new RouteMatch(Router.R_404, uri, captures, normalization, allowedMethods);
+		match.rejectionStatus = status;
+		return match;
+	}
+
+	public Route getRoute() {
+		return route;
+	}
+
+	public boolean isFound() {
+		return route != Router.R_404;
+	}
+
+	/**
+	 * 200 when a route matched, 415 when routes of the path and method all
+	 * require a {@code Content-Type} the request does not have, 406 when they
+	 * all require other headers it does not have, 405 when the path has routes
+	 * for other methods only, 404 otherwise.
+	 */
+	public int getStatus() {
+		if (isFound()) {
+			return 200;
+		}
+		if (rejectionStatus != 0) {
+			return rejectionStatus;
+		}
+		return allowedMethods == 0 ? 404 : 405;
+	}
+
+	/**
+	 * Methods the path has routes for, as in an {@code Allow} header. Only known
+	 * for a 405, or for any match on a path-first router.
+	 */
+	public List<String> getAllowedMethods() {
+		return HttpMethods.namesOf(allowedMethods);
+	}
+
+	public boolean isAllowed(String httpMethod) {
+		int id = HttpMethods.idOf(httpMethod);
+		return id >= 0 && (allowedMethods & HttpMethods.bit(id)) != 0;
+	}
+
+	/**
+	 * Segments the route tree walk producing this result got through, mount
+	 * prefixes included, whether or not it matched; see {@link Captures#depth()}.
+	 */
+	int getDepth() {
+		return mountDepth + captures.depth();
+	}
+
+	void mountedAt(int prefixSegments) {
+		mountDepth += prefixSegments;
+	}
+
+	public CharSequence getUri() {
+		return uri;
+	}
+
+	public int getParameterCount() {
+		return captures.size();
+	}
+
+	/**
+	 * Value of path parameter {@code name} (as in {@code {name}}), or
+	 * <code>null</code> if the matched route has no such parameter.
+	 */
+	public String getParameter(String name) {
+		int index = indexOf(name);
+		return index < 0 ? null : getParameter(index);
+	}
+
+	public String getParameter(int index) {
+		if (values == null) {
+			values = new String[captures.size()];
+		}
+		String value = values[index];
+		if (value == null) {
+			value = normalization.decode(uri, captures.start(index), captures.end(index), new StringBuilder()).toString();
+			values[index] = value;
+		}
+		return value;
+	}
+
+	public int getInt(String name) {
+		return getInt(requireParameter(name));
+	}
+
+	public int getInt(int index) {
+		if (isEncoded(index)) {
+			return Integer.parseInt(getParameter(index));
+		}
+		return CharRanges.parseInt(uri, captures.start(index), captures.end(index));
+	}
+
+	public long getLong(String name) {
+		return getLong(requireParameter(name));
+	}
+
+	public long getLong(int index) {
+		if (isEncoded(index)) {
+			return Long.parseLong(getParameter(index));
+		}
+		return CharRanges.parseLong(uri, captures.start(index), captures.end(index));
+	}
+
+	public UUID getUuid(int index) {
+		if (isEncoded(index)) {
+			String value = getParameter(index);
+			return CharRanges.parseUuid(value, 0, value.length());
+		}
+		return CharRanges.parseUuid(uri, captures.start(index), captures.end(index));
+	}
+
+	/**
+	 * Constant of {@code type} named by path parameter {@code index}, compared
+	 * in place with the names of the constants.
+	 */
+	public <E extends Enum<E>> E getEnum(int index, Class<E> type) {
+		return getEnum(index, type, type.getEnumConstants());
+	}
+
+	<E extends Enum<E>> E getEnum(int index, Class<E> type, E[] constants) {
+		if (isEncoded(index)) {
+			return Enum.valueOf(type, getParameter(index));
+		}
+		int start = captures.start(index);
+		int length = captures.end(index) - start;
+		for (E constant : constants) {
+			String name = constant.name();
+			if (name.length() == length && regionMatches(start, name)) {
+				return constant;
+			}
+		}
+		throw new IllegalArgumentException("No enum constant " + type.getName() + "."
+				+ uri.subSequence(start, start + length));
+	}
+
+	public QueryString getQuery() {
+		if (query == null) {
+			query = QueryString.of(uri);
+		}
+		return query;
+	}
+
+	private boolean isEncoded(int index) {
+		return normalization.decodesPercent() && CharRanges.isEncoded(uri, captures.start(index), captures.end(index));
+	}
+
+	private boolean regionMatches(int start, String name) {
+		for (int i = 0; i < name.length(); i++) {
+			if (uri.charAt(start + i) != name.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Index of path parameter {@code name} in the pattern of the matched route.
+	 * Routes sharing a parameter edge of the tree may name the parameter
+	 * differently, so names are looked up in the route rather than in the
+	 * captures.
+	 */
+	private int indexOf(String name) {
+		UrlTemplate template = route.getUrlTemplate();
+		int count = Math.min(template.getParameterCount(), captures.size());
+		for (int i = 0; i < count; i++) {
+			if (template.getParameterName(i).equals(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private int requireParameter(String name) {
+		int index = indexOf(name);
+		if (index < 0) {
+			throw new IllegalArgumentException("No path parameter " + name + " in " + route.getUri());
+		}
+		return index;
+	}
+
+}
@@ -0,0 +1,309 @@
+package com.oakfusion.router;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import static java.lang.String.format;
+
+/**
+ * Binary encoding of route table changes, exchanged between routers with
+ * {@link Router#exportDelta(Router)}, {@link Router#exportSnapshot()} and
+ * {@link Router#apply(byte[])}.
+ *
+ * <pre>
+ * byte    format version (1)
+ * byte    kind: 0 delta, 1 snapshot
+ * int     checksum of the base route table (0 for a snapshot)
+ * int     checksum of the resulting route table
+ * varint  number of operations
+ * per operation:
+ *   byte  1 add, 2 remove, 3 replace
+ *   str   HTTP method, pattern, header conditions ("" for none), and unless
+ *         removing, controller class and method
+ * </pre>
+ *
+ * A {@code str} is a varint reference: 0 followed by the string in modified
+ * UTF-8 the first time it appears, its position in order of appearance plus
+ * one afterwards, so that controller names and methods are written once. An
+ * unknown version, kind or operation is rejected like any other malformed
+ * input.
+ *
+ * Only the handler of a route is carried over; admission limits and response
+ * caches are local to each router.
+ */
+final class RouteTableCodec {
+
+	static final int FORMAT_VERSION = 1;
+
+	private static final int DELTA = 0;
+	private static final int SNAPSHOT = 1;
+
+	private static final int ADD = 1;
+	private static final int REMOVE = 2;
+	private static final int REPLACE = 3;
+
+	private RouteTableCodec() {
+	}
+
+	/**
+	 * Checksum of a route table, independent of registration order.
+	 */
+	static int checksum(Map<String, Route> routes) {
+		CRC32 crc = new CRC32();
+		for (Map.Entry<String, Route> entry : new TreeMap<>(routes).entrySet()) {
+			Route route = entry.getValue();
+			crc.update((entry.getKey() + ' ' + handlerOf(route) + '\n').getBytes(StandardCharsets.UTF_8));
+		}
+		return (int) crc.getValue();
+	}
+
+	static byte[] snapshot(Map<String, Route> routes) {
+		Writer writer = new Writer(SNAPSHOT, 0, checksum(routes), routes.size());
+		for (Route route : routes.values()) {
+			writer.write(ADD, route);
+		}
+		return writer.toByteArray();
+	}
+
+	static byte[] delta(Map<String, Route> base, Map<String, Route> target) {
+		List<Route> removed = new ArrayList<>();
+		for (Map.Entry<String, Route> entry : base.entrySet()) {
+			if (!target.containsKey(entry.getKey())) {
+				removed.add(entry.getValue());
+			}
+		}
+		List<Route> added = new ArrayList<>();
+		List<Route> replaced = new ArrayList<>();
+		for (Map.Entry<String, Route> entry : target.entrySet()) {
+			Route previous = base.get(entry.getKey());
+			if (previous == null) {
+				added.add(entry.getValue());
+			} else if (!sameHandler(previous, entry.getValue())) {
+				replaced.add(entry.getValue());
+			}
+		}
+		Writer writer = new Writer(DELTA, checksum(base), checksum(target),
+				removed.size() + added.size() + replaced.size());
+		for (Route route : removed) {
+			writer.write(REMOVE, route);
+		}
+		for (Route route : added) {
+			writer.write(ADD, route);
+		}
+		for (Route route : replaced) {
+			writer.write(REPLACE, route);
+		}
+		return writer.toByteArray();
+	}
+
+	/**
+	 * Decodes {@code update} against the route table {@code routes}, resolving
+	 * every handler and checking the checksum of the resulting table before
+	 * anything is changed.
+	 *
+	 * @throws IllegalArgumentException if the update is malformed
+	 * @throws IllegalStateException if a delta does not apply to {@code routes},
+	 *                               or the update does not lead to its checksum
+	 */
+	static Update decode(byte[] update, Map<String, Route> routes, MethodLoader methodLoader) {
+		try {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(update));
+			int version = in.readUnsignedByte();
+			if (version != FORMAT_VERSION) {
+				throw new IOException("Unsupported route table format version " + version);
+			}
+			int kind = in.readUnsignedByte();
+			if (kind != DELTA && kind != SNAPSHOT) {
+				throw new IOException("Unknown route table update kind " + kind);
+			}
+			int base = in.readInt();
+			int target = in.readInt();
+			boolean snapshot = kind == SNAPSHOT;
+			if (!snapshot) {
+				int checksum = checksum(routes);
+				if (checksum != base) {
+					throw new IllegalStateException(format("Route table %08x is not the base %08x of the delta",
+							checksum, base));
+				}
+			}
+			Update result = new Update(snapshot);
+			List<String> strings = new ArrayList<>();
+			int count = readVarint(in);
+			for (int i = 0; i < count; i++) {
+				int op = in.readUnsignedByte();
+				String httpMethod = readString(in, strings);
+				String uri = readString(in, strings);
+				HeaderConditions conditions = HeaderConditions.parse(readString(in, strings));
+				String key = Route.keyOf(httpMethod, uri, conditions);
+				if (op != ADD && op != REMOVE && op != REPLACE) {
+					throw new IOException("Unknown route table operation " + op);
+				}
+				if (op == REMOVE) {
+					if (!routes.containsKey(key)) {
+						throw new IllegalStateException("No route to remove: " + key);
+					}
+					result.removed.add(key);
+					continue;
+				}
+				if (!snapshot && (op == ADD) == routes.containsKey(key)) {
+					throw new IllegalStateException((op == ADD ? "Route already exists: " : "No route to replace: ") + key);
+				}
+				Class<?> controllerClass = loadClass(readString(in, strings));
+				Method method = methodLoader.load(controllerClass, readString(in, strings));
+				Route route = new Route(httpMethod, uri, controllerClass, method, null, null, conditions);
+				route.binder = ArgumentBinder.compile(method, route.urlTemplate);
+				result.routes.add(route);
+			}
+			int checksum = checksum(applied(routes, result));
+			if (checksum != target) {
+				throw new IllegalStateException(format("Route table %08x does not match %08x after the update",
+						checksum, target));
+			}
+			return result;
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Malformed route table update", e);
+		} catch (ClassNotFoundException | NoSuchMethodException e) {
+			throw new IllegalStateException("Cannot resolve handler of route table update", e);
+		}
+	}
+
+	/**
+	 * Routes to remove (by key) and routes to register, in that order.
+	 */
+	static final class Update {
+
+		final boolean snapshot;
+		final List<String> removed = new ArrayList<>();
+		final List<Route> routes = new ArrayList<>();
+
+		Update(boolean snapshot) {
+			this.snapshot = snapshot;
+		}
+
+	}
+
+	/**
+	 * Route table {@code routes} turns into once {@code update} is applied.
+	 */
+	private static Map<String, Route> applied(Map<String, Route> routes, Update update) {
+		Map<String, Route> result = new HashMap<>();
+		if (!update.snapshot) {
+			result.putAll(routes);
+			for (String key : update.removed) {
+				result.remove(key);
+			}
+		}
+		for (Route route : update.routes) {
+			result.put(route.key(), route);
+		}
+		return result;
+	}
+
+	static boolean sameHandler(Route a, Route b) {
+		return handlerOf(a).equals(handlerOf(b));
+	}
+
+	private static String handlerOf(Route route) {
+		return route.controllerClass.getName() + '#' + route.controllerMethod.getName();
+	}
+
+	private static Class<?> loadClass(String name) throws ClassNotFoundException {
+		ClassLoader loader = Thread.currentThread().getContextClassLoader();
+		return Class.forName(name, false, loader != null ? loader : RouteTableCodec.class.getClassLoader());
+	}
+
+	private static String readString(DataInputStream in, List<String> strings) throws IOException {
+		int ref = readVarint(in);
+		if (ref == 0) {
+			String value = in.readUTF();
+			strings.add(value);
+			return value;
+		}
+		if (ref > strings.size()) {
+			throw new IOException("Dangling string reference " + ref);
+		}
+		return strings.get(ref - 1);
+	}
+
+	private static int readVarint(DataInputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if (b < 0x80) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	private static final class Writer {
+
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final DataOutputStream out = new DataOutputStream(bytes);
+		private final Map<String, Integer> strings = new HashMap<>();
+
+		Writer(int kind, int base, int target, int count) {
+			try {
+				out.writeByte(FORMAT_VERSION);
+				out.writeByte(kind);
+				out.writeInt(base);
+				out.writeInt(target);
+				writeVarint(count);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		void write(int op, Route route) {
+			try {
+				out.writeByte(op);
+				writeString(route.httpMethod);
+				writeString(route.uri);
+				writeString(route.getHeaderConditions());
+				if (op != REMOVE) {
+					writeString(route.controllerClass.getName());
+					writeString(route.controllerMethod.getName());
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		byte[] toByteArray() {
+			return bytes.toByteArray();
+		}
+
+		private void writeString(String value) throws IOException {
+			Integer ref = strings.get(value);
+			if (ref != null) {
+				writeVarint(ref);
+				return;
+			}
+			strings.put(value, strings.size() + 1);
+			writeVarint(0);
+			out.writeUTF(value);
+		}
+
+		private void writeVarint(int value) throws IOException {
+			while ((value & ~0x7F) != 0) {
+				out.writeByte((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			out.writeByte(value);
+		}
+
+	}
+
+}
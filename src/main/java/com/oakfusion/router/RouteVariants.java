@@ -0,0 +1,272 @@
+package com.oakfusion.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Routes sharing a method and path, told apart by {@link HeaderConditions},
+ * compiled into a decision table: for every header some route has a condition
+ * on, the bitmask of routes accepting each required value, indexed by
+ * {@link HeaderValues} id, and the bitmask of routes accepting any value.
+ * Selection looks every header up once, intersects the masks, and picks the
+ * earliest registered route left.
+ *
+ * {@code Accept} is read as a list of media ranges, any of which may match;
+ * {@code type/*} and {@code *}{@code /*} ranges are honored, quality values are
+ * not weighed, and a request without the header accepts every route. Media
+ * type parameters are ignored for {@code Content-Type}. Other headers have to
+ * equal the required value, ignoring case.
+ *
+ * The table is immutable and held by the first registered route, which the
+ * route tree stores; registering or removing a route of the same method and
+ * path builds a new one. A lone route without conditions has no table.
+ */
+final class RouteVariants {
+
+	static final int MAX_VARIANTS = Long.SIZE;
+
+	private static final int VALUE = 0;
+	private static final int MEDIA_TYPE = 1;
+	private static final int MEDIA_RANGES = 2;
+
+	private static final int[] NO_IDS = {};
+	private static final long[] NO_MASKS = {};
+
+	final Route[] routes;
+	private final long all;
+	private final String[] headers;
+	private final int[] kinds;
+	private final long[] any;
+	private final int[][] ids;
+	private final long[][] masks;
+
+	private RouteVariants(List<Route> variants) {
+		routes = variants.toArray(new Route[0]);
+		all = routes.length == MAX_VARIANTS ? -1L : (1L << routes.length) - 1;
+		List<String> names = new ArrayList<>();
+		for (Route route : routes) {
+			for (int i = 0; route.conditions != null && i < route.conditions.names.length; i++) {
+				if (!names.contains(route.conditions.names[i])) {
+					names.add(route.conditions.names[i]);
+				}
+			}
+		}
+		headers = names.toArray(new String[0]);
+		kinds = new int[headers.length];
+		any = new long[headers.length];
+		ids = new int[headers.length][];
+		masks = new long[headers.length][];
+		for (int h = 0; h < headers.length; h++) {
+			kinds[h] = headers[h].equals(HeaderConditions.ACCEPT) ? MEDIA_RANGES
+					: headers[h].equals(HeaderConditions.CONTENT_TYPE) ? MEDIA_TYPE : VALUE;
+			ids[h] = NO_IDS;
+			masks[h] = NO_MASKS;
+			for (int r = 0; r < routes.length; r++) {
+				String value = valueOf(routes[r], headers[h]);
+				if (value == null) {
+					any[h] |= 1L << r;
+					continue;
+				}
+				accept(h, HeaderValues.register(value), r);
+				int slash = value.indexOf('/');
+				if (kinds[h] == MEDIA_RANGES && slash > 0) {
+					accept(h, HeaderValues.register(value.substring(0, slash) + "/*"), r);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Route to store in the tree once {@code route} is registered next to
+	 * {@code stored} (the route stored so far, or <code>null</code>); replaces
+	 * a route with the same conditions.
+	 */
+	static Route with(Route stored, Route route) {
+		List<Route> variants = variantsOf(stored);
+		int index = indexOf(variants, route);
+		if (index >= 0) {
+			variants.set(index, route);
+		} else {
+			if (variants.size() == MAX_VARIANTS) {
+				throw new IllegalStateException(String.format("Too many header variants of %s %s",
+						route.httpMethod, route.uri));
+			}
+			variants.add(route);
+		}
+		return group(variants);
+	}
+
+	/**
+	 * Route to store in the tree once {@code route} is removed from the ones
+	 * of {@code stored}, or <code>null</code> if none is left.
+	 */
+	static Route without(Route stored, Route route) {
+		List<Route> variants = variantsOf(stored);
+		int index = indexOf(variants, route);
+		if (index >= 0) {
+			variants.remove(index);
+		}
+		return variants.isEmpty() ? null : group(variants);
+	}
+
+	/**
+	 * Route of {@code stored} accepting {@code headers} (<code>null</code> when
+	 * the request has none), or <code>null</code> if there is none.
+	 */
+	static Route select(Route stored, Headers headers) {
+		RouteVariants variants = stored.variants;
+		return variants == null ? stored : variants.select(headers);
+	}
+
+	private Route select(Headers headers) {
+		long candidates = all;
+		for (int h = 0; h < this.headers.length && candidates != 0; h++) {
+			CharSequence value = headers == null ? null : headers.get(this.headers[h]);
+			candidates &= kinds[h] == MEDIA_RANGES ? acceptedRanges(h, value) : accepted(h, value);
+		}
+		return candidates == 0 ? null : routes[Long.numberOfTrailingZeros(candidates)];
+	}
+
+	/**
+	 * Status for {@code headers} that {@link #select(Route, Headers)} found no
+	 * route of {@code stored} for: 415 when {@code Content-Type} is the header
+	 * that left no route, 406 when {@code Accept} or another header did.
+	 */
+	static int rejectionStatus(Route stored, Headers headers) {
+		RouteVariants variants = stored.variants;
+		return variants != null && variants.rejectingKind(headers) == MEDIA_TYPE ? 415 : 406;
+	}
+
+	private int rejectingKind(Headers headers) {
+		long candidates = all;
+		for (int h = 0; h < this.headers.length; h++) {
+			CharSequence value = headers == null ? null : headers.get(this.headers[h]);
+			candidates &= kinds[h] == MEDIA_RANGES ? acceptedRanges(h, value) : accepted(h, value);
+			if (candidates == 0) {
+				return kinds[h];
+			}
+		}
+		return VALUE;
+	}
+
+	private long accepted(int h, CharSequence value) {
+		if (value == null) {
+			return any[h];
+		}
+		int end = kinds[h] == MEDIA_TYPE ? parametersStart(value, 0, value.length()) : value.length();
+		return any[h] | maskOf(h, idOf(value, 0, end));
+	}
+
+	private long acceptedRanges(int h, CharSequence value) {
+		if (value == null) {
+			return all;
+		}
+		long mask = any[h];
+		int length = value.length();
+		for (int start = 0; start < length; ) {
+			int end = start;
+			while (end < length && value.charAt(end) != ',') {
+				end++;
+			}
+			int rangeEnd = parametersStart(value, start, end);
+			int first = skipSpaces(value, start, rangeEnd);
+			if (rangeEnd - first == 3 && value.charAt(first) == '*' && value.charAt(first + 1) == '/'
+					&& value.charAt(first + 2) == '*') {
+				return all;
+			}
+			mask |= maskOf(h, idOf(value, start, rangeEnd));
+			start = end + 1;
+		}
+		return mask;
+	}
+
+	private long maskOf(int h, int id) {
+		int[] known = ids[h];
+		for (int i = 0; i < known.length; i++) {
+			if (known[i] == id) {
+				return masks[h][i];
+			}
+		}
+		return 0;
+	}
+
+	private void accept(int h, int id, int route) {
+		int[] known = ids[h];
+		for (int i = 0; i < known.length; i++) {
+			if (known[i] == id) {
+				masks[h][i] |= 1L << route;
+				return;
+			}
+		}
+		ids[h] = Arrays.copyOf(known, known.length + 1);
+		ids[h][known.length] = id;
+		masks[h] = Arrays.copyOf(masks[h], known.length + 1);
+		masks[h][known.length] = 1L << route;
+	}
+
+	private static int idOf(CharSequence value, int start, int end) {
+		int first = skipSpaces(value, start, end);
+		int last = end;
+		while (last > first && (value.charAt(last - 1) == ' ' || value.charAt(last - 1) == '\t')) {
+			last--;
+		}
+		return HeaderValues.idOf(value, first, last);
+	}
+
+	private static int parametersStart(CharSequence value, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (value.charAt(i) == ';') {
+				return i;
+			}
+		}
+		return end;
+	}
+
+	private static int skipSpaces(CharSequence value, int start, int end) {
+		int pos = start;
+		while (pos < end && (value.charAt(pos) == ' ' || value.charAt(pos) == '\t')) {
+			pos++;
+		}
+		return pos;
+	}
+
+	private static String valueOf(Route route, String header) {
+		for (int i = 0; route.conditions != null && i < route.conditions.names.length; i++) {
+			if (route.conditions.names[i].equals(header)) {
+				return route.conditions.values[i];
+			}
+		}
+		return null;
+	}
+
+	private static List<Route> variantsOf(Route stored) {
+		List<Route> variants = new ArrayList<>();
+		if (stored != null) {
+			if (stored.variants == null) {
+				variants.add(stored);
+			} else {
+				Collections.addAll(variants, stored.variants.routes);
+			}
+		}
+		return variants;
+	}
+
+	private static int indexOf(List<Route> variants, Route route) {
+		for (int i = 0; i < variants.size(); i++) {
+			if (Objects.equals(variants.get(i).conditions, route.conditions)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static Route group(List<Route> variants) {
+		Route first = variants.get(0);
+		first.variants = variants.size() == 1 && first.conditions == null ? null : new RouteVariants(variants);
+		return first;
+	}
+
+}
@@ -1,15 +1,47 @@
 package com.oakfusion.router;
 
+import com.oakfusion.router.util.Captures;
+import com.oakfusion.router.util.CompiledMatcher;
+import com.oakfusion.router.util.RegionKey;
+import com.oakfusion.router.util.UriNormalization;
 import com.oakfusion.router.util.UriTree;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
 
 import static java.lang.String.format;
+import static org.apache.commons.lang3.StringUtils.split;
 
 public class Router {
 
 	public static final Route R_404 = new Route("", "", null, null);
 
+	/**
+	 * Default result of {@link #dispatch(RouteMatch)} for a request refused by
+	 * the admission limits of its route.
+	 */
+	public static final Object REJECTED = new Object() {
+		@Override
+		public String toString() {
+			return "REJECTED";
+		}
+	};
+
+	private static final UriNormalization HOST_NORMALIZATION = UriNormalization.DEFAULT.withCaseFolding(true);
+	private static final String WILDCARD_PREFIX = "*.";
+
 	protected RouteContext ctx;
 
 	private final HttpMethodBuilder httpMethodBuilder = new HttpMethodBuilder();
@@ -17,7 +49,117 @@ public class Router {
 	private final HandlerMethodBuilder handlerMethodBuilder = new HandlerMethodBuilder();
 
 	private final  MethodLoader methodLoader = new MethodLoader();
-	private final UriTree<Route> routes = new UriTree<>("/");
+	private final Map<String, UriTree<Route>> routes = new HashMap<>();
+	private UriTree<MethodSlots> paths;
+	private final Map<String, Route> registered = new LinkedHashMap<>();
+	private final UriNormalization normalization;
+
+	private final Map<String, Router> hosts = new HashMap<>();
+	private final Map<String, Router> wildcardHosts = new HashMap<>();
+	private final Map<List<Object>, Router> tenantsByConfiguration = new HashMap<>();
+	private boolean shared;
+
+	private final Map<String, UrlTemplate> templatesByHandler = new HashMap<>();
+	private final Map<String, UrlTemplate> templatesByName = new HashMap<>();
+
+	private ControllerProvider controllerProvider = new SingletonControllerProvider();
+	private Object rejection = REJECTED;
+	private final List<PrefixedInterceptor> interceptors = new ArrayList<>();
+	private final List<Mount> mounts = new ArrayList<>();
+	private int sampleEvery;
+	private int reorderEvery;
+	private Executor reorderExecutor;
+	private boolean compiledMatching;
+	/** Matchers generated for the route trees as they are, dropped when routes change */
+	private volatile CompiledRoutes compiled;
+
+	public Router() {
+		this(UriNormalization.DEFAULT);
+	}
+
+	/**
+	 * Creates a router normalizing request paths by the given rules while they
+	 * are matched; see {@link UriNormalization}.
+	 */
+	public Router(UriNormalization normalization) {
+		this.normalization = normalization;
+	}
+
+	/**
+	 * Switches to a path-first layout: the route tree is keyed by path segments,
+	 * each path holding its routes in a table indexed by HTTP method together
+	 * with the bitmask of methods it has routes for. A walk skips paths without
+	 * a route for the method, backtracking to parameters the way the default
+	 * layout does, and a miss walks the matching paths once more to tell a
+	 * missing path (404) from a missing method (405), the latter with the
+	 * methods to put in an {@code Allow} header.
+	 *
+	 * The default layout has the method at the top of the tree, and has to
+	 * repeat the lookup for every method to tell 405 from 404.
+	 */
+	public Router pathFirst() {
+		checkNotShared();
+		if (!registered.isEmpty()) {
+			throw new IllegalStateException("Route layout has to be chosen before routes are registered");
+		}
+		paths = newTree();
+		return this;
+	}
+
+	/**
+	 * Samples one lookup in {@code sampleEvery} to count which children of each
+	 * route tree node lookups go through, and every {@code reorderEvery} samples
+	 * moves the hottest ones ahead of the others; see
+	 * {@link UriTree#adaptChildOrder(int, int, Executor)}. Lookups on dominant
+	 * paths get cheaper as traffic settles, their results stay the same. The
+	 * order is rebuilt on the common {@link ForkJoinPool}, off the request
+	 * threads.
+	 */
+	public Router adaptChildOrder(int sampleEvery, int reorderEvery) {
+		return adaptChildOrder(sampleEvery, reorderEvery, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Same as {@link #adaptChildOrder(int, int)}, rebuilding the order on
+	 * {@code executor}.
+	 */
+	public Router adaptChildOrder(int sampleEvery, int reorderEvery, Executor executor) {
+		this.sampleEvery = sampleEvery;
+		this.reorderEvery = reorderEvery;
+		this.reorderExecutor = executor;
+		if (paths != null) {
+			paths.adaptChildOrder(sampleEvery, reorderEvery, executor);
+		}
+		for (UriTree<Route> tree : routes.values()) {
+			tree.adaptChildOrder(sampleEvery, reorderEvery, executor);
+		}
+		return this;
+	}
+
+	public boolean isPathFirst() {
+		return paths != null;
+	}
+
+	/**
+	 * Matches request paths through a class generated for the route trees
+	 * rather than by walking them, see {@link CompiledMatcher}; lookups find
+	 * the same routes, in both layouts. Meant for route tables that rarely
+	 * change: the generated matcher is dropped whenever a route is added or
+	 * removed, and generated again by the first lookup after. Where no class
+	 * can be generated (before Java 15, or with case folding), lookups keep
+	 * walking the trees. Adapting the child order (see
+	 * {@link #adaptChildOrder(int, int)}) has no effect on generated matchers.
+	 */
+	public Router compiledMatching() {
+		checkNotShared();
+		compiledMatching = true;
+		compiled = null;
+		return this;
+	}
+
+	public boolean isCompiledMatching() {
+		return compiledMatching;
+	}
 
 	public HttpMethodBuilder route(String uri) {
 		ctx = new RouteContext();
@@ -26,12 +168,669 @@ public class Router {
 	}
 
 	public Route getRouteFor(String httpMethod, String uri) {
-		String path = format("/%s%s", httpMethod, uri);
-		UriTree<Route> node = routes.get(path);
-		if (node == null) {
-			return R_404;
+		if (LookupEvent.PROBE.isEnabled()) {
+			return recordedMatch(httpMethod, uri, null).getRoute();
+		}
+		Route route = find(httpMethod, uri, 0, pathEnd(uri), null);
+		return route == null ? R_404 : route;
+	}
+
+	/**
+	 * Same lookup as {@link #getRouteFor(String, String)}, keeping track of the
+	 * path parameters of the matched route. When no route matches, the result
+	 * tells whether the path has routes for other methods (405) or none (404).
+	 */
+	public RouteMatch match(String httpMethod, CharSequence uri) {
+		return match(httpMethod, uri, (Headers) null);
+	}
+
+	/**
+	 * Same as {@link #match(String, CharSequence)}, choosing among routes of the
+	 * path that are told apart by header conditions (see
+	 * {@link HandlerMethodBuilder#producing(String)}) by the given request
+	 * headers. The choice is a decision table over interned header values, see
+	 * {@link RouteVariants}; routes without conditions never look at headers.
+	 * When the path and method have routes, but none accepting the headers,
+	 * the result is a 415 if the {@code Content-Type} ruled out the last of
+	 * them, a 406 otherwise.
+	 */
+	public RouteMatch match(String httpMethod, CharSequence uri, Headers headers) {
+		if (!LookupEvent.PROBE.isEnabled()) {
+			return match(httpMethod, uri, 0, pathEnd(uri), headers);
 		}
-		return node.getData();
+		return recordedMatch(httpMethod, uri, headers);
+	}
+
+	/**
+	 * Lookup reported as a {@link LookupEvent}; {@link #getRouteFor(String, String)}
+	 * goes through it as well while the event is enabled.
+	 */
+	private RouteMatch recordedMatch(String httpMethod, CharSequence uri, Headers headers) {
+		int end = pathEnd(uri);
+		LookupEvent event = new LookupEvent();
+		event.begin();
+		RouteMatch match = match(httpMethod, uri, 0, end, headers);
+		event.end();
+		if (event.shouldCommit()) {
+			event.method = httpMethod;
+			event.path = uri.subSequence(0, end).toString();
+			event.pattern = match.isFound() ? match.getRoute().getUri() : null;
+			event.status = match.getStatus();
+			event.depth = match.getDepth();
+			event.commit();
+		}
+		return match;
+	}
+
+	private RouteMatch match(String httpMethod, CharSequence uri, int start, int end, Headers headers) {
+		RouteMatch match = matchOwn(httpMethod, uri, start, end, headers);
+		if (match.isFound() || mounts.isEmpty()) {
+			return match;
+		}
+		Mount mount = mountFor(uri, start, end);
+		if (mount == null) {
+			return match;
+		}
+		RouteMatch mounted = mount.router.match(httpMethod, uri, mount.offset(uri, start, end, normalization), end,
+				headers);
+		mounted.mountedAt(mount.segments.length);
+		return mounted.isFound() || match.getStatus() == 404 ? mounted : match;
+	}
+
+	private RouteMatch matchOwn(String httpMethod, CharSequence uri, int start, int end, Headers headers) {
+		Captures captures = new Captures();
+		if (paths != null) {
+			int methodId = HttpMethods.idOf(httpMethod);
+			MethodSlots slots = findPath(uri, start, end, captures, MethodSlots.having(methodId));
+			if (slots == null) {
+				captures.clear();
+				MethodSlots.AllowedMethods allowed = new MethodSlots.AllowedMethods();
+				findPath(uri, start, end, null, allowed);
+				return new RouteMatch(R_404, uri, captures, normalization, allowed.mask);
+			}
+			return selected(slots.get(methodId), headers, uri, captures, slots.mask());
+		}
+		Route route = findOwn(httpMethod, uri, start, end, captures);
+		if (route == null) {
+			captures.clear();
+			return new RouteMatch(R_404, uri, captures, normalization, allowedMethods(uri, start, end));
+		}
+		return selected(route, headers, uri, captures, 0L);
+	}
+
+	private RouteMatch selected(Route stored, Headers headers, CharSequence uri, Captures captures,
+								long allowedMethods) {
+		Route route = RouteVariants.select(stored, headers);
+		if (route == null) {
+			captures.clear();
+			return RouteMatch.rejected(uri, captures, normalization, allowedMethods,
+					RouteVariants.rejectionStatus(stored, headers));
+		}
+		return new RouteMatch(route, uri, captures, normalization, allowedMethods);
+	}
+
+	/**
+	 * Invokes the handler of a matched route on the controller supplied by the
+	 * {@link ControllerProvider}, through the {@link Invoker} composed for the
+	 * route. Handler arguments are bound to the path parameters of the route by
+	 * position, see {@link ArgumentBinder}; a {@link RouteMatch} argument receives
+	 * the match itself.
+	 *
+	 * A result found in the {@link ResponseCache} of the route is returned
+	 * without invoking the handler. When the route has {@link Admission} limits
+	 * and the request is over them, the rejection result is returned right away.
+	 */
+	public Object dispatch(RouteMatch match) {
+		if (!match.isFound()) {
+			throw new IllegalArgumentException("No route to dispatch to: " + match.getUri());
+		}
+		if (!DispatchEvent.PROBE.isEnabled()) {
+			return invoke(match);
+		}
+		DispatchEvent event = new DispatchEvent();
+		event.begin();
+		Throwable failure = null;
+		try {
+			return match.getRoute().invoker.invoke(match);
+		} catch (RuntimeException | Error e) {
+			failure = e;
+			throw e;
+		} catch (Exception e) {
+			failure = e;
+			throw new RuntimeException(e);
+		} finally {
+			event.end();
+			if (event.shouldCommit()) {
+				Route route = match.getRoute();
+				event.method = route.getHttpMethod();
+				event.pattern = route.getUri();
+				event.handler = route.getControllerClass().getName() + "#" + route.getControllerMethod().getName();
+				event.failure = failure == null ? null : failure.getClass().getName();
+				event.commit();
+			}
+		}
+	}
+
+	private static Object invoke(RouteMatch match) {
+		try {
+			return match.getRoute().invoker.invoke(match);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Result returned by {@link #dispatch(RouteMatch)} for requests refused by
+	 * admission limits; {@link #REJECTED} by default.
+	 */
+	public Router rejectWith(Object rejection) {
+		checkNotShared();
+		this.rejection = rejection;
+		return this;
+	}
+
+	public Router controllerProvider(ControllerProvider controllerProvider) {
+		checkNotShared();
+		this.controllerProvider = controllerProvider;
+		return this;
+	}
+
+	/**
+	 * Runs {@code interceptor} around every route.
+	 */
+	public Router intercept(Interceptor interceptor) {
+		return intercept(UriTree.PATH_SEPARATOR, interceptor);
+	}
+
+	/**
+	 * Runs {@code interceptor} around routes whose pattern starts with the
+	 * segments of {@code prefix}. Interceptors registered first run outermost.
+	 * Invokers of routes registered so far are composed again; routes outside
+	 * the prefix are not affected.
+	 */
+	public Router intercept(String prefix, Interceptor interceptor) {
+		checkNotShared();
+		interceptors.add(new PrefixedInterceptor(prefix, interceptor));
+		for (Route route : registered.values()) {
+			route.invoker = composeInvoker(route);
+		}
+		return this;
+	}
+
+	Object getRejection() {
+		return rejection;
+	}
+
+	ControllerProvider getControllerProvider() {
+		return controllerProvider;
+	}
+
+	private Invoker composeInvoker(Route route) {
+		if (route.origin != null) {
+			return InvokerChain.delegateTo(route.origin);
+		}
+		String[] segments = split(route.uri, UriTree.PATH_SEPARATOR);
+		List<Interceptor> matching = new ArrayList<>();
+		for (PrefixedInterceptor interceptor : interceptors) {
+			if (interceptor.appliesTo(segments)) {
+				matching.add(interceptor.interceptor);
+			}
+		}
+		return InvokerChain.compose(this, route, matching);
+	}
+
+	/**
+	 * Methods having a route for {@code uri}, as a mask of method ids; probes
+	 * the tree of every method.
+	 */
+	private long allowedMethods(CharSequence uri, int start, int end) {
+		long mask = 0;
+		for (String httpMethod : routes.keySet()) {
+			if (findOwn(httpMethod, uri, start, end, null) != null) {
+				mask |= HttpMethods.bit(HttpMethods.idOf(httpMethod));
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * Serves requests for {@code hostPattern} with the routes of {@code tenant}.
+	 * The pattern is either an exact host name or {@code *.domain}, matching any
+	 * single-label subdomain of {@code domain}. Requests for hosts matching no
+	 * pattern are served by the routes of this router.
+	 *
+	 * A tenant configured the same way as one added before (see
+	 * {@link #configuration()}) is served by the router added first. Both then
+	 * serve several hosts and cannot be changed any more; changing either
+	 * throws {@link IllegalStateException}.
+	 */
+	public Router host(String hostPattern, Router tenant) {
+		checkNotShared();
+		List<Object> configuration = tenant.configuration();
+		Router shared = tenantsByConfiguration.get(configuration);
+		if (shared != null && shared != tenant && shared.configuration().equals(configuration)) {
+			shared.shared = true;
+			tenant.shared = true;
+		} else {
+			shared = tenant;
+			tenantsByConfiguration.put(configuration, tenant);
+		}
+		String pattern = HOST_NORMALIZATION.foldKey(hostPattern);
+		if (pattern.startsWith(WILDCARD_PREFIX)) {
+			wildcardHosts.put(pattern.substring(WILDCARD_PREFIX.length()), shared);
+		} else {
+			hosts.put(pattern, shared);
+		}
+		return this;
+	}
+
+	/**
+	 * Router serving requests for {@code host}, which may carry a port. Resolved
+	 * with at most two hash lookups: the exact host, then its parent domain
+	 * for wildcard patterns.
+	 */
+	public Router forHost(CharSequence host) {
+		if (hosts.isEmpty() && wildcardHosts.isEmpty()) {
+			return this;
+		}
+		int end = hostEnd(host);
+		RegionKey key = new RegionKey(host, HOST_NORMALIZATION);
+		Router tenant = hosts.get(key.of(0, end));
+		if (tenant != null) {
+			return tenant;
+		}
+		for (int i = 0; i < end; i++) {
+			if (host.charAt(i) == '.') {
+				tenant = wildcardHosts.get(key.of(i + 1, end));
+				break;
+			}
+		}
+		return tenant == null ? this : tenant;
+	}
+
+	public Route getRouteFor(CharSequence host, String httpMethod, String uri) {
+		return forHost(host).getRouteFor(httpMethod, uri);
+	}
+
+	public RouteMatch match(CharSequence host, String httpMethod, CharSequence uri) {
+		return forHost(host).match(httpMethod, uri);
+	}
+
+	/**
+	 * Template building URLs for the route handled by {@code controllerMethod}
+	 * of {@code controllerClass}. When several routes share the handler, the
+	 * first one registered wins.
+	 */
+	public UrlTemplate urlFor(Class<?> controllerClass, String controllerMethod) {
+		UrlTemplate template = templatesByHandler.get(handlerKey(controllerClass, controllerMethod));
+		if (template == null) {
+			throw new IllegalArgumentException(format("No route handled by %s.%s",
+					controllerClass.getName(), controllerMethod));
+		}
+		return template;
+	}
+
+	/**
+	 * Template building URLs for the route registered under {@code name};
+	 * see {@link HttpMethodBuilder#named(String)}.
+	 */
+	public UrlTemplate urlFor(String name) {
+		UrlTemplate template = templatesByName.get(name);
+		if (template == null) {
+			throw new IllegalArgumentException("No route named " + name);
+		}
+		return template;
+	}
+
+	/**
+	 * Serves requests under {@code prefix} with the routes of {@code subRouter},
+	 * matched against the rest of the path in place. Routes of this router take
+	 * precedence, and the longest matching prefix wins among mounts. Mounted
+	 * routes are dispatched the way their own router sets them up; interceptors
+	 * of this router do not apply to them. The prefix has to be static.
+	 */
+	public Router mount(String prefix, Router subRouter) {
+		checkNotShared();
+		if (subRouter == this) {
+			throw new IllegalArgumentException("A router cannot be mounted on itself");
+		}
+		Mount mount = new Mount(prefix, subRouter, normalization);
+		int i = 0;
+		while (i < mounts.size() && mounts.get(i).segments.length >= mount.segments.length) {
+			i++;
+		}
+		mounts.add(i, mount);
+		return this;
+	}
+
+	/**
+	 * Registers the routes of mounted routers (recursively) as routes of this
+	 * router under their prefix and drops the mounts, so that a lookup walks a
+	 * single tree. Handlers are not resolved again and admission limits and
+	 * caches stay shared with the mounted routes; dispatching still goes
+	 * through the invoker of the mounted route. Routes this router already
+	 * has for the same method and pattern are kept.
+	 */
+	public Router flatten() {
+		checkNotShared();
+		for (Mount mount : mounts) {
+			addMounted(mount.prefix, mount.router);
+		}
+		mounts.clear();
+		return this;
+	}
+
+	private void addMounted(String prefix, Router router) {
+		for (Route route : router.registered.values()) {
+			String uri = Mount.join(prefix, route.uri);
+			Route flattened = new Route(route.httpMethod, uri, route.controllerClass, route.controllerMethod,
+					route.admission, route.responseCache, route.conditions);
+			if (!registered.containsKey(flattened.key())) {
+				flattened.origin = route.origin == null ? route : route.origin;
+				addRoute(flattened);
+			}
+		}
+		for (Mount mount : router.mounts) {
+			addMounted(Mount.join(prefix, mount.prefix), mount.router);
+		}
+	}
+
+	/**
+	 * Warm-up replaying requests through lookup, parameter binding and invoker
+	 * resolution of this router, to be run before it takes traffic.
+	 */
+	public WarmUp warmUp() {
+		return new WarmUp(this);
+	}
+
+	/**
+	 * Adds a request to {@code warmUp} for every route of this router, of
+	 * mounted routers and of tenants, parameters filled with values their
+	 * handlers accept. Requests for a tenant go to one of its hosts
+	 * ({@code host} is null for this router's own routes).
+	 */
+	void addSampleRequests(String host, String prefix, WarmUp warmUp) {
+		for (Route route : registered.values()) {
+			UrlTemplate template = route.getUrlTemplate();
+			Object[] values = route.binder.sampleParameters(template.getParameterCount());
+			warmUp.request(host, route.httpMethod, Mount.join(prefix, template.expand(values)));
+		}
+		for (Mount mount : mounts) {
+			mount.router.addSampleRequests(host, Mount.join(prefix, mount.prefix), warmUp);
+		}
+		for (Map.Entry<String, Router> tenant : hosts.entrySet()) {
+			tenant.getValue().addSampleRequests(tenant.getKey(), UriTree.PATH_SEPARATOR, warmUp);
+		}
+		for (Map.Entry<String, Router> tenant : wildcardHosts.entrySet()) {
+			tenant.getValue().addSampleRequests("warmup." + tenant.getKey(), UriTree.PATH_SEPARATOR, warmUp);
+		}
+	}
+
+	/**
+	 * Lookup of {@link #match(String, CharSequence)} without the
+	 * {@link LookupEvent}, for requests that are not real traffic.
+	 */
+	RouteMatch matchUnrecorded(String httpMethod, CharSequence uri) {
+		return match(httpMethod, uri, 0, pathEnd(uri), null);
+	}
+
+	/**
+	 * Stops or resumes the sampling of {@link #adaptChildOrder(int, int)} on
+	 * this router, mounted routers and tenants, so that requests that are not
+	 * real traffic leave the ordering alone.
+	 */
+	void sampleChildOrder(boolean enabled) {
+		int every = enabled ? sampleEvery : 0;
+		int reorder = Math.max(1, reorderEvery);
+		if (paths != null) {
+			paths.adaptChildOrder(every, reorder, reorderExecutor);
+		}
+		for (UriTree<Route> tree : routes.values()) {
+			tree.adaptChildOrder(every, reorder, reorderExecutor);
+		}
+		for (Mount mount : mounts) {
+			mount.router.sampleChildOrder(enabled);
+		}
+		for (Router tenant : hosts.values()) {
+			tenant.sampleChildOrder(enabled);
+		}
+		for (Router tenant : wildcardHosts.values()) {
+			tenant.sampleChildOrder(enabled);
+		}
+	}
+
+	/**
+	 * Checksum of the routes registered on this router, independent of the
+	 * order they were registered in. Routers with equal checksums route the
+	 * same patterns to the same handlers.
+	 */
+	public int getChecksum() {
+		return RouteTableCodec.checksum(registered);
+	}
+
+	/**
+	 * Encodes all routes of this router, to be applied by a router that cannot
+	 * apply a delta; see {@link RouteTableCodec} for the format.
+	 */
+	public byte[] exportSnapshot() {
+		return RouteTableCodec.snapshot(registered);
+	}
+
+	/**
+	 * Encodes the changes turning the routes of {@code base} into the routes of
+	 * this router, to be applied by routers whose routes are those of
+	 * {@code base}. Mounted routers are not included.
+	 */
+	public byte[] exportDelta(Router base) {
+		return RouteTableCodec.delta(base.registered, registered);
+	}
+
+	/**
+	 * Applies a delta or a snapshot exported by another router. Handlers are
+	 * resolved, and the checksum of the resulting routes verified, before any
+	 * route changes; routes added this way have no admission limits or
+	 * response cache.
+	 *
+	 * @throws IllegalStateException if the routes of this router are not the
+	 *                               base of the delta, in which case a snapshot
+	 *                               has to be applied instead, or the update
+	 *                               does not lead to the routes it was exported
+	 *                               from; the routes are left as they were
+	 */
+	public Router apply(byte[] update) {
+		RouteTableCodec.Update decoded = RouteTableCodec.decode(update, registered, methodLoader);
+		if (decoded.snapshot) {
+			Set<String> kept = new HashSet<>();
+			for (Route route : decoded.routes) {
+				kept.add(route.key());
+			}
+			for (Route route : new ArrayList<>(registered.values())) {
+				if (!kept.contains(route.key())) {
+					removeRoute(route);
+				}
+			}
+		} else {
+			for (String key : decoded.removed) {
+				removeRoute(registered.get(key));
+			}
+		}
+		for (Route route : decoded.routes) {
+			Route current = registered.get(route.key());
+			if (current == null || !RouteTableCodec.sameHandler(current, route)) {
+				addRoute(route);
+				if (current != null) {
+					removeTemplates(current);
+				}
+				addTemplates(route);
+			}
+		}
+		return this;
+	}
+
+	private static String handlerKey(Class<?> controllerClass, String controllerMethod) {
+		return controllerClass.getName() + '#' + controllerMethod;
+	}
+
+	/**
+	 * Routes registered so far, in registration order.
+	 */
+	public List<Route> getRoutes() {
+		return new ArrayList<>(registered.values());
+	}
+
+	/**
+	 * Everything deciding how this router serves a request: layout,
+	 * normalization, routes in registration order by key and handler together
+	 * with their admission limits and caches, route names, interceptors,
+	 * mounts, hosts, controller provider and rejection result. Limits, caches,
+	 * interceptors, routers and the mounted routes routes were flattened from
+	 * compare by identity, so tenants with their own admission counters or
+	 * caches are never taken for one another.
+	 */
+	private List<Object> configuration() {
+		List<Object> configuration = new ArrayList<>();
+		configuration.add(normalization);
+		configuration.add(paths != null);
+		configuration.add(controllerProvider instanceof SingletonControllerProvider
+				? SingletonControllerProvider.class : controllerProvider);
+		configuration.add(rejection);
+		for (Route route : registered.values()) {
+			configuration.add(Arrays.asList(route.key(), route.controllerClass, route.controllerMethod,
+					route.admission, route.responseCache, route.origin));
+		}
+		for (Map.Entry<String, UrlTemplate> name : templatesByName.entrySet()) {
+			configuration.add(Arrays.asList(name.getKey(), name.getValue().getPattern()));
+		}
+		for (PrefixedInterceptor interceptor : interceptors) {
+			configuration.add(Arrays.asList(Arrays.asList(interceptor.prefix), interceptor.interceptor));
+		}
+		for (Mount mount : mounts) {
+			configuration.add(Arrays.asList(mount.prefix, mount.router));
+		}
+		configuration.add(new HashMap<>(hosts));
+		configuration.add(new HashMap<>(wildcardHosts));
+		return configuration;
+	}
+
+	private void checkNotShared() {
+		if (shared) {
+			throw new IllegalStateException("Router is shared by hosts configured the same way and cannot be changed");
+		}
+	}
+
+	private static int hostEnd(CharSequence host) {
+		int length = host.length();
+		if (length > 0 && host.charAt(0) == '[') {
+			for (int i = 1; i < length; i++) {
+				if (host.charAt(i) == ']') {
+					return i + 1;
+				}
+			}
+			return length;
+		}
+		for (int i = 0; i < length; i++) {
+			if (host.charAt(i) == ':') {
+				return i;
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Route for a request without headers; see {@link #match(String, CharSequence, Headers)}.
+	 */
+	private Route find(String httpMethod, CharSequence uri, int start, int end, Captures captures) {
+		Route route = findOwn(httpMethod, uri, start, end, captures);
+		if (route != null) {
+			route = RouteVariants.select(route, null);
+		}
+		if (route != null || mounts.isEmpty()) {
+			return route;
+		}
+		Mount mount = mountFor(uri, start, end);
+		return mount == null ? null
+				: mount.router.find(httpMethod, uri, mount.offset(uri, start, end, normalization), end, captures);
+	}
+
+	/**
+	 * Route stored in the tree for the method and path, before selecting among
+	 * its header variants.
+	 */
+	private Route findOwn(String httpMethod, CharSequence uri, int start, int end, Captures captures) {
+		if (paths != null) {
+			int methodId = HttpMethods.idOf(httpMethod);
+			MethodSlots slots = findPath(uri, start, end, captures, MethodSlots.having(methodId));
+			return slots == null ? null : slots.get(methodId);
+		}
+		CompiledRoutes compiled = compiledRoutes();
+		if (compiled != null) {
+			CompiledMatcher<Route> matcher = compiled.byMethod.get(httpMethod);
+			return matcher == null ? null : matcher.find(uri, start, end, captures, null);
+		}
+		UriTree<Route> tree = routes.get(httpMethod);
+		if (tree == null) {
+			return null;
+		}
+		UriTree<Route> node = tree.match(uri, start, end, captures);
+		return node == null ? null : node.getData();
+	}
+
+	/**
+	 * Slots of the path-first tree matching {@code uri[start, end)} and
+	 * accepted by {@code accepted}.
+	 */
+	private MethodSlots findPath(CharSequence uri, int start, int end, Captures captures,
+								 Predicate<MethodSlots> accepted) {
+		CompiledRoutes compiled = compiledRoutes();
+		if (compiled != null) {
+			return compiled.paths.find(uri, start, end, captures, accepted);
+		}
+		UriTree<MethodSlots> node = paths.match(uri, start, end, captures, accepted);
+		return node == null ? null : node.getData();
+	}
+
+	/**
+	 * Matchers generated for the route trees in compiled mode, generating them
+	 * when routes changed since; <code>null</code> otherwise.
+	 */
+	private CompiledRoutes compiledRoutes() {
+		CompiledRoutes current = compiled;
+		if (current != null || !compiledMatching) {
+			return current;
+		}
+		synchronized (routes) {
+			current = compiled;
+			if (current == null) {
+				current = new CompiledRoutes(routes, paths);
+				compiled = current;
+			}
+			return current;
+		}
+	}
+
+	/**
+	 * Mount with the longest prefix matching {@code uri[start, end)}, or null.
+	 */
+	private Mount mountFor(CharSequence uri, int start, int end) {
+		for (int i = 0; i < mounts.size(); i++) {
+			Mount mount = mounts.get(i);
+			if (mount.offset(uri, start, end, normalization) >= 0) {
+				return mount;
+			}
+		}
+		return null;
+	}
+
+	private static int pathEnd(CharSequence uri) {
+		for (int i = 0; i < uri.length(); i++) {
+			char c = uri.charAt(i);
+			if (c == '?' || c == '#') {
+				return i;
+			}
+		}
+		return uri.length();
 	}
 
 	protected class RouteContext {
@@ -39,6 +838,10 @@ public class Router {
 		public String httpMethod;
 		public Class<?> controllerClass;
 		public String controllerMethodName;
+		public String name;
+		public Admission admission;
+		public ResponseCache responseCache;
+		HeaderConditions conditions;
 	}
 
 	private RouteContext getContext() {
@@ -48,20 +851,134 @@ public class Router {
 	private Router completeChain() {
 		try {
 			Method method = methodLoader.load(ctx.controllerClass, ctx.controllerMethodName);
-			Route route = new Route(ctx.httpMethod, ctx.uri, ctx.controllerClass, method);
-			routes.put(ctx.httpMethod).put(ctx.uri, route);
+			Admission admission = ctx.admission == null ? null : ctx.admission.copy();
+			ResponseCache responseCache = null;
+			if (ctx.responseCache != null) {
+				if (!HttpMethod.GET.name().equals(ctx.httpMethod) && !HttpMethod.HEAD.name().equals(ctx.httpMethod)) {
+					throw new IllegalArgumentException("Only GET and HEAD routes can be cached, not " + ctx.httpMethod);
+				}
+				responseCache = ctx.responseCache.copy();
+			}
+			Route route = new Route(ctx.httpMethod, ctx.uri, ctx.controllerClass, method, admission, responseCache,
+					ctx.conditions);
+			addRoute(route);
+			addTemplates(route);
+			if (ctx.name != null) {
+				templatesByName.put(ctx.name, route.getUrlTemplate());
+			}
 			return this;
 		} catch (NoSuchMethodException e) {
 			throw new RuntimeException(e);
 		}
 	}
 
-	private enum HttpMethod {
+	/**
+	 * Registers a route whose handler is already resolved; see {@link RouteLoader}.
+	 */
+	void register(String httpMethod, String uri, Class<?> controllerClass, Method controllerMethod) {
+		Route route = new Route(httpMethod, uri, controllerClass, controllerMethod);
+		addRoute(route);
+		addTemplates(route);
+	}
+
+	private void addTemplates(Route route) {
+		String handlerKey = handlerKey(route.controllerClass, route.controllerMethod.getName());
+		if (!templatesByHandler.containsKey(handlerKey)) {
+			templatesByHandler.put(handlerKey, route.getUrlTemplate());
+		}
+	}
+
+	private void addRoute(Route route) {
+		checkNotShared();
+		if (route.binder == null) {
+			route.binder = ArgumentBinder.compile(route.controllerMethod, route.urlTemplate);
+		}
+		int methodId = HttpMethods.register(route.httpMethod);
+		if (paths != null) {
+			UriTree<MethodSlots> node = paths.find(route.uri);
+			MethodSlots slots = node == null ? null : node.getData();
+			if (slots == null) {
+				slots = new MethodSlots();
+				paths.put(route.uri, slots);
+			}
+			slots.put(methodId, RouteVariants.with(slots.get(methodId), route));
+		} else {
+			UriTree<Route> tree = routes.get(route.httpMethod);
+			if (tree == null) {
+				tree = newTree();
+				routes.put(route.httpMethod, tree);
+			}
+			UriTree<Route> node = tree.find(route.uri);
+			tree.put(route.uri, RouteVariants.with(node == null ? null : node.getData(), route));
+		}
+		registered.put(route.key(), route);
+		route.invoker = composeInvoker(route);
+		compiled = null;
+	}
+
+	private <V> UriTree<V> newTree() {
+		UriTree<V> tree = new UriTree<>("/", normalization);
+		return sampleEvery == 0 ? tree : tree.adaptChildOrder(sampleEvery, reorderEvery, reorderExecutor);
+	}
+
+	private void removeRoute(Route route) {
+		checkNotShared();
+		registered.remove(route.key());
+		if (paths != null) {
+			MethodSlots slots = paths.find(route.uri).getData();
+			int methodId = HttpMethods.idOf(route.httpMethod);
+			Route left = RouteVariants.without(slots.get(methodId), route);
+			if (left != null) {
+				slots.put(methodId, left);
+			} else {
+				slots.remove(methodId);
+				if (slots.isEmpty()) {
+					paths.remove(route.uri);
+				}
+			}
+		} else {
+			UriTree<Route> tree = routes.get(route.httpMethod);
+			Route left = RouteVariants.without(tree.find(route.uri).getData(), route);
+			if (left != null) {
+				tree.put(route.uri, left);
+			} else {
+				tree.remove(route.uri);
+			}
+		}
+		compiled = null;
+		removeTemplates(route);
+	}
+
+	/**
+	 * Drops the handler template of a route no longer registered, falling back
+	 * to the next route registered with the same handler.
+	 */
+	private void removeTemplates(Route route) {
+		String handlerKey = handlerKey(route.controllerClass, route.controllerMethod.getName());
+		if (templatesByHandler.get(handlerKey) != route.urlTemplate) {
+			return;
+		}
+		templatesByHandler.remove(handlerKey);
+		for (Route other : registered.values()) {
+			if (other.controllerClass == route.controllerClass
+					&& other.controllerMethod.getName().equals(route.controllerMethod.getName())) {
+				addTemplates(other);
+				return;
+			}
+		}
+	}
+
+	enum HttpMethod {
 		// http://www.w3.org/Protocols/rfc2616/rfc2616-sec9.html
 		OPTIONS, GET, HEAD, POST, PUT, DELETE, TRACE, CONNECT
 	}
 
 	public class HttpMethodBuilder {
+		public HttpMethodBuilder named(String name) {
+			getContext().name = name;
+			return this;
+		}
+
 		public HandlerClassBuilder whenOPTIONS() {
 			return when(HttpMethod.OPTIONS);
 		}
@@ -150,15 +1067,175 @@ public class Router {
 	public class HandlerClassBuilder {
 		public HandlerMethodBuilder handleIn(Class<?> controllerClass) {
 			getContext().controllerClass = controllerClass;
+			getContext().admission = null;
+			getContext().responseCache = null;
+			getContext().conditions = null;
 			return handlerMethodBuilder;
 		}
 	}
 
 	public class HandlerMethodBuilder {
+		/**
+		 * Memoizes results of the route, which has to be a GET or HEAD one;
+		 * every route gets its own cache.
+		 */
+		public HandlerMethodBuilder cached(ResponseCache responseCache) {
+			getContext().responseCache = responseCache;
+			return this;
+		}
+
+		/**
+		 * Limits admission to the route; every route gets its own counters.
+		 */
+		public HandlerMethodBuilder withAdmission(Admission admission) {
+			getContext().admission = admission;
+			return this;
+		}
+
+		/**
+		 * Serves only requests accepting {@code mediaType}, as listed in their
+		 * {@code Accept} header; other routes of the same method and path can
+		 * produce other media types.
+		 */
+		public HandlerMethodBuilder producing(String mediaType) {
+			return withHeader(HeaderConditions.ACCEPT, mediaType);
+		}
+
+		/**
+		 * Serves only requests whose {@code Content-Type} is {@code mediaType},
+		 * parameters such as {@code charset} aside.
+		 */
+		public HandlerMethodBuilder consuming(String mediaType) {
+			return withHeader(HeaderConditions.CONTENT_TYPE, mediaType);
+		}
+
+		/**
+		 * Serves only requests whose header {@code name} equals {@code value},
+		 * ignoring case, e.g. an API version.
+		 */
+		public HandlerMethodBuilder withHeader(String name, String value) {
+			getContext().conditions = HeaderConditions.with(getContext().conditions, name, value);
+			return this;
+		}
+
 		public Router by(String methodName) {
 			getContext().controllerMethodName = methodName;
 			return completeChain();
 		}
 	}
 
+	/**
+	 * Instantiates each controller class once, through its no-argument constructor.
+	 */
+	private static class SingletonControllerProvider implements ControllerProvider {
+
+		private final ConcurrentMap<Class<?>, Object> controllers = new ConcurrentHashMap<>();
+
+		@Override
+		public Object get(Class<?> controllerClass) {
+			Object controller = controllers.get(controllerClass);
+			if (controller == null) {
+				try {
+					controller = controllerClass.getDeclaredConstructor().newInstance();
+				} catch (ReflectiveOperationException e) {
+					throw new RuntimeException(e);
+				}
+				Object previous = controllers.putIfAbsent(controllerClass, controller);
+				if (previous != null) {
+					controller = previous;
+				}
+			}
+			return controller;
+		}
+
+	}
+
+	/**
+	 * Matchers generated for the route trees of a router, see
+	 * {@link #compiledMatching()}.
+	 */
+	private static final class CompiledRoutes {
+
+		private final Map<String, CompiledMatcher<Route>> byMethod = new HashMap<>();
+		private final CompiledMatcher<MethodSlots> paths;
+
+		CompiledRoutes(Map<String, UriTree<Route>> routes, UriTree<MethodSlots> paths) {
+			for (Map.Entry<String, UriTree<Route>> tree : routes.entrySet()) {
+				byMethod.put(tree.getKey(), CompiledMatcher.snapshot(tree.getValue()));
+			}
+			this.paths = paths == null ? null : CompiledMatcher.snapshot(paths);
+		}
+
+	}
+
+	private static final class Mount {
+
+		private final String prefix;
+		private final String[] segments;
+		private final Router router;
+
+		Mount(String prefix, Router router, UriNormalization normalization) {
+			this.segments = split(prefix, UriTree.PATH_SEPARATOR);
+			for (int i = 0; i < segments.length; i++) {
+				if (segments[i].startsWith("{")) {
+					throw new IllegalArgumentException("Mount prefix has to be static: " + prefix);
+				}
+				segments[i] = normalization.foldKey(segments[i]);
+			}
+			this.prefix = UriTree.PATH_SEPARATOR + String.join(UriTree.PATH_SEPARATOR, segments);
+			this.router = router;
+		}
+
+		/**
+		 * Index right after the prefix in {@code uri[start, end)}, or -1 when the
+		 * path does not start with the prefix segments.
+		 */
+		int offset(CharSequence uri, int start, int end, UriNormalization normalization) {
+			int pos = start;
+			for (String segment : segments) {
+				while (pos < end && uri.charAt(pos) == '/') {
+					pos++;
+				}
+				int segmentEnd = normalization.segmentEnd(uri, pos, end);
+				if (segmentEnd == pos || !normalization.regionMatches(uri, pos, segmentEnd, segment)) {
+					return -1;
+				}
+				pos = segmentEnd;
+			}
+			return pos;
+		}
+
+		static String join(String prefix, String uri) {
+			if (prefix.equals(UriTree.PATH_SEPARATOR)) {
+				return uri;
+			}
+			return uri.equals(UriTree.PATH_SEPARATOR) ? prefix : prefix + uri;
+		}
+
+	}
+
+	private static final class PrefixedInterceptor {
+
+		private final String[] prefix;
+		private final Interceptor interceptor;
+
+		PrefixedInterceptor(String prefix, Interceptor interceptor) {
+			this.prefix = split(prefix, UriTree.PATH_SEPARATOR);
+			this.interceptor = interceptor;
+		}
+
+		boolean appliesTo(String[] segments) {
+			if (prefix.length > segments.length) {
+				return false;
+			}
+			for (int i = 0; i < prefix.length; i++) {
+				if (!prefix[i].equals(segments[i])) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+	}
+
 }
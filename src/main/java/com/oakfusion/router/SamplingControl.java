@@ -0,0 +1,50 @@
+package com.oakfusion.router;
+
+import jdk.jfr.SettingControl;
+
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * JFR setting keeping one in {@code n} events, {@code n} given as the setting
+ * value. When several recordings ask for the event, the densest sampling wins.
+ */
+final class SamplingControl extends SettingControl {
+
+	private static final String EVERY = "1";
+
+	private volatile int rate = 1;
+
+	@Override
+	public String combine(Set<String> values) {
+		int combined = Integer.MAX_VALUE;
+		for (String value : values) {
+			combined = Math.min(combined, parse(value));
+		}
+		return combined == Integer.MAX_VALUE ? EVERY : Integer.toString(combined);
+	}
+
+	@Override
+	public void setValue(String value) {
+		rate = parse(value);
+	}
+
+	@Override
+	public String getValue() {
+		return Integer.toString(rate);
+	}
+
+	boolean sample() {
+		int rate = this.rate;
+		return rate == 1 || ThreadLocalRandom.current().nextInt(rate) == 0;
+	}
+
+	private static int parse(String value) {
+		try {
+			return Math.max(1, Integer.parseInt(value.trim()));
+		} catch (NumberFormatException e) {
+			return 1;
+		}
+	}
+
+}
@@ -0,0 +1,240 @@
+package com.oakfusion.router;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.apache.commons.lang3.StringUtils.split;
+
+/**
+ * URL pattern of a route compiled into literal chunks and parameter slots, used
+ * to build links to the route.
+ *
+ * Expanding a template writes straight into the caller's buffer: literal chunks
+ * are copied, parameter values are percent-encoded as path segments on the fly.
+ * Integral {@link Number} values are appended without formatting them first.
+ */
+public class UrlTemplate {
+
+	private static final String PATH_SEPARATOR = "/";
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	private final String pattern;
+	private final String[] chunks;
+	private final String[] parameters;
+
+	private UrlTemplate(String pattern, String[] chunks, String[] parameters) {
+		this.pattern = pattern;
+		this.chunks = chunks;
+		this.parameters = parameters;
+	}
+
+	public static UrlTemplate compile(String pattern) {
+		List<String> chunks = new ArrayList<>();
+		List<String> parameters = new ArrayList<>();
+		StringBuilder chunk = new StringBuilder();
+		for (String segment : split(pattern, PATH_SEPARATOR)) {
+			chunk.append(PATH_SEPARATOR);
+			if (segment.startsWith("{") && segment.endsWith("}")) {
+				chunks.add(chunk.toString());
+				parameters.add(segment.substring(1, segment.length() - 1));
+				chunk.setLength(0);
+			} else {
+				appendValue(chunk, segment);
+			}
+		}
+		if (chunk.length() == 0 && chunks.isEmpty()) {
+			chunk.append(PATH_SEPARATOR);
+		}
+		chunks.add(chunk.toString());
+		return new UrlTemplate(pattern, chunks.toArray(new String[chunks.size()]),
+				parameters.toArray(new String[parameters.size()]));
+	}
+
+	public String getPattern() {
+		return pattern;
+	}
+
+	public int getParameterCount() {
+		return parameters.length;
+	}
+
+	public String getParameterName(int index) {
+		return parameters[index];
+	}
+
+	/**
+	 * Appends the URL with {@code values} filling the parameters in pattern order.
+	 */
+	public StringBuilder appendTo(StringBuilder out, Object... values) {
+		checkValues(values);
+		for (int i = 0; i < parameters.length; i++) {
+			out.append(chunks[i]);
+			appendValue(out, values[i]);
+		}
+		return out.append(chunks[parameters.length]);
+	}
+
+	/**
+	 * Writes the URL, US-ASCII encoded, with {@code values} filling the parameters
+	 * in pattern order.
+	 *
+	 * @throws java.nio.BufferOverflowException if the URL does not fit in {@code out}
+	 */
+	public ByteBuffer writeTo(ByteBuffer out, Object... values) {
+		checkValues(values);
+		for (int i = 0; i < parameters.length; i++) {
+			writeAscii(out, chunks[i]);
+			writeValue(out, values[i]);
+		}
+		writeAscii(out, chunks[parameters.length]);
+		return out;
+	}
+
+	public String expand(Object... values) {
+		return appendTo(new StringBuilder(pattern.length() + 16), values).toString();
+	}
+
+	@Override
+	public String toString() {
+		return pattern;
+	}
+
+	private void checkValues(Object[] values) {
+		if (values.length != parameters.length) {
+			throw new IllegalArgumentException(String.format("%s expects %d parameters, got %d",
+					pattern, parameters.length, values.length));
+		}
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] == null) {
+				throw new IllegalArgumentException("No value for parameter " + parameters[i] + " of " + pattern);
+			}
+		}
+	}
+
+	private static void appendValue(StringBuilder out, Object value) {
+		if (isIntegral(value)) {
+			out.append(((Number) value).longValue());
+			return;
+		}
+		CharSequence chars = value instanceof CharSequence ? (CharSequence) value : value.toString();
+		for (int i = 0; i < chars.length(); i++) {
+			char c = chars.charAt(i);
+			if (isAllowed(c)) {
+				out.append(c);
+			} else {
+				int codePoint = Character.codePointAt(chars, i);
+				i += Character.charCount(codePoint) - 1;
+				appendEscaped(out, codePoint);
+			}
+		}
+	}
+
+	private static void writeValue(ByteBuffer out, Object value) {
+		if (isIntegral(value)) {
+			writeLong(out, ((Number) value).longValue());
+			return;
+		}
+		CharSequence chars = value instanceof CharSequence ? (CharSequence) value : value.toString();
+		for (int i = 0; i < chars.length(); i++) {
+			char c = chars.charAt(i);
+			if (isAllowed(c)) {
+				out.put((byte) c);
+			} else {
+				int codePoint = Character.codePointAt(chars, i);
+				i += Character.charCount(codePoint) - 1;
+				writeEscaped(out, codePoint);
+			}
+		}
+	}
+
+	private static boolean isIntegral(Object value) {
+		return value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte;
+	}
+
+	/**
+	 * Unreserved characters and the sub-delimiters allowed in a path segment (RFC 3986).
+	 */
+	private static boolean isAllowed(char c) {
+		if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+			return true;
+		}
+		switch (c) {
+			case '-': case '.': case '_': case '~':
+			case '!': case '$': case '&': case '\'': case '(': case ')':
+			case '*': case '+': case ',': case ';': case '=': case ':': case '@':
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	private static void appendEscaped(StringBuilder out, int codePoint) {
+		if (codePoint < 0x80) {
+			appendByte(out, codePoint);
+		} else if (codePoint < 0x800) {
+			appendByte(out, 0xC0 | (codePoint >> 6));
+			appendByte(out, 0x80 | (codePoint & 0x3F));
+		} else if (codePoint < 0x10000) {
+			appendByte(out, 0xE0 | (codePoint >> 12));
+			appendByte(out, 0x80 | ((codePoint >> 6) & 0x3F));
+			appendByte(out, 0x80 | (codePoint & 0x3F));
+		} else {
+			appendByte(out, 0xF0 | (codePoint >> 18));
+			appendByte(out, 0x80 | ((codePoint >> 12) & 0x3F));
+			appendByte(out, 0x80 | ((codePoint >> 6) & 0x3F));
+			appendByte(out, 0x80 | (codePoint & 0x3F));
+		}
+	}
+
+	private static void appendByte(StringBuilder out, int b) {
+		out.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+	}
+
+	private static void writeEscaped(ByteBuffer out, int codePoint) {
+		if (codePoint < 0x80) {
+			writeByte(out, codePoint);
+		} else if (codePoint < 0x800) {
+			writeByte(out, 0xC0 | (codePoint >> 6));
+			writeByte(out, 0x80 | (codePoint & 0x3F));
+		} else if (codePoint < 0x10000) {
+			writeByte(out, 0xE0 | (codePoint >> 12));
+			writeByte(out, 0x80 | ((codePoint >> 6) & 0x3F));
+			writeByte(out, 0x80 | (codePoint & 0x3F));
+		} else {
+			writeByte(out, 0xF0 | (codePoint >> 18));
+			writeByte(out, 0x80 | ((codePoint >> 12) & 0x3F));
+			writeByte(out, 0x80 | ((codePoint >> 6) & 0x3F));
+			writeByte(out, 0x80 | (codePoint & 0x3F));
+		}
+	}
+
+	private static void writeByte(ByteBuffer out, int b) {
+		out.put((byte) '%').put((byte) HEX[(b >> 4) & 0xF]).put((byte) HEX[b & 0xF]);
+	}
+
+	private static void writeAscii(ByteBuffer out, String chunk) {
+		for (int i = 0; i < chunk.length(); i++) {
+			out.put((byte) chunk.charAt(i));
+		}
+	}
+
+	private static void writeLong(ByteBuffer out, long value) {
+		if (value == Long.MIN_VALUE) {
+			writeAscii(out, "-9223372036854775808");
+			return;
+		}
+		if (value < 0) {
+			out.put((byte) '-');
+			value = -value;
+		}
+		long divisor = 1;
+		while (value / divisor >= 10) {
+			divisor *= 10;
+		}
+		for (; divisor > 0; divisor /= 10) {
+			out.put((byte) ('0' + (value / divisor) % 10));
+		}
+	}
+
+}
@@ -0,0 +1,255 @@
+package com.oakfusion.router;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
+import static org.apache.commons.lang3.StringUtils.split;
+
+/**
+ * Replays a sample of requests through a {@link Router} before it takes
+ * traffic, so that lookup, parameter binding and invoker resolution are
+ * compiled by the JIT by the time the first real request comes in. Handlers
+ * are not invoked. Replayed lookups are not reported as JFR events, and
+ * child-order sampling (see {@link Router#adaptChildOrder(int, int)}) is
+ * suspended while the warm-up runs, so that it does not shape the ordering.
+ * <pre>
+ * WarmUp.Report report = router.warmUp().synthetic().recorded(sample).timeLimit(5, TimeUnit.SECONDS).run();
+ * </pre>
+ *
+ * Requests are replayed in rounds of at least {@link #MIN_ROUND} requests.
+ * The warm-up counts as steady once the time per request of the last
+ * {@code window} rounds is within {@code tolerance} of the fastest of them,
+ * and the JIT has spent less than 1% of that time compiling. It stops then,
+ * or when the request or time budget runs out, whichever comes first.
+ */
+public class WarmUp {
+
+	static final int MIN_ROUND = 1000;
+
+	private final Router router;
+	private final List<String> hosts = new ArrayList<>();
+	private final List<String> methods = new ArrayList<>();
+	private final List<String> uris = new ArrayList<>();
+	private long maxRequests = 10_000_000;
+	private long timeLimitNanos = TimeUnit.SECONDS.toNanos(10);
+	private int window = 5;
+	private double tolerance = 0.1;
+
+	@SuppressWarnings("unused")
+	private volatile int sink;
+
+	WarmUp(Router router) {
+		this.router = router;
+	}
+
+	public WarmUp request(String httpMethod, String uri) {
+		return request(null, httpMethod, uri);
+	}
+
+	/**
+	 * Adds a request for {@code host}, served by the tenant of the router for
+	 * that host; see {@link Router#host(String, Router)}.
+	 */
+	public WarmUp request(String host, String httpMethod, String uri) {
+		hosts.add(host);
+		methods.add(httpMethod);
+		uris.add(uri);
+		return this;
+	}
+
+	/**
+	 * Adds a request for every route of the router, of mounted routers and of
+	 * tenants, path parameters filled with values their handlers accept.
+	 */
+	public WarmUp synthetic() {
+		router.addSampleRequests(null, "/", this);
+		return this;
+	}
+
+	/**
+	 * Adds requests recorded one per line as {@code METHOD uri}, e.g. taken
+	 * from an access log; blank lines and lines starting with {@code #} are
+	 * skipped.
+	 */
+	public WarmUp recorded(Path file) throws IOException {
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = split(line);
+				if (fields.length == 0 || fields[0].startsWith("#")) {
+					continue;
+				}
+				if (fields.length != 2) {
+					throw new IllegalArgumentException("Expected method and uri: " + line);
+				}
+				request(fields[0], fields[1]);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Replays at most {@code maxRequests} requests.
+	 */
+	public WarmUp maxRequests(long maxRequests) {
+		this.maxRequests = maxRequests;
+		return this;
+	}
+
+	public WarmUp timeLimit(long duration, TimeUnit unit) {
+		this.timeLimitNanos = unit.toNanos(duration);
+		return this;
+	}
+
+	/**
+	 * Rounds that have to agree, and by how much at most, for the warm-up to
+	 * count as steady.
+	 */
+	public WarmUp steadyAfter(int window, double tolerance) {
+		if (window < 2 || tolerance < 0) {
+			throw new IllegalArgumentException(format("Invalid steady state: %d rounds within %s", window, tolerance));
+		}
+		this.window = window;
+		this.tolerance = tolerance;
+		return this;
+	}
+
+	public Report run() {
+		if (uris.isEmpty()) {
+			throw new IllegalStateException("No requests to warm up with");
+		}
+		CompilationMXBean compiler = ManagementFactory.getCompilationMXBean();
+		boolean compilerTimed = compiler != null && compiler.isCompilationTimeMonitoringSupported();
+		int roundSize = (int) Math.min(Math.max(MIN_ROUND, uris.size()), Math.max(1, maxRequests));
+		long[] roundNanos = new long[window];
+		long[] compileMillis = new long[window];
+		Report report = new Report();
+		router.sampleChildOrder(false);
+		try {
+			long started = System.nanoTime();
+			while (true) {
+				long roundStarted = System.nanoTime();
+				replay(roundSize, report);
+				long now = System.nanoTime();
+				int slot = (int) (report.rounds % window);
+				roundNanos[slot] = now - roundStarted;
+				compileMillis[slot] = compilerTimed ? compiler.getTotalCompilationTime() : 0;
+				report.rounds++;
+				report.nanosPerRequest = (double) roundNanos[slot] / roundSize;
+				report.elapsedNanos = now - started;
+				if (report.rounds >= window && isSteady(roundNanos, compileMillis, slot)) {
+					report.steady = true;
+					return report;
+				}
+				if (report.requests + roundSize > maxRequests || report.elapsedNanos >= timeLimitNanos) {
+					return report;
+				}
+			}
+		} finally {
+			router.sampleChildOrder(true);
+		}
+	}
+
+	private void replay(int count, Report report) {
+		int size = uris.size();
+		int hash = 0;
+		for (int i = 0; i < count; i++) {
+			int index = (int) ((report.requests + i) % size);
+			String host = hosts.get(index);
+			Router target = host == null ? router : router.forHost(host);
+			RouteMatch match = target.matchUnrecorded(methods.get(index), uris.get(index));
+			if (!match.isFound()) {
+				report.misses++;
+				hash += match.getStatus();
+				continue;
+			}
+			Route route = match.getRoute();
+			try {
+				route.binder.parse(match);
+				hash += route.getInvoker().hashCode();
+			} catch (RuntimeException e) {
+				report.failures++;
+			}
+		}
+		report.requests += count;
+		sink = hash;
+	}
+
+	private boolean isSteady(long[] roundNanos, long[] compileMillis, int last) {
+		long fastest = Long.MAX_VALUE;
+		long slowest = 0;
+		long total = 0;
+		for (long nanos : roundNanos) {
+			fastest = Math.min(fastest, nanos);
+			slowest = Math.max(slowest, nanos);
+			total += nanos;
+		}
+		long compiling = TimeUnit.MILLISECONDS.toNanos(compileMillis[last] - compileMillis[(last + 1) % window]);
+		return slowest <= fastest * (1 + tolerance) && compiling * 100 < total;
+	}
+
+	/**
+	 * Outcome of {@link #run()}: whether a steady state was reached and what it
+	 * took. Misses (404 and 405) and requests whose parameters the handler
+	 * does not accept are replayed all the same, and counted.
+	 */
+	public static class Report {
+
+		private boolean steady;
+		private long requests;
+		private long rounds;
+		private long misses;
+		private long failures;
+		private long elapsedNanos;
+		private double nanosPerRequest;
+
+		public boolean isSteady() {
+			return steady;
+		}
+
+		public long getRequests() {
+			return requests;
+		}
+
+		public long getRounds() {
+			return rounds;
+		}
+
+		public long getMisses() {
+			return misses;
+		}
+
+		public long getFailures() {
+			return failures;
+		}
+
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+
+		/**
+		 * Time per request in the last round.
+		 */
+		public double getNanosPerRequest() {
+			return nanosPerRequest;
+		}
+
+		@Override
+		public String toString() {
+			return format("%s after %d requests in %d rounds, %d ms, %.0f ns per request, %d misses, %d failures",
+					steady ? "steady" : "not steady", requests, rounds,
+					TimeUnit.NANOSECONDS.toMillis(elapsedNanos), nanosPerRequest, misses, failures);
+		}
+
+	}
+
+}
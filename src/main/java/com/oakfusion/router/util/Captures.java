@@ -0,0 +1,109 @@
+package com.oakfusion.router.util;
+
+import java.util.Arrays;
+
+/**
+ * Parameter segments captured while a path is matched against a {@link UriTree}.
+ *
+ * Only the parameter key ({@code "{id}"}) and the raw bounds of the segment in the
+ * matched path are recorded; nothing is copied until a value is asked for.
+ */
+public final class Captures {
+
+	private static final int INITIAL_CAPACITY = 4;
+
+	private String[] keys;
+	private int[] bounds;
+	private int size;
+	private int segments;
+	private int depth;
+
+	public void add(final String key, final int start, final int end) {
+		if (keys == null) {
+			keys = new String[INITIAL_CAPACITY];
+			bounds = new int[INITIAL_CAPACITY * 2];
+		} else if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			bounds = Arrays.copyOf(bounds, size * 4);
+		}
+		keys[size] = key;
+		bounds[size * 2] = start;
+		bounds[size * 2 + 1] = end;
+		size++;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Segments consumed on the way to the deepest node the last match walked
+	 * into, whether or not it matched. Kept when captures are dropped.
+	 */
+	public int depth() {
+		return depth;
+	}
+
+	void startWalk(final int segments) {
+		this.segments = segments;
+		this.depth = 0;
+	}
+
+	void reach(final int remaining) {
+		depth = Math.max(depth, segments - remaining);
+	}
+
+	/**
+	 * Drops captures recorded after the first {@code size} ones.
+	 */
+	public void truncate(final int size) {
+		for (int i = size; i < this.size; i++) {
+			keys[i] = null;
+		}
+		this.size = Math.min(size, this.size);
+	}
+
+	public void clear() {
+		truncate(0);
+	}
+
+	/**
+	 * Key of the parameter edge taken, including braces. Routes sharing the
+	 * edge may name the parameter differently; the key is the name the edge
+	 * was first registered with.
+	 */
+	public String key(final int index) {
+		checkIndex(index);
+		return keys[index];
+	}
+
+	public int start(final int index) {
+		checkIndex(index);
+		return bounds[index * 2];
+	}
+
+	public int end(final int index) {
+		checkIndex(index);
+		return bounds[index * 2 + 1];
+	}
+
+	/**
+	 * Index of the capture for parameter {@code name} (without braces), or -1.
+	 */
+	public int indexOf(final String name) {
+		for (int i = 0; i < size; i++) {
+			final String key = keys[i];
+			if (key.length() == name.length() + 2 && key.regionMatches(1, name, 0, name.length())) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void checkIndex(final int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("capture " + index + " of " + size);
+		}
+	}
+
+}
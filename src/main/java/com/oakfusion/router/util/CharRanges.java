@@ -0,0 +1,105 @@
+package com.oakfusion.router.util;
+
+import java.util.UUID;
+
+/**
+ * Parses numbers and UUIDs straight from a region of characters, without taking a
+ * substring first. Behaves like {@link Long#parseLong(String)} and
+ * {@link Integer#parseInt(String)} on the region.
+ */
+public final class CharRanges {
+
+	private CharRanges() {
+	}
+
+	public static long parseLong(final CharSequence s, final int start, final int end) {
+		if (start >= end) {
+			throw invalid(s, start, end);
+		}
+		int i = start;
+		final char first = s.charAt(i);
+		final boolean negative = first == '-';
+		if (negative || first == '+') {
+			if (++i == end) {
+				throw invalid(s, start, end);
+			}
+		}
+		final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+		final long multiplicationLimit = limit / 10;
+		long result = 0;
+		while (i < end) {
+			final int digit = Character.digit(s.charAt(i++), 10);
+			if (digit < 0 || result < multiplicationLimit) {
+				throw invalid(s, start, end);
+			}
+			result *= 10;
+			if (result < limit + digit) {
+				throw invalid(s, start, end);
+			}
+			result -= digit;
+		}
+		return negative ? result : -result;
+	}
+
+	public static int parseInt(final CharSequence s, final int start, final int end) {
+		final long value = parseLong(s, start, end);
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+			throw invalid(s, start, end);
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Parses a UUID in its canonical 8-4-4-4-12 hexadecimal form.
+	 */
+	public static UUID parseUuid(final CharSequence s, final int start, final int end) {
+		if (end - start != 36) {
+			throw invalidUuid(s, start, end);
+		}
+		long most = 0;
+		long least = 0;
+		int digits = 0;
+		for (int i = start; i < end; i++) {
+			final int offset = i - start;
+			final char c = s.charAt(i);
+			if (offset == 8 || offset == 13 || offset == 18 || offset == 23) {
+				if (c != '-') {
+					throw invalidUuid(s, start, end);
+				}
+				continue;
+			}
+			final int digit = Character.digit(c, 16);
+			if (digit < 0) {
+				throw invalidUuid(s, start, end);
+			}
+			if (digits++ < 16) {
+				most = most << 4 | digit;
+			} else {
+				least = least << 4 | digit;
+			}
+		}
+		return new UUID(most, least);
+	}
+
+	/**
+	 * Whether the region holds a character that decoding would change.
+	 */
+	public static boolean isEncoded(final CharSequence s, final int start, final int end) {
+		for (int i = start; i < end; i++) {
+			final char c = s.charAt(i);
+			if (c == '%' || c == '+') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static IllegalArgumentException invalidUuid(final CharSequence s, final int start, final int end) {
+		return new IllegalArgumentException("Invalid UUID string: " + s.subSequence(start, end));
+	}
+
+	private static NumberFormatException invalid(final CharSequence s, final int start, final int end) {
+		return new NumberFormatException("For input string: \"" + s.subSequence(start, end) + "\"");
+	}
+
+}
@@ -0,0 +1,246 @@
+package com.oakfusion.router.util;
+
+/**
+ * Children of a {@link UriTree} node, laid out according to their number.
+ *
+ * Up to {@link #LINEAR_LIMIT} children are kept in compact arrays scanned
+ * linearly; wider nodes switch to an open-addressing table with linear probing.
+ * A table shrinking to {@link #SHRINK_LIMIT} children goes back to the compact
+ * layout. Leaves do not have a table at all.
+ *
+ * Keys are compared by their cached {@link String#hashCode()} first, so a lookup
+ * by a region of request characters only hashes the region once.
+ */
+final class ChildTable<V> {
+
+	static final int LINEAR_LIMIT = 8;
+	static final int SHRINK_LIMIT = 4;
+
+	private static final int INITIAL_CAPACITY = 2;
+
+	private String[] keys;
+	private UriTree<V>[] nodes;
+	private int size;
+	private boolean hashed;
+
+	ChildTable() {
+		this.keys = new String[INITIAL_CAPACITY];
+		this.nodes = newNodes(INITIAL_CAPACITY);
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean isHashed() {
+		return hashed;
+	}
+
+	UriTree<V> get(final String key) {
+		final int slot = slotOf(key);
+		return slot < 0 ? null : nodes[slot];
+	}
+
+	/**
+	 * Child whose key equals the normalized {@code path[start, end)}, given the
+	 * hash of that region as computed by {@link UriNormalization#hash}.
+	 */
+	UriTree<V> get(final CharSequence path, final int start, final int end, final int hash,
+				   final UriNormalization normalization) {
+		final String[] keys = this.keys;
+		if (!hashed) {
+			for (int i = 0; i < size; i++) {
+				final String key = keys[i];
+				if (key.hashCode() == hash && normalization.regionMatches(path, start, end, key)) {
+					return nodes[i];
+				}
+			}
+			return null;
+		}
+		final int mask = keys.length - 1;
+		for (int i = spread(hash) & mask; ; i = (i + 1) & mask) {
+			final String key = keys[i];
+			if (key == null) {
+				return null;
+			}
+			if (key.hashCode() == hash && normalization.regionMatches(path, start, end, key)) {
+				return nodes[i];
+			}
+		}
+	}
+
+	void put(final String key, final UriTree<V> node) {
+		final int slot = slotOf(key);
+		if (slot >= 0) {
+			nodes[slot] = node;
+			return;
+		}
+		if (!hashed && size == LINEAR_LIMIT) {
+			rehash(tableCapacity(size + 1));
+		}
+		if (hashed) {
+			if ((size + 1) * 4 > keys.length * 3) {
+				rehash(keys.length * 2);
+			}
+			insertHashed(key, node);
+		} else {
+			if (size == keys.length) {
+				resizeLinear(Math.min(LINEAR_LIMIT, size * 2));
+			}
+			keys[size] = key;
+			nodes[size] = node;
+		}
+		size++;
+	}
+
+	UriTree<V> remove(final String key) {
+		final int slot = slotOf(key);
+		if (slot < 0) {
+			return null;
+		}
+		final UriTree<V> removed = nodes[slot];
+		if (hashed) {
+			deleteHashed(slot);
+			size--;
+			if (size <= SHRINK_LIMIT) {
+				linearize();
+			}
+		} else {
+			size--;
+			System.arraycopy(keys, slot + 1, keys, slot, size - slot);
+			System.arraycopy(nodes, slot + 1, nodes, slot, size - slot);
+			keys[size] = null;
+			nodes[size] = null;
+		}
+		return removed;
+	}
+
+	/**
+	 * Number of slots to iterate over with {@link #keyAt(int)}; empty slots
+	 * have a <code>null</code> key.
+	 */
+	int slots() {
+		return hashed ? keys.length : size;
+	}
+
+	String keyAt(final int slot) {
+		return keys[slot];
+	}
+
+	UriTree<V> nodeAt(final int slot) {
+		return nodes[slot];
+	}
+
+	void setNodeAt(final int slot, final UriTree<V> node) {
+		nodes[slot] = node;
+	}
+
+	private int slotOf(final String key) {
+		final String[] keys = this.keys;
+		if (!hashed) {
+			for (int i = 0; i < size; i++) {
+				if (keys[i].equals(key)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+		final int mask = keys.length - 1;
+		for (int i = spread(key.hashCode()) & mask; ; i = (i + 1) & mask) {
+			final String candidate = keys[i];
+			if (candidate == null) {
+				return -1;
+			}
+			if (candidate.equals(key)) {
+				return i;
+			}
+		}
+	}
+
+	private void insertHashed(final String key, final UriTree<V> node) {
+		final int mask = keys.length - 1;
+		int i = spread(key.hashCode()) & mask;
+		while (keys[i] != null) {
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		nodes[i] = node;
+	}
+
+	/**
+	 * Backward-shift deletion, keeping probe sequences intact without tombstones.
+	 */
+	private void deleteHashed(int slot) {
+		final int mask = keys.length - 1;
+		int next = (slot + 1) & mask;
+		while (keys[next] != null) {
+			final int home = spread(keys[next].hashCode()) & mask;
+			final boolean movable = slot <= next ? (home <= slot || home > next) : (home <= slot && home > next);
+			if (movable) {
+				keys[slot] = keys[next];
+				nodes[slot] = nodes[next];
+				slot = next;
+			}
+			next = (next + 1) & mask;
+		}
+		keys[slot] = null;
+		nodes[slot] = null;
+	}
+
+	private void rehash(final int capacity) {
+		final String[] oldKeys = keys;
+		final UriTree<V>[] oldNodes = nodes;
+		final int oldSlots = slots();
+		keys = new String[capacity];
+		nodes = newNodes(capacity);
+		hashed = true;
+		for (int i = 0; i < oldSlots; i++) {
+			if (oldKeys[i] != null) {
+				insertHashed(oldKeys[i], oldNodes[i]);
+			}
+		}
+	}
+
+	private void linearize() {
+		final String[] oldKeys = keys;
+		final UriTree<V>[] oldNodes = nodes;
+		keys = new String[LINEAR_LIMIT];
+		nodes = newNodes(LINEAR_LIMIT);
+		hashed = false;
+		int j = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null) {
+				keys[j] = oldKeys[i];
+				nodes[j] = oldNodes[i];
+				j++;
+			}
+		}
+	}
+
+	private void resizeLinear(final int capacity) {
+		final String[] newKeys = new String[capacity];
+		final UriTree<V>[] newNodes = newNodes(capacity);
+		System.arraycopy(keys, 0, newKeys, 0, size);
+		System.arraycopy(nodes, 0, newNodes, 0, size);
+		keys = newKeys;
+		nodes = newNodes;
+	}
+
+	private static int tableCapacity(final int size) {
+		int capacity = 16;
+		while (size * 4 > capacity * 3) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	private static int spread(final int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <V> UriTree<V>[] newNodes(final int capacity) {
+		return (UriTree<V>[]) new UriTree[capacity];
+	}
+
+}
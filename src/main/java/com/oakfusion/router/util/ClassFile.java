@@ -0,0 +1,363 @@
+package com.oakfusion.router.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Just enough of a class file writer for {@link CompiledMatcher}: a constant
+ * pool, fields, and methods whose code is emitted an instruction at a time,
+ * branching to labels. Classes are written as version 49 (Java 5), which the
+ * JVM still verifies by type inference, so no stack map frames are needed.
+ *
+ * A class exceeding the limits of the format (a constant pool or method too
+ * large, a branch too far) fails with {@link IllegalArgumentException}.
+ */
+final class ClassFile {
+
+	static final int ACC_STATIC = 0x0008;
+	static final int ACC_FINAL = 0x0010;
+	private static final int ACC_SUPER = 0x0020;
+
+	private static final int MAGIC = 0xCAFEBABE;
+	private static final int VERSION = 49;
+	private static final int LIMIT = 0xFFFF;
+
+	static final int ACONST_NULL = 0x01;
+	static final int ICONST_0 = 0x03;
+	static final int ICONST_1 = 0x04;
+	static final int ILOAD = 0x15;
+	static final int ALOAD = 0x19;
+	static final int AALOAD = 0x32;
+	static final int ISTORE = 0x36;
+	static final int ASTORE = 0x3A;
+	static final int IADD = 0x60;
+	static final int ISUB = 0x64;
+	static final int IFEQ = 0x99;
+	static final int IFNE = 0x9A;
+	static final int IFLT = 0x9B;
+	static final int IF_ICMPNE = 0xA0;
+	static final int IF_ICMPLT = 0xA1;
+	static final int IF_ICMPGT = 0xA3;
+	static final int GOTO = 0xA7;
+	static final int ARETURN = 0xB0;
+	static final int RETURN = 0xB1;
+	static final int GETSTATIC = 0xB2;
+	static final int PUTSTATIC = 0xB3;
+	static final int INVOKEVIRTUAL = 0xB6;
+	static final int INVOKESPECIAL = 0xB7;
+	static final int INVOKESTATIC = 0xB8;
+	static final int ARRAYLENGTH = 0xBE;
+	static final int IFNULL = 0xC6;
+	static final int IFNONNULL = 0xC7;
+	private static final int BIPUSH = 0x10;
+	private static final int SIPUSH = 0x11;
+	private static final int LDC_W = 0x13;
+	private static final int LOOKUPSWITCH = 0xAB;
+	private static final int INVOKEINTERFACE = 0xB9;
+
+	private final Bytes pool = new Bytes();
+	private final Map<String, Integer> constants = new HashMap<>();
+	private int poolCount = 1;
+	private final Bytes fields = new Bytes();
+	private int fieldCount;
+	private final Bytes methods = new Bytes();
+	private int methodCount;
+	private final int thisClass;
+	private final int superClass;
+
+	/**
+	 * A final class {@code name} extending {@code superName}, both internal
+	 * names ({@code java/lang/Object}).
+	 */
+	ClassFile(final String name, final String superName) {
+		thisClass = classRef(name);
+		superClass = classRef(superName);
+	}
+
+	void field(final int access, final String name, final String descriptor) {
+		fields.u2(access).u2(utf8(name)).u2(utf8(descriptor)).u2(0);
+		fieldCount++;
+	}
+
+	/**
+	 * Starts a method; its code is added to the class by {@link Code#end()}.
+	 */
+	Code method(final int access, final String name, final String descriptor, final int maxStack,
+				final int maxLocals) {
+		return new Code(access, name, descriptor, maxStack, maxLocals);
+	}
+
+	byte[] toBytes() {
+		final Bytes out = new Bytes();
+		out.u4(MAGIC).u2(0).u2(VERSION)
+				.u2(poolCount).bytes(pool)
+				.u2(ACC_FINAL | ACC_SUPER).u2(thisClass).u2(superClass).u2(0)
+				.u2(fieldCount).bytes(fields)
+				.u2(methodCount).bytes(methods)
+				.u2(0);
+		return out.toByteArray();
+	}
+
+	private int utf8(final String value) {
+		final Integer known = constants.get("U" + value);
+		if (known != null) {
+			return known;
+		}
+		final Bytes encoded = new Bytes();
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			if (c >= 0x01 && c <= 0x7F) {
+				encoded.u1(c);
+			} else if (c <= 0x7FF) {
+				encoded.u1(0xC0 | c >> 6).u1(0x80 | c & 0x3F);
+			} else {
+				encoded.u1(0xE0 | c >> 12).u1(0x80 | c >> 6 & 0x3F).u1(0x80 | c & 0x3F);
+			}
+		}
+		if (encoded.size() > LIMIT) {
+			throw new IllegalArgumentException("constant too long: " + encoded.size() + " bytes");
+		}
+		return add("U" + value, new Bytes().u1(1).u2(encoded.size()).bytes(encoded));
+	}
+
+	private int classRef(final String name) {
+		return constant("C" + name, 7, utf8(name));
+	}
+
+	private int string(final String value) {
+		return constant("S" + value, 8, utf8(value));
+	}
+
+	private int integer(final int value) {
+		final Integer known = constants.get("I" + value);
+		return known != null ? known : add("I" + value, new Bytes().u1(3).u4(value));
+	}
+
+	private int member(final int tag, final String owner, final String name, final String descriptor) {
+		final int nameAndType = constant("N" + name + ' ' + descriptor, 12, utf8(name), utf8(descriptor));
+		return constant(tag + owner + '.' + name + ' ' + descriptor, tag, classRef(owner), nameAndType);
+	}
+
+	private int constant(final String key, final int tag, final int... references) {
+		final Integer known = constants.get(key);
+		if (known != null) {
+			return known;
+		}
+		final Bytes entry = new Bytes().u1(tag);
+		for (int reference : references) {
+			entry.u2(reference);
+		}
+		return add(key, entry);
+	}
+
+	private int add(final String key, final Bytes entry) {
+		if (poolCount == LIMIT) {
+			throw new IllegalArgumentException("constant pool overflow");
+		}
+		pool.bytes(entry);
+		constants.put(key, poolCount);
+		return poolCount++;
+	}
+
+	/**
+	 * Position in the code of a method, bound by {@link Code#mark(Label)} before
+	 * or after the branches to it are emitted.
+	 */
+	static final class Label {
+
+		private int position = -1;
+
+	}
+
+	/**
+	 * Code of one method. Branches are emitted with placeholder offsets, filled
+	 * in by {@link #end()} once all labels are bound.
+	 */
+	final class Code {
+
+		private final int access;
+		private final String name;
+		private final String descriptor;
+		private final int maxStack;
+		private final int maxLocals;
+		private final Bytes code = new Bytes();
+		/** Triples of instruction position, offset position and offset width */
+		private final List<int[]> branches = new ArrayList<>();
+		private final List<Label> targets = new ArrayList<>();
+
+		private Code(final int access, final String name, final String descriptor, final int maxStack,
+					 final int maxLocals) {
+			this.access = access;
+			this.name = name;
+			this.descriptor = descriptor;
+			this.maxStack = maxStack;
+			this.maxLocals = maxLocals;
+		}
+
+		Code op(final int opcode) {
+			code.u1(opcode);
+			return this;
+		}
+
+		/**
+		 * A load or store of local {@code index}.
+		 */
+		Code local(final int opcode, final int index) {
+			code.u1(opcode).u1(index);
+			return this;
+		}
+
+		Code push(final int value) {
+			if (value >= -1 && value <= 5) {
+				code.u1(ICONST_0 + value);
+			} else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+				code.u1(BIPUSH).u1(value);
+			} else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+				code.u1(SIPUSH).u2(value);
+			} else {
+				code.u1(LDC_W).u2(integer(value));
+			}
+			return this;
+		}
+
+		Code push(final String value) {
+			code.u1(LDC_W).u2(string(value));
+			return this;
+		}
+
+		Code field(final int opcode, final String owner, final String name, final String descriptor) {
+			code.u1(opcode).u2(member(9, owner, name, descriptor));
+			return this;
+		}
+
+		Code invoke(final int opcode, final String owner, final String name, final String descriptor) {
+			code.u1(opcode).u2(member(10, owner, name, descriptor));
+			return this;
+		}
+
+		/**
+		 * Invokes an interface method taking {@code argumentSlots} slots of
+		 * arguments, the receiver included.
+		 */
+		Code invokeInterface(final String owner, final String name, final String descriptor,
+							 final int argumentSlots) {
+			code.u1(INVOKEINTERFACE).u2(member(11, owner, name, descriptor)).u1(argumentSlots).u1(0);
+			return this;
+		}
+
+		Code jump(final int opcode, final Label target) {
+			branch(code.size(), 2, target);
+			code.u1(opcode).u2(0);
+			return this;
+		}
+
+		/**
+		 * Jumps to the target of the key on the stack, or to {@code otherwise};
+		 * {@code keys} have to be sorted.
+		 */
+		Code lookupSwitch(final int[] keys, final Label[] cases, final Label otherwise) {
+			final int at = code.size();
+			code.u1(LOOKUPSWITCH);
+			while (code.size() % 4 != 0) {
+				code.u1(0);
+			}
+			branch(at, 4, otherwise);
+			code.u4(0).u4(keys.length);
+			for (int i = 0; i < keys.length; i++) {
+				code.u4(keys[i]);
+				branch(at, 4, cases[i]);
+				code.u4(0);
+			}
+			return this;
+		}
+
+		Code mark(final Label label) {
+			label.position = code.size();
+			return this;
+		}
+
+		private void branch(final int from, final int width, final Label target) {
+			branches.add(new int[]{from, width == 2 ? code.size() + 1 : code.size(), width});
+			targets.add(target);
+		}
+
+		/**
+		 * Resolves the branches and adds the method to the class.
+		 */
+		void end() {
+			final byte[] bytes = code.toByteArray();
+			if (bytes.length > LIMIT) {
+				throw new IllegalArgumentException(name + " too large: " + bytes.length + " bytes");
+			}
+			for (int i = 0; i < branches.size(); i++) {
+				final int[] branch = branches.get(i);
+				final int target = targets.get(i).position;
+				if (target < 0) {
+					throw new IllegalStateException("unbound label in " + name);
+				}
+				final int offset = target - branch[0];
+				if (branch[2] == 2 && (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE)) {
+					throw new IllegalArgumentException("branch too far in " + name);
+				}
+				for (int b = 0; b < branch[2]; b++) {
+					bytes[branch[1] + b] = (byte) (offset >> 8 * (branch[2] - 1 - b));
+				}
+			}
+			methods.u2(access).u2(utf8(name)).u2(utf8(descriptor)).u2(1)
+					.u2(utf8("Code")).u4(12 + bytes.length)
+					.u2(maxStack).u2(maxLocals).u4(bytes.length).bytes(bytes)
+					.u2(0).u2(0);
+			methodCount++;
+		}
+
+	}
+
+	/**
+	 * Growable big-endian byte buffer.
+	 */
+	private static final class Bytes {
+
+		private byte[] data = new byte[64];
+		private int size;
+
+		Bytes u1(final int value) {
+			if (size == data.length) {
+				data = Arrays.copyOf(data, size * 2);
+			}
+			data[size++] = (byte) value;
+			return this;
+		}
+
+		Bytes u2(final int value) {
+			return u1(value >> 8).u1(value);
+		}
+
+		Bytes u4(final int value) {
+			return u2(value >> 16).u2(value);
+		}
+
+		Bytes bytes(final Bytes other) {
+			return bytes(other.toByteArray());
+		}
+
+		Bytes bytes(final byte[] other) {
+			for (byte b : other) {
+				u1(b);
+			}
+			return this;
+		}
+
+		int size() {
+			return size;
+		}
+
+		byte[] toByteArray() {
+			return Arrays.copyOf(data, size);
+		}
+
+	}
+
+}
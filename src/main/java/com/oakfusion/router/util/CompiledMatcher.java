@@ -0,0 +1,716 @@
+package com.oakfusion.router.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+import static com.oakfusion.router.util.ClassFile.AALOAD;
+import static com.oakfusion.router.util.ClassFile.ACC_FINAL;
+import static com.oakfusion.router.util.ClassFile.ACC_STATIC;
+import static com.oakfusion.router.util.ClassFile.ACONST_NULL;
+import static com.oakfusion.router.util.ClassFile.ALOAD;
+import static com.oakfusion.router.util.ClassFile.ARETURN;
+import static com.oakfusion.router.util.ClassFile.ARRAYLENGTH;
+import static com.oakfusion.router.util.ClassFile.ASTORE;
+import static com.oakfusion.router.util.ClassFile.GETSTATIC;
+import static com.oakfusion.router.util.ClassFile.GOTO;
+import static com.oakfusion.router.util.ClassFile.IADD;
+import static com.oakfusion.router.util.ClassFile.ICONST_0;
+import static com.oakfusion.router.util.ClassFile.ICONST_1;
+import static com.oakfusion.router.util.ClassFile.IFEQ;
+import static com.oakfusion.router.util.ClassFile.IFLT;
+import static com.oakfusion.router.util.ClassFile.IFNE;
+import static com.oakfusion.router.util.ClassFile.IFNONNULL;
+import static com.oakfusion.router.util.ClassFile.IFNULL;
+import static com.oakfusion.router.util.ClassFile.IF_ICMPGT;
+import static com.oakfusion.router.util.ClassFile.IF_ICMPLT;
+import static com.oakfusion.router.util.ClassFile.IF_ICMPNE;
+import static com.oakfusion.router.util.ClassFile.ILOAD;
+import static com.oakfusion.router.util.ClassFile.INVOKESPECIAL;
+import static com.oakfusion.router.util.ClassFile.INVOKESTATIC;
+import static com.oakfusion.router.util.ClassFile.INVOKEVIRTUAL;
+import static com.oakfusion.router.util.ClassFile.ISTORE;
+import static com.oakfusion.router.util.ClassFile.ISUB;
+import static com.oakfusion.router.util.ClassFile.PUTSTATIC;
+import static com.oakfusion.router.util.ClassFile.RETURN;
+import static org.apache.commons.lang3.StringUtils.split;
+
+/**
+ * {@link UriTree#matchedBySegments(String[])} and
+ * {@link UriTree#match(CharSequence, int, int, Captures, Predicate)}
+ * specialized for one tree.
+ *
+ * The tree is translated into a generated class with two methods per node,
+ * one per way of matching, each switching over the length and then the
+ * characters of the current segment. The nodes and their data (the
+ * {@code Route}s of a router) are embedded as static final fields, so the JIT
+ * sees routing as straight-line code over constants. The class bytes are
+ * written directly, see {@link ClassFile}, and defined as a hidden class.
+ * Hidden classes need Java 15; before that, when the tree folds case, or when
+ * the tree is too large for one class, matching falls back to the tree itself
+ * and {@link #getFallbackReason()} tells why. With percent decoding, the
+ * generated code hands a path with an escape in a segment it looks at over to
+ * the tree.
+ */
+public final class CompiledMatcher<V> {
+
+	private static final String CLASS_NAME = CompiledMatcher.class.getPackage().getName().replace('.', '/')
+			+ "/GeneratedUriTreeMatcher";
+	private static final String GENERATED = type(Generated.class);
+	private static final String SELF = type(CompiledMatcher.class);
+	private static final String TREE = type(UriTree.class);
+	private static final String CAPTURES = type(Captures.class);
+	private static final String PREDICATE = type(Predicate.class);
+	private static final String CHAR_SEQUENCE = type(CharSequence.class);
+	private static final String NODE = "L" + TREE + ";";
+	private static final String OBJECT = "Ljava/lang/Object;";
+	private static final String SEGMENTS_METHOD = "([Ljava/lang/String;I)" + OBJECT;
+	private static final String PATH_METHOD = "(L" + CHAR_SEQUENCE + ";IIIIL" + CAPTURES + ";L" + PREDICATE + ";)"
+			+ OBJECT;
+
+	/** Deepest operand stack of a generated method: the arguments of a node method */
+	private static final int MAX_STACK = 8;
+
+	/**
+	 * Keys of one length sharing a node are compared one by one up to this
+	 * number, above it they are first told apart by a distinguishing character.
+	 */
+	private static final int EQUALS_CHAIN_LIMIT = 2;
+
+	/** Returned by generated code handing the path over to the tree */
+	static final Object DECLINED = new Object();
+
+	/** Nodes of the class being defined, taken by its static initializer */
+	private static final ThreadLocal<UriTree<?>[]> DEFINED_NODES = new ThreadLocal<>();
+
+	private static final Method DEFINE_HIDDEN_CLASS = hiddenClassDefinition();
+
+	private final UriTree<V> tree;
+	private final Generated generated;
+	private final String fallbackReason;
+
+	private CompiledMatcher(final UriTree<V> tree, final Generated generated, final String fallbackReason) {
+		this.tree = tree;
+		this.generated = generated;
+		this.fallbackReason = fallbackReason;
+	}
+
+	/**
+	 * Freezes {@code tree} and compiles a matcher for it.
+	 */
+	public static <V> CompiledMatcher<V> compile(final UriTree<V> tree) {
+		tree.freeze();
+		return snapshot(tree);
+	}
+
+	/**
+	 * Compiles a matcher for {@code tree} as it is now, without freezing it.
+	 * Once the tree changes the matcher is stale and has to be compiled again.
+	 */
+	public static <V> CompiledMatcher<V> snapshot(final UriTree<V> tree) {
+		if (tree.getNormalization().foldsCase()) {
+			return new CompiledMatcher<>(tree, null, "the tree folds case");
+		}
+		if (DEFINE_HIDDEN_CLASS == null) {
+			return new CompiledMatcher<>(tree, null, "hidden classes need Java 15 or later");
+		}
+		try {
+			return new CompiledMatcher<>(tree, generate(tree), null);
+		} catch (FallbackException e) {
+			return new CompiledMatcher<>(tree, null, e.getMessage());
+		}
+	}
+
+	/**
+	 * Whether lookups run through generated code rather than the tree.
+	 */
+	public boolean isGenerated() {
+		return generated != null;
+	}
+
+	/**
+	 * Why lookups run through the tree, e.g. the Java version, or
+	 * <code>null</code> when they run through generated code.
+	 */
+	public String getFallbackReason() {
+		return fallbackReason;
+	}
+
+	@SuppressWarnings("unchecked")
+	public UriTree<V> matchedBySegments(final String[] path) {
+		if (generated == null) {
+			return tree.matchedBySegments(path);
+		}
+		return (UriTree<V>) generated.matchSegments(path);
+	}
+
+	public UriTree<V> matchedBySegments(final String pathString) {
+		return matchedBySegments(split(pathString, UriTree.PATH_SEPARATOR));
+	}
+
+	public boolean matchesBySegments(final String[] path) {
+		return matchedBySegments(path) != null;
+	}
+
+	/**
+	 * Data of the node {@link UriTree#match(CharSequence, int, int, Captures, Predicate)}
+	 * reaches for {@code path[start, end)}, recording the same captures, or
+	 * <code>null</code> if there is none.
+	 */
+	@SuppressWarnings("unchecked")
+	public V find(final CharSequence path, final int start, final int end, final Captures captures,
+				  final Predicate<? super V> accepted) {
+		if (generated != null) {
+			final int pos = tree.skipSeparators(path, start, start, end);
+			if (pos < 0) {
+				return null;
+			}
+			final int captured = captures == null ? 0 : captures.size();
+			final int segments = UriTree.countSegments(path, pos, end);
+			if (captures != null) {
+				captures.startWalk(segments);
+			}
+			final Object found = generated.match(path, start, pos, end, segments, captures, accepted);
+			if (found != DECLINED) {
+				return (V) found;
+			}
+			if (captures != null) {
+				captures.truncate(captured);
+			}
+		}
+		final UriTree<V> node = tree.match(path, start, end, captures, accepted);
+		return node == null ? null : node.getData();
+	}
+
+	/**
+	 * Whether a segment holds a percent escape, which generated code leaves to
+	 * the tree to decode.
+	 */
+	static boolean escaped(final CharSequence path, final int from, final int to) {
+		for (int i = from; i < to; i++) {
+			if (path.charAt(i) == '%') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Whether {@code key} is spelled out in {@code path} at {@code from}, its
+	 * length already checked.
+	 */
+	static boolean regionEquals(final CharSequence path, final int from, final String key) {
+		for (int i = 0; i < key.length(); i++) {
+			if (path.charAt(from + i) != key.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Nodes of the class being defined, in the order of its fields.
+	 */
+	static UriTree<?>[] definedNodes() {
+		return DEFINED_NODES.get();
+	}
+
+	private static Generated generate(final UriTree<?> tree) throws FallbackException {
+		final Map<UriTree<?>, Integer> nodes = new IdentityHashMap<>();
+		final List<UriTree<?>> ordered = new ArrayList<>();
+		number(tree, nodes, ordered);
+		final byte[] bytes;
+		try {
+			bytes = new Writer(nodes, ordered).write();
+		} catch (IllegalArgumentException e) {
+			throw new FallbackException("tree too large for a generated matcher", e);
+		}
+		DEFINED_NODES.set(ordered.toArray(new UriTree<?>[0]));
+		try {
+			final MethodHandles.Lookup lookup = (MethodHandles.Lookup) DEFINE_HIDDEN_CLASS.invoke(
+					MethodHandles.lookup(), bytes, true, Array.newInstance(
+							DEFINE_HIDDEN_CLASS.getParameterTypes()[2].getComponentType(), 0));
+			return (Generated) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class))
+					.invoke();
+		} catch (InvocationTargetException e) {
+			throw new FallbackException("cannot define generated matcher", e.getCause());
+		} catch (Throwable t) {
+			throw new IllegalStateException("Cannot instantiate generated matcher", t);
+		} finally {
+			DEFINED_NODES.remove();
+		}
+	}
+
+	/**
+	 * {@code Lookup.defineHiddenClass}, looked up reflectively as the library
+	 * targets Java 8; <code>null</code> before Java 15.
+	 */
+	private static Method hiddenClassDefinition() {
+		try {
+			final Class<?> option = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+			return MethodHandles.Lookup.class.getMethod("defineHiddenClass", byte[].class, boolean.class,
+					Array.newInstance(option, 0).getClass());
+		} catch (ClassNotFoundException | NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	private static void number(final UriTree<?> node, final Map<UriTree<?>, Integer> nodes,
+							   final List<UriTree<?>> ordered) {
+		if (nodes.containsKey(node)) {
+			return;
+		}
+		nodes.put(node, ordered.size());
+		ordered.add(node);
+		final ChildTable<?> children = node.getChildren();
+		for (int i = 0; children != null && i < children.slots(); i++) {
+			if (children.keyAt(i) != null) {
+				number(children.nodeAt(i), nodes, ordered);
+			}
+		}
+	}
+
+	/**
+	 * Static children of {@code node} by key length, keys sorted.
+	 */
+	private static TreeMap<Integer, List<String>> staticKeysByLength(final UriTree<?> node) {
+		final ChildTable<?> children = node.getChildren();
+		final TreeMap<Integer, List<String>> byLength = new TreeMap<>();
+		for (int i = 0; children != null && i < children.slots(); i++) {
+			final String key = children.keyAt(i);
+			if (key != null && !UriTree.isParameterName(key)) {
+				List<String> keys = byLength.get(key.length());
+				if (keys == null) {
+					keys = new ArrayList<>();
+					byLength.put(key.length(), keys);
+				}
+				keys.add(key);
+			}
+		}
+		for (List<String> keys : byLength.values()) {
+			Collections.sort(keys);
+		}
+		return byLength;
+	}
+
+	/**
+	 * Keys grouped by their character at {@code position}.
+	 */
+	private static TreeMap<Character, List<String>> byChar(final List<String> keys, final int position) {
+		final TreeMap<Character, List<String>> byChar = new TreeMap<>();
+		for (String key : keys) {
+			List<String> group = byChar.get(key.charAt(position));
+			if (group == null) {
+				group = new ArrayList<>();
+				byChar.put(key.charAt(position), group);
+			}
+			group.add(key);
+		}
+		return byChar;
+	}
+
+	/**
+	 * Position at which the keys (all of the same length) have the most distinct
+	 * characters, or -1 when they are few enough to compare one by one or no
+	 * position tells any of them apart.
+	 */
+	private static int distinguishingPosition(final List<String> keys) {
+		if (keys.size() <= EQUALS_CHAIN_LIMIT) {
+			return -1;
+		}
+		final int length = keys.get(0).length();
+		final char[] chars = new char[keys.size()];
+		int best = -1;
+		int bestDistinct = 1;
+		for (int p = 0; p < length; p++) {
+			for (int k = 0; k < chars.length; k++) {
+				chars[k] = keys.get(k).charAt(p);
+			}
+			Arrays.sort(chars);
+			int distinct = 1;
+			for (int k = 1; k < chars.length; k++) {
+				if (chars[k] != chars[k - 1]) {
+					distinct++;
+				}
+			}
+			if (distinct > bestDistinct) {
+				best = p;
+				bestDistinct = distinct;
+			}
+		}
+		return best;
+	}
+
+	private static String type(final Class<?> type) {
+		return type.getName().replace('.', '/');
+	}
+
+	/**
+	 * Base class of generated matchers.
+	 */
+	abstract static class Generated {
+
+		/**
+		 * Node {@link UriTree#matchedBySegments(String[])} reaches from the root.
+		 */
+		abstract Object matchSegments(String[] path);
+
+		/**
+		 * Data of the node {@link UriTree#match(CharSequence, int, int, Captures, Predicate)}
+		 * reaches from the root at {@code pos}, with {@code remaining} segments
+		 * left, or {@link #DECLINED}.
+		 */
+		abstract Object match(CharSequence path, int start, int pos, int end, int remaining, Captures captures,
+							  Predicate<?> accepted);
+
+	}
+
+	/**
+	 * Writes the generated class: static final fields {@code n<i>} holding the
+	 * nodes and {@code d<i>} the data of those having some, then per node a
+	 * method {@code s<i>} matching split segments and a method {@code p<i>}
+	 * matching path characters, each a translation of one step of the tree.
+	 */
+	private static final class Writer {
+
+		/** Locals of {@code s<i>} */
+		private static final int S_PATH = 0;
+		private static final int S_INDEX = 1;
+		private static final int S_REMAINING = 2;
+		private static final int S_SEGMENT = 3;
+		private static final int S_MATCHED = 4;
+
+		/** Locals of {@code p<i>} */
+		private static final int P_PATH = 0;
+		private static final int P_START = 1;
+		private static final int P_POS = 2;
+		private static final int P_END = 3;
+		private static final int P_REMAINING = 4;
+		private static final int P_CAPTURES = 5;
+		private static final int P_ACCEPTED = 6;
+		private static final int P_SEGMENT_END = 7;
+		private static final int P_NEXT = 8;
+		private static final int P_MATCHED = 9;
+		private static final int P_CAPTURED = 10;
+
+		private final Map<UriTree<?>, Integer> nodes;
+		private final List<UriTree<?>> ordered;
+		private final boolean decodesPercent;
+		private final ClassFile out = new ClassFile(CLASS_NAME, GENERATED);
+
+		private Writer(final Map<UriTree<?>, Integer> nodes, final List<UriTree<?>> ordered) {
+			this.nodes = nodes;
+			this.ordered = ordered;
+			this.decodesPercent = ordered.get(0).getNormalization().decodesPercent();
+		}
+
+		private byte[] write() {
+			constants();
+			entryPoints();
+			for (int n = 0; n < ordered.size(); n++) {
+				segmentsMethod(n, ordered.get(n));
+				pathMethod(n, ordered.get(n));
+			}
+			return out.toBytes();
+		}
+
+		private void constants() {
+			final ClassFile.Code init = out.method(ACC_STATIC, "<clinit>", "()V", 3, 1)
+					.invoke(INVOKESTATIC, SELF, "definedNodes", "()[" + NODE)
+					.local(ASTORE, 0);
+			for (int n = 0; n < ordered.size(); n++) {
+				out.field(ACC_STATIC | ACC_FINAL, "n" + n, NODE);
+				init.local(ALOAD, 0).push(n).op(AALOAD).field(PUTSTATIC, CLASS_NAME, "n" + n, NODE);
+				if (ordered.get(n).hasData()) {
+					out.field(ACC_STATIC | ACC_FINAL, "d" + n, OBJECT);
+					init.field(GETSTATIC, CLASS_NAME, "n" + n, NODE)
+							.invoke(INVOKEVIRTUAL, TREE, "getData", "()" + OBJECT)
+							.field(PUTSTATIC, CLASS_NAME, "d" + n, OBJECT);
+				}
+			}
+			init.op(RETURN).end();
+		}
+
+		private void entryPoints() {
+			out.method(0, "<init>", "()V", 1, 1)
+					.local(ALOAD, 0).invoke(INVOKESPECIAL, GENERATED, "<init>", "()V")
+					.op(RETURN).end();
+			out.method(0, "matchSegments", "([Ljava/lang/String;)" + OBJECT, 2, 2)
+					.local(ALOAD, 1).op(ICONST_0)
+					.invoke(INVOKESTATIC, CLASS_NAME, "s0", SEGMENTS_METHOD)
+					.op(ARETURN).end();
+			final ClassFile.Code match = out.method(0, "match", PATH_METHOD, MAX_STACK, P_ACCEPTED + 2);
+			match.local(ALOAD, P_PATH + 1).local(ILOAD, P_START + 1).local(ILOAD, P_POS + 1)
+					.local(ILOAD, P_END + 1).local(ILOAD, P_REMAINING + 1)
+					.local(ALOAD, P_CAPTURES + 1).local(ALOAD, P_ACCEPTED + 1)
+					.invoke(INVOKESTATIC, CLASS_NAME, "p0", PATH_METHOD)
+					.op(ARETURN).end();
+		}
+
+		/**
+		 * {@code s<n>}: the depth bounds of the node are checked against the
+		 * segments left, then the static child is tried and, failing that,
+		 * the parameter child.
+		 */
+		private void segmentsMethod(final int n, final UriTree<?> node) {
+			final ClassFile.Code code = out.method(ACC_STATIC, "s" + n, SEGMENTS_METHOD, MAX_STACK, S_MATCHED + 1);
+			if (node.getMinDepth() < 0) {
+				code.op(ACONST_NULL).op(ARETURN).end();
+				return;
+			}
+			final ClassFile.Label none = new ClassFile.Label();
+			final ClassFile.Label parameter = new ClassFile.Label();
+			code.local(ALOAD, S_PATH).op(ARRAYLENGTH).local(ILOAD, S_INDEX).op(ISUB).local(ISTORE, S_REMAINING);
+			depthBounds(code, node, S_REMAINING, none);
+			if (node.hasData()) {
+				final ClassFile.Label deeper = new ClassFile.Label();
+				code.local(ILOAD, S_REMAINING).jump(IFNE, deeper)
+						.field(GETSTATIC, CLASS_NAME, "n" + n, NODE).op(ARETURN)
+						.mark(deeper);
+			}
+			final TreeMap<Integer, List<String>> byLength = staticKeysByLength(node);
+			if (!byLength.isEmpty()) {
+				code.local(ALOAD, S_PATH).local(ILOAD, S_INDEX).op(AALOAD).local(ASTORE, S_SEGMENT)
+						.local(ALOAD, S_SEGMENT).invoke(INVOKEVIRTUAL, "java/lang/String", "length", "()I");
+				final ClassFile.Label[] cases = switchOver(code, byLength.keySet(), parameter);
+				int c = 0;
+				for (List<String> keys : byLength.values()) {
+					code.mark(cases[c++]);
+					segmentsDispatch(code, node, keys, parameter);
+					code.jump(GOTO, parameter);
+				}
+			}
+			code.mark(parameter);
+			final UriTree<?> parameterized = node.getParameterized();
+			if (parameterized == null) {
+				code.op(ACONST_NULL).op(ARETURN);
+			} else {
+				code.local(ALOAD, S_PATH).local(ILOAD, S_INDEX).op(ICONST_1).op(IADD)
+						.invoke(INVOKESTATIC, CLASS_NAME, "s" + nodes.get(parameterized), SEGMENTS_METHOD)
+						.op(ARETURN);
+			}
+			code.mark(none).op(ACONST_NULL).op(ARETURN).end();
+		}
+
+		private void segmentsDispatch(final ClassFile.Code code, final UriTree<?> node, final List<String> keys,
+									  final ClassFile.Label parameter) {
+			final int position = distinguishingPosition(keys);
+			if (position < 0) {
+				for (String key : keys) {
+					final ClassFile.Label next = new ClassFile.Label();
+					code.local(ALOAD, S_SEGMENT).push(key)
+							.invoke(INVOKEVIRTUAL, "java/lang/String", "equals", "(" + OBJECT + ")Z")
+							.jump(IFEQ, next);
+					segmentsStep(code, node.getChildren().get(key), next);
+					code.mark(next);
+				}
+				return;
+			}
+			final TreeMap<Character, List<String>> byChar = byChar(keys, position);
+			code.local(ALOAD, S_SEGMENT).push(position).invoke(INVOKEVIRTUAL, "java/lang/String", "charAt", "(I)C");
+			final ClassFile.Label[] cases = switchOver(code, byChar.keySet(), parameter);
+			int c = 0;
+			for (List<String> group : byChar.values()) {
+				code.mark(cases[c++]);
+				segmentsDispatch(code, node, group, parameter);
+				code.jump(GOTO, parameter);
+			}
+		}
+
+		/**
+		 * Walks a static child, returning its match if any; otherwise control
+		 * goes on at {@code next}. A leaf with data is matched inline.
+		 */
+		private void segmentsStep(final ClassFile.Code code, final UriTree<?> child, final ClassFile.Label next) {
+			final int c = nodes.get(child);
+			if (child.hasData() && child.isLeaf()) {
+				code.local(ILOAD, S_INDEX).op(ICONST_1).op(IADD).local(ALOAD, S_PATH).op(ARRAYLENGTH)
+						.jump(IF_ICMPNE, next)
+						.field(GETSTATIC, CLASS_NAME, "n" + c, NODE).op(ARETURN);
+				return;
+			}
+			code.local(ALOAD, S_PATH).local(ILOAD, S_INDEX).op(ICONST_1).op(IADD)
+					.invoke(INVOKESTATIC, CLASS_NAME, "s" + c, SEGMENTS_METHOD)
+					.local(ASTORE, S_MATCHED).local(ALOAD, S_MATCHED).jump(IFNULL, next)
+					.local(ALOAD, S_MATCHED).op(ARETURN);
+		}
+
+		/**
+		 * {@code p<n>}: same as {@code s<n>} over path characters, recording
+		 * the depth reached and parameter captures as the tree does, and taking
+		 * the data of the node only when {@code accepted} does.
+		 */
+		private void pathMethod(final int n, final UriTree<?> node) {
+			final ClassFile.Code code = out.method(ACC_STATIC, "p" + n, PATH_METHOD, MAX_STACK, P_CAPTURED + 1);
+			if (node.getMinDepth() < 0) {
+				code.op(ACONST_NULL).op(ARETURN).end();
+				return;
+			}
+			final ClassFile.Label none = new ClassFile.Label();
+			final ClassFile.Label parameter = new ClassFile.Label();
+			final ClassFile.Label reached = new ClassFile.Label();
+			depthBounds(code, node, P_REMAINING, none);
+			code.local(ALOAD, P_CAPTURES).jump(IFNULL, reached)
+					.local(ALOAD, P_CAPTURES).local(ILOAD, P_REMAINING)
+					.invoke(INVOKEVIRTUAL, CAPTURES, "reach", "(I)V")
+					.mark(reached);
+			if (node.hasData()) {
+				final ClassFile.Label deeper = new ClassFile.Label();
+				final ClassFile.Label accept = new ClassFile.Label();
+				code.local(ILOAD, P_REMAINING).jump(IFNE, deeper)
+						.local(ALOAD, P_ACCEPTED).jump(IFNULL, accept)
+						.local(ALOAD, P_ACCEPTED).field(GETSTATIC, CLASS_NAME, "d" + n, OBJECT)
+						.invokeInterface(PREDICATE, "test", "(" + OBJECT + ")Z", 2).jump(IFEQ, none)
+						.mark(accept)
+						.field(GETSTATIC, CLASS_NAME, "d" + n, OBJECT).op(ARETURN)
+						.mark(deeper);
+			}
+			code.field(GETSTATIC, CLASS_NAME, "n0", NODE).invoke(INVOKEVIRTUAL, TREE, "getNormalization",
+					"()L" + type(UriNormalization.class) + ";")
+					.local(ALOAD, P_PATH).local(ILOAD, P_POS).local(ILOAD, P_END)
+					.invoke(INVOKEVIRTUAL, type(UriNormalization.class), "segmentEnd",
+							"(L" + CHAR_SEQUENCE + ";II)I")
+					.local(ISTORE, P_SEGMENT_END);
+			if (decodesPercent) {
+				final ClassFile.Label plain = new ClassFile.Label();
+				code.local(ALOAD, P_PATH).local(ILOAD, P_POS).local(ILOAD, P_SEGMENT_END)
+						.invoke(INVOKESTATIC, SELF, "escaped", "(L" + CHAR_SEQUENCE + ";II)Z").jump(IFEQ, plain)
+						.field(GETSTATIC, SELF, "DECLINED", OBJECT).op(ARETURN)
+						.mark(plain);
+			}
+			code.field(GETSTATIC, CLASS_NAME, "n0", NODE)
+					.local(ALOAD, P_PATH).local(ILOAD, P_START).local(ILOAD, P_SEGMENT_END).local(ILOAD, P_END)
+					.invoke(INVOKEVIRTUAL, TREE, "skipSeparators", "(L" + CHAR_SEQUENCE + ";III)I")
+					.local(ISTORE, P_NEXT).local(ILOAD, P_NEXT).jump(IFLT, none);
+			final TreeMap<Integer, List<String>> byLength = staticKeysByLength(node);
+			if (!byLength.isEmpty()) {
+				code.local(ILOAD, P_SEGMENT_END).local(ILOAD, P_POS).op(ISUB);
+				final ClassFile.Label[] cases = switchOver(code, byLength.keySet(), parameter);
+				int c = 0;
+				for (List<String> keys : byLength.values()) {
+					code.mark(cases[c++]);
+					pathDispatch(code, node, keys, parameter);
+					code.jump(GOTO, parameter);
+				}
+			}
+			code.mark(parameter);
+			final UriTree<?> parameterized = node.getParameterized();
+			if (parameterized == null) {
+				code.op(ACONST_NULL).op(ARETURN);
+			} else {
+				final ClassFile.Label untracked = new ClassFile.Label();
+				final ClassFile.Label walk = new ClassFile.Label();
+				final ClassFile.Label matched = new ClassFile.Label();
+				code.op(ICONST_0).local(ISTORE, P_CAPTURED)
+						.local(ALOAD, P_CAPTURES).jump(IFNULL, walk)
+						.local(ALOAD, P_CAPTURES).invoke(INVOKEVIRTUAL, CAPTURES, "size", "()I")
+						.local(ISTORE, P_CAPTURED)
+						.local(ALOAD, P_CAPTURES).push(parameterized.getKey())
+						.local(ILOAD, P_POS).local(ILOAD, P_SEGMENT_END)
+						.invoke(INVOKEVIRTUAL, CAPTURES, "add", "(Ljava/lang/String;II)V")
+						.mark(walk);
+				pathCall(code, parameterized);
+				code.local(ASTORE, P_MATCHED).local(ALOAD, P_MATCHED).jump(IFNONNULL, matched)
+						.local(ALOAD, P_CAPTURES).jump(IFNULL, untracked)
+						.local(ALOAD, P_CAPTURES).local(ILOAD, P_CAPTURED)
+						.invoke(INVOKEVIRTUAL, CAPTURES, "truncate", "(I)V")
+						.mark(untracked).mark(matched)
+						.local(ALOAD, P_MATCHED).op(ARETURN);
+			}
+			code.mark(none).op(ACONST_NULL).op(ARETURN).end();
+		}
+
+		private void pathDispatch(final ClassFile.Code code, final UriTree<?> node, final List<String> keys,
+								  final ClassFile.Label parameter) {
+			final int position = distinguishingPosition(keys);
+			if (position < 0) {
+				for (String key : keys) {
+					final ClassFile.Label next = new ClassFile.Label();
+					code.local(ALOAD, P_PATH).local(ILOAD, P_POS).push(key)
+							.invoke(INVOKESTATIC, SELF, "regionEquals", "(L" + CHAR_SEQUENCE + ";ILjava/lang/String;)Z")
+							.jump(IFEQ, next);
+					pathCall(code, node.getChildren().get(key));
+					code.local(ASTORE, P_MATCHED).local(ALOAD, P_MATCHED).jump(IFNULL, next)
+							.local(ALOAD, P_MATCHED).op(ARETURN)
+							.mark(next);
+				}
+				return;
+			}
+			final TreeMap<Character, List<String>> byChar = byChar(keys, position);
+			code.local(ALOAD, P_PATH).local(ILOAD, P_POS).push(position).op(IADD)
+					.invokeInterface(CHAR_SEQUENCE, "charAt", "(I)C", 2);
+			final ClassFile.Label[] cases = switchOver(code, byChar.keySet(), parameter);
+			int c = 0;
+			for (List<String> group : byChar.values()) {
+				code.mark(cases[c++]);
+				pathDispatch(code, node, group, parameter);
+				code.jump(GOTO, parameter);
+			}
+		}
+
+		/**
+		 * Calls {@code p<i>} of {@code child} for the next segment.
+		 */
+		private void pathCall(final ClassFile.Code code, final UriTree<?> child) {
+			code.local(ALOAD, P_PATH).local(ILOAD, P_START).local(ILOAD, P_NEXT).local(ILOAD, P_END)
+					.local(ILOAD, P_REMAINING).op(ICONST_1).op(ISUB)
+					.local(ALOAD, P_CAPTURES).local(ALOAD, P_ACCEPTED)
+					.invoke(INVOKESTATIC, CLASS_NAME, "p" + nodes.get(child), PATH_METHOD);
+		}
+
+		/**
+		 * Jumps to {@code none} unless the segments left in local
+		 * {@code remaining} are within the depth bounds of {@code node}.
+		 */
+		private static void depthBounds(final ClassFile.Code code, final UriTree<?> node, final int remaining,
+										final ClassFile.Label none) {
+			code.local(ILOAD, remaining).push(node.getMinDepth()).jump(IF_ICMPLT, none)
+					.local(ILOAD, remaining).push(node.getMaxDepth()).jump(IF_ICMPGT, none);
+		}
+
+		/**
+		 * Switches over the int on the stack, one new label per key, going to
+		 * {@code otherwise} for any other value.
+		 */
+		private static ClassFile.Label[] switchOver(final ClassFile.Code code, final Iterable<?> keys,
+													final ClassFile.Label otherwise) {
+			final List<Integer> values = new ArrayList<>();
+			for (Object key : keys) {
+				values.add(key instanceof Character ? (int) (Character) key : (Integer) key);
+			}
+			final int[] sorted = new int[values.size()];
+			final ClassFile.Label[] cases = new ClassFile.Label[sorted.length];
+			for (int i = 0; i < sorted.length; i++) {
+				sorted[i] = values.get(i);
+				cases[i] = new ClassFile.Label();
+			}
+			code.lookupSwitch(sorted, cases, otherwise);
+			return cases;
+		}
+
+	}
+
+	/**
+	 * Generated code cannot be used; lookups fall back to the tree.
+	 */
+	private static final class FallbackException extends Exception {
+
+		private static final long serialVersionUID = 1L;
+
+		private FallbackException(final String reason, final Throwable cause) {
+			super(cause == null ? reason : reason + ": " + cause, cause);
+		}
+
+	}
+
+}
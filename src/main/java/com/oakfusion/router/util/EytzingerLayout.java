@@ -0,0 +1,78 @@
+package com.oakfusion.router.util;
+
+/**
+ * Search over sorted int keys laid out in Eytzinger (breadth-first) order:
+ * the root at index 1, the children of {@code k} at {@code 2k} and
+ * {@code 2k + 1}. A lookup walks down the implicit tree from the front of the
+ * array, so the first levels stay in cache and each step touches the next
+ * pair of candidates side by side; the comparison only selects the child and
+ * compiles to a conditional move rather than a branch.
+ *
+ * Up to {@link #LINEAR_LIMIT} keys are kept sorted and scanned linearly,
+ * which beats any tree walk at that size. Either way keys live at indices
+ * {@code 1..n}; index 0 is unused.
+ */
+final class EytzingerLayout {
+
+	static final int LINEAR_LIMIT = 16;
+
+	private EytzingerLayout() {
+	}
+
+	/**
+	 * For each index of the layout of {@code n} keys, the index of the key in
+	 * sorted order; entry 0 is unused.
+	 */
+	static int[] order(final int n) {
+		final int[] order = new int[n + 1];
+		if (n <= LINEAR_LIMIT) {
+			for (int i = 1; i <= n; i++) {
+				order[i] = i - 1;
+			}
+			return order;
+		}
+		fill(order, 1, 0, n);
+		return order;
+	}
+
+	private static int fill(final int[] order, final int k, int next, final int n) {
+		if (k <= n) {
+			next = fill(order, 2 * k, next, n);
+			order[k] = next++;
+			next = fill(order, 2 * k + 1, next, n);
+		}
+		return next;
+	}
+
+	/**
+	 * Index of {@code key} in {@code keys} holding {@code n} keys, or -1.
+	 */
+	static int indexOf(final int[] keys, final int n, final int key) {
+		if (n <= LINEAR_LIMIT) {
+			for (int i = 1; i <= n; i++) {
+				if (keys[i] >= key) {
+					return keys[i] == key ? i : -1;
+				}
+			}
+			return -1;
+		}
+		int k = 1;
+		while (k <= n) {
+			k = (k << 1) + (keys[k] < key ? 1 : 0);
+		}
+		k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+		return k != 0 && keys[k] == key ? k : -1;
+	}
+
+	/**
+	 * Throws unless {@code keys[0, n)} are strictly ascending.
+	 */
+	static void checkAscending(final int[] keys, final int n) {
+		for (int i = 1; i < n; i++) {
+			if (keys[i - 1] >= keys[i]) {
+				throw new IllegalArgumentException("Keys are not strictly ascending at index " + i);
+			}
+		}
+	}
+
+}
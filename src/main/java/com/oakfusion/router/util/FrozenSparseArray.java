@@ -0,0 +1,61 @@
+package com.oakfusion.router.util;
+
+/**
+ * Read-only {@link SparseArray}, with keys laid out for lookups that stay
+ * cache friendly on large key sets (see {@link EytzingerLayout}).
+ */
+public final class FrozenSparseArray<E> {
+
+	private final int[] keys;
+	private final Object[] values;
+	private final int size;
+
+	private FrozenSparseArray(final int[] keys, final Object[] values, final int size) {
+		this.keys = keys;
+		this.values = values;
+		this.size = size;
+	}
+
+	/**
+	 * Maps {@code keys[i]} to {@code values[i]} for the first {@code size}
+	 * entries; keys have to be strictly ascending.
+	 */
+	public static <E> FrozenSparseArray<E> of(final int[] keys, final Object[] values, final int size) {
+		EytzingerLayout.checkAscending(keys, size);
+		final int[] order = EytzingerLayout.order(size);
+		final int[] laidOutKeys = new int[size + 1];
+		final Object[] laidOutValues = new Object[size + 1];
+		for (int i = 1; i <= size; i++) {
+			laidOutKeys[i] = keys[order[i]];
+			laidOutValues[i] = values[order[i]];
+		}
+		return new FrozenSparseArray<>(laidOutKeys, laidOutValues, size);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean containsKey(final int key) {
+		return EytzingerLayout.indexOf(keys, size, key) > 0;
+	}
+
+	/**
+	 * Gets the Object mapped from the specified key, or <code>null</code>
+	 * if no such mapping has been made.
+	 */
+	public E get(final int key) {
+		return get(key, null);
+	}
+
+	/**
+	 * Gets the Object mapped from the specified key, or the specified Object
+	 * if no such mapping has been made.
+	 */
+	@SuppressWarnings("unchecked")
+	public E get(final int key, final E valueIfKeyNotFound) {
+		final int i = EytzingerLayout.indexOf(keys, size, key);
+		return i < 0 ? valueIfKeyNotFound : (E) values[i];
+	}
+
+}
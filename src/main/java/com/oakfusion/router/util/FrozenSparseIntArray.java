@@ -0,0 +1,49 @@
+package com.oakfusion.router.util;
+
+/**
+ * Read-only map of int keys to int values, laid out like
+ * {@link FrozenSparseArray} and never boxing either side, e.g. for tables of
+ * route or method ids.
+ */
+public final class FrozenSparseIntArray {
+
+	private final int[] keys;
+	private final int[] values;
+	private final int size;
+
+	private FrozenSparseIntArray(final int[] keys, final int[] values, final int size) {
+		this.keys = keys;
+		this.values = values;
+		this.size = size;
+	}
+
+	/**
+	 * Maps {@code keys[i]} to {@code values[i]} for the first {@code size}
+	 * entries; keys have to be strictly ascending.
+	 */
+	public static FrozenSparseIntArray of(final int[] keys, final int[] values, final int size) {
+		EytzingerLayout.checkAscending(keys, size);
+		final int[] order = EytzingerLayout.order(size);
+		final int[] laidOutKeys = new int[size + 1];
+		final int[] laidOutValues = new int[size + 1];
+		for (int i = 1; i <= size; i++) {
+			laidOutKeys[i] = keys[order[i]];
+			laidOutValues[i] = values[order[i]];
+		}
+		return new FrozenSparseIntArray(laidOutKeys, laidOutValues, size);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean containsKey(final int key) {
+		return EytzingerLayout.indexOf(keys, size, key) > 0;
+	}
+
+	public int get(final int key, final int valueIfKeyNotFound) {
+		final int i = EytzingerLayout.indexOf(keys, size, key);
+		return i < 0 ? valueIfKeyNotFound : values[i];
+	}
+
+}
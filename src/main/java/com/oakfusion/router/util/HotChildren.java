@@ -0,0 +1,55 @@
+package com.oakfusion.router.util;
+
+/**
+ * The one or two hottest static children of a {@link UriTree} node, checked
+ * ahead of its {@link ChildTable}. Immutable; it belongs to the child order it
+ * was picked for, and is only used while that order is the published one and
+ * the node has not lost a child since.
+ */
+final class HotChildren<V> {
+
+	private final UriTree.ChildOrder order;
+	private final int removals;
+	private final String firstKey;
+	private final UriTree<V> first;
+	private final String secondKey;
+	private final UriTree<V> second;
+
+	HotChildren(final UriTree.ChildOrder order, final int removals, final String firstKey, final UriTree<V> first,
+				final String secondKey, final UriTree<V> second) {
+		this.order = order;
+		this.removals = removals;
+		this.firstKey = firstKey;
+		this.first = first;
+		this.secondKey = secondKey;
+		this.second = second;
+	}
+
+	boolean isCurrent(final UriTree.ChildOrder order, final int removals) {
+		return this.order == order && this.removals == removals;
+	}
+
+	/**
+	 * Same contract as {@link ChildTable#get(CharSequence, int, int, int, UriNormalization)},
+	 * limited to the hot children.
+	 */
+	UriTree<V> get(final CharSequence path, final int start, final int end, final int hash,
+				   final UriNormalization normalization) {
+		if (firstKey.hashCode() == hash && normalization.regionMatches(path, start, end, firstKey)) {
+			return first;
+		}
+		if (secondKey != null && secondKey.hashCode() == hash && normalization.regionMatches(path, start, end, secondKey)) {
+			return second;
+		}
+		return null;
+	}
+
+	String firstKey() {
+		return firstKey;
+	}
+
+	String secondKey() {
+		return secondKey;
+	}
+
+}
@@ -0,0 +1,104 @@
+package com.oakfusion.router.util;
+
+/**
+ * Decodes percent-encoded UTF-8 one character at a time, straight from the
+ * request characters.
+ *
+ * Each step returns the decoded code point in the upper half of a long and the
+ * index following it in the lower half, so that callers can walk a region
+ * without allocating.
+ */
+final class PercentDecoder {
+
+	private static final int NOT_ESCAPED = -1;
+
+	private PercentDecoder() {
+	}
+
+	static long literal(final CharSequence s, final int i) {
+		return pack(s.charAt(i), i + 1);
+	}
+
+	/**
+	 * Decodes the character (or percent-encoded UTF-8 sequence) at {@code i}.
+	 * Malformed escapes are taken literally.
+	 */
+	static long decodeAt(final CharSequence s, final int i, final int end) {
+		final char c = s.charAt(i);
+		if (c != '%') {
+			return pack(c, i + 1);
+		}
+		final int lead = escapedByte(s, i, end);
+		if (lead == NOT_ESCAPED) {
+			return pack(c, i + 1);
+		}
+		if (lead < 0x80) {
+			return pack(lead, i + 3);
+		}
+		final int continuations;
+		int codePoint;
+		if ((lead & 0xE0) == 0xC0) {
+			continuations = 1;
+			codePoint = lead & 0x1F;
+		} else if ((lead & 0xF0) == 0xE0) {
+			continuations = 2;
+			codePoint = lead & 0x0F;
+		} else if ((lead & 0xF8) == 0xF0) {
+			continuations = 3;
+			codePoint = lead & 0x07;
+		} else {
+			return pack(c, i + 1);
+		}
+		int j = i + 3;
+		for (int n = 0; n < continuations; n++, j += 3) {
+			final int b = escapedByte(s, j, end);
+			if (b == NOT_ESCAPED || (b & 0xC0) != 0x80) {
+				return pack(c, i + 1);
+			}
+			codePoint = (codePoint << 6) | (b & 0x3F);
+		}
+		if (!Character.isValidCodePoint(codePoint)) {
+			return pack(c, i + 1);
+		}
+		return pack(codePoint, j);
+	}
+
+	/**
+	 * Same as {@link #decodeAt(CharSequence, int, int)}, with {@code '+'} standing
+	 * for a space as in form-encoded query strings.
+	 */
+	static long decodeFormAt(final CharSequence s, final int i, final int end) {
+		if (s.charAt(i) == '+') {
+			return pack(' ', i + 1);
+		}
+		return decodeAt(s, i, end);
+	}
+
+	static int codePoint(final long decoded) {
+		return (int) (decoded >>> 32);
+	}
+
+	static int next(final long decoded) {
+		return (int) decoded;
+	}
+
+	private static int escapedByte(final CharSequence s, final int i, final int end) {
+		if (i + 2 >= end) {
+			return NOT_ESCAPED;
+		}
+		if (s.charAt(i) != '%') {
+			return NOT_ESCAPED;
+		}
+		final int high = Character.digit(s.charAt(i + 1), 16);
+		final int low = Character.digit(s.charAt(i + 2), 16);
+		if (high < 0 || low < 0) {
+			return NOT_ESCAPED;
+		}
+		return (high << 4) | low;
+	}
+
+	private static long pack(final int codePoint, final int next) {
+		return ((long) codePoint << 32) | next;
+	}
+
+}
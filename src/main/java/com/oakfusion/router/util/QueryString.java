@@ -0,0 +1,194 @@
+package com.oakfusion.router.util;
+
+import java.util.Arrays;
+
+/**
+ * Lazy view over the query string of a request.
+ *
+ * Nothing is parsed until a parameter is first asked for; then the bounds of
+ * every name and value are indexed once. Values are decoded into Strings only
+ * by {@link #get(String)} and {@link #getValue(int)}, numeric accessors parse
+ * the request characters in place.
+ */
+public final class QueryString {
+
+	private static final int[] NOT_INDEXED = new int[0];
+
+	private final CharSequence chars;
+	private final int start;
+	private final int end;
+	private int[] bounds = NOT_INDEXED;
+	private int size = -1;
+
+	/**
+	 * View over {@code chars[start, end)}, which holds the query string without
+	 * the leading {@code '?'}.
+	 */
+	public QueryString(final CharSequence chars, final int start, final int end) {
+		this.chars = chars;
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * View over the query string of a request URI, empty if there is none.
+	 */
+	public static QueryString of(final CharSequence uri) {
+		final int length = uri.length();
+		int queryStart = length;
+		int queryEnd = length;
+		for (int i = 0; i < length; i++) {
+			final char c = uri.charAt(i);
+			if (c == '?' && queryStart == length) {
+				queryStart = i + 1;
+			} else if (c == '#') {
+				queryEnd = i;
+				break;
+			}
+		}
+		return new QueryString(uri, Math.min(queryStart, queryEnd), queryEnd);
+	}
+
+	public int size() {
+		index();
+		return size;
+	}
+
+	public boolean contains(final String name) {
+		return indexOf(name) >= 0;
+	}
+
+	/**
+	 * Index of the first parameter called {@code name}, or -1.
+	 */
+	public int indexOf(final String name) {
+		index();
+		for (int i = 0; i < size; i++) {
+			if (nameEquals(i, name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Decoded value of the first parameter called {@code name}, or <code>null</code>.
+	 * A parameter without {@code '='} has an empty value.
+	 */
+	public String get(final String name) {
+		final int i = indexOf(name);
+		return i < 0 ? null : getValue(i);
+	}
+
+	public int getInt(final String name, final int defaultValue) {
+		final int i = indexOf(name);
+		if (i < 0) {
+			return defaultValue;
+		}
+		if (CharRanges.isEncoded(chars, valueStart(i), valueEnd(i))) {
+			return Integer.parseInt(getValue(i));
+		}
+		return CharRanges.parseInt(chars, valueStart(i), valueEnd(i));
+	}
+
+	public long getLong(final String name, final long defaultValue) {
+		final int i = indexOf(name);
+		if (i < 0) {
+			return defaultValue;
+		}
+		if (CharRanges.isEncoded(chars, valueStart(i), valueEnd(i))) {
+			return Long.parseLong(getValue(i));
+		}
+		return CharRanges.parseLong(chars, valueStart(i), valueEnd(i));
+	}
+
+	public String getName(final int index) {
+		checkIndex(index);
+		return decode(bounds[index * 3], bounds[index * 3 + 1]);
+	}
+
+	public String getValue(final int index) {
+		checkIndex(index);
+		return decode(valueStart(index), valueEnd(index));
+	}
+
+	private int valueStart(final int index) {
+		final int separator = bounds[index * 3 + 1];
+		return separator < bounds[index * 3 + 2] ? separator + 1 : separator;
+	}
+
+	private int valueEnd(final int index) {
+		return bounds[index * 3 + 2];
+	}
+
+	private boolean nameEquals(final int index, final String name) {
+		final int nameEnd = bounds[index * 3 + 1];
+		final int length = name.length();
+		int k = 0;
+		int i = bounds[index * 3];
+		while (i < nameEnd) {
+			final long decoded = PercentDecoder.decodeFormAt(chars, i, nameEnd);
+			final int codePoint = PercentDecoder.codePoint(decoded);
+			if (k >= length || codePoint != name.codePointAt(k)) {
+				return false;
+			}
+			k += Character.charCount(codePoint);
+			i = PercentDecoder.next(decoded);
+		}
+		return k == length;
+	}
+
+	private String decode(final int from, final int to) {
+		final StringBuilder out = new StringBuilder(to - from);
+		int i = from;
+		while (i < to) {
+			final long decoded = PercentDecoder.decodeFormAt(chars, i, to);
+			out.appendCodePoint(PercentDecoder.codePoint(decoded));
+			i = PercentDecoder.next(decoded);
+		}
+		return out.toString();
+	}
+
+	/**
+	 * Records, for each parameter, the start of its name, the index of {@code '='}
+	 * (or the end of the parameter when there is none) and the end of its value.
+	 */
+	private void index() {
+		if (size >= 0) {
+			return;
+		}
+		int count = 0;
+		int[] found = NOT_INDEXED;
+		int i = start;
+		while (i < end) {
+			int parameterEnd = i;
+			int separator = -1;
+			while (parameterEnd < end && chars.charAt(parameterEnd) != '&') {
+				if (separator < 0 && chars.charAt(parameterEnd) == '=') {
+					separator = parameterEnd;
+				}
+				parameterEnd++;
+			}
+			if (parameterEnd > i) {
+				if ((count + 1) * 3 > found.length) {
+					found = Arrays.copyOf(found, Math.max(12, found.length * 2));
+				}
+				found[count * 3] = i;
+				found[count * 3 + 1] = separator < 0 ? parameterEnd : separator;
+				found[count * 3 + 2] = parameterEnd;
+				count++;
+			}
+			i = parameterEnd + 1;
+		}
+		bounds = found;
+		size = count;
+	}
+
+	private void checkIndex(final int index) {
+		index();
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("parameter " + index + " of " + size);
+		}
+	}
+
+}
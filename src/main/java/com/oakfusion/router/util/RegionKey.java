@@ -0,0 +1,56 @@
+package com.oakfusion.router.util;
+
+import java.util.HashMap;
+
+/**
+ * Flyweight key looking up a String-keyed map by a region of request characters.
+ *
+ * It hashes like the normalized String would and compares itself to stored
+ * String keys, which is all {@link HashMap#get(Object)} asks of a lookup key.
+ * It must never be stored in a map itself.
+ */
+public final class RegionKey {
+
+	private final UriNormalization normalization;
+	private CharSequence chars;
+	private int start;
+	private int end;
+	private int hash;
+
+	public RegionKey(final UriNormalization normalization) {
+		this.normalization = normalization;
+	}
+
+	public RegionKey(final CharSequence chars, final UriNormalization normalization) {
+		this(normalization);
+		this.chars = chars;
+	}
+
+	public RegionKey of(final int start, final int end) {
+		this.start = start;
+		this.end = end;
+		this.hash = normalization.hash(chars, start, end);
+		return this;
+	}
+
+	public RegionKey of(final CharSequence chars, final int start, final int end) {
+		this.chars = chars;
+		return of(start, end);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(final Object other) {
+		return other instanceof String && normalization.regionMatches(chars, start, end, (String) other);
+	}
+
+	@Override
+	public String toString() {
+		return normalization.decode(chars, start, end, new StringBuilder()).toString();
+	}
+
+}
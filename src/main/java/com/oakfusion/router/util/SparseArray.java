@@ -314,6 +314,66 @@ public class SparseArray<E> {
         size = pos + 1;
     }
     
+    /**
+     * Appends {@code count} mappings at once, optimizing for keys that are
+     * strictly ascending and greater than all existing keys in the array.
+     * Falls back to {@link #put} otherwise.
+     */
+    public void appendAll(int[] keys, E[] values, int count) {
+        if (garbage) {
+            gc();
+        }
+        if (!appendable(keys, count)) {
+            for (int i = 0; i < count; i++) {
+                put(keys[i], values[i]);
+            }
+            return;
+        }
+
+        if (size + count > this.keys.length) {
+            int n = idealIntArraySize(size + count);
+
+            int[] nkeys = new int[n];
+            Object[] nvalues = new Object[n];
+
+            System.arraycopy(this.keys, 0, nkeys, 0, size);
+            System.arraycopy(this.values, 0, nvalues, 0, size);
+
+            this.keys = nkeys;
+            this.values = nvalues;
+        }
+
+        System.arraycopy(keys, 0, this.keys, size, count);
+        System.arraycopy(values, 0, this.values, size, count);
+        size += count;
+    }
+
+    private boolean appendable(int[] keys, int count) {
+        if (count == 0) {
+            return true;
+        }
+        if (size != 0 && keys[0] <= this.keys[size - 1]) {
+            return false;
+        }
+        for (int i = 1; i < count; i++) {
+            if (keys[i - 1] >= keys[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read-only copy of the current mappings, laid out for faster lookups.
+     */
+    public FrozenSparseArray<E> freeze() {
+        if (garbage) {
+            gc();
+        }
+
+        return FrozenSparseArray.of(keys, values, size);
+    }
+
     private static int binarySearch(int[] a, int start, int len, int key) {
         int high = start + len, low = start - 1, guess;
 
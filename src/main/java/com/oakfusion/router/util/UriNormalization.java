@@ -0,0 +1,199 @@
+package com.oakfusion.router.util;
+
+/**
+ * Rules applied to a request path while it is matched against a {@link UriTree}.
+ *
+ * Normalization never produces a new String: segments are scanned, decoded and
+ * compared one character at a time straight from the request characters. Only
+ * {@link #decode(CharSequence, int, int, StringBuilder)} writes anything out, and
+ * it is meant to be called when a captured parameter value is actually needed.
+ *
+ * Instances are immutable; use the {@code with*} methods to derive new rules.
+ */
+public final class UriNormalization {
+
+	public enum TrailingSlash {
+		/** {@code /a/b/} matches the same route as {@code /a/b} */
+		IGNORE,
+		/** {@code /a/b/} never matches a route */
+		REJECT
+	}
+
+	/**
+	 * Rules matching the behaviour of splitting a path on separators:
+	 * repeated and trailing separators are ignored, segments are compared
+	 * as they are.
+	 */
+	public static final UriNormalization DEFAULT = new UriNormalization(true, TrailingSlash.IGNORE, false, false);
+
+	private final boolean mergeSlashes;
+	private final TrailingSlash trailingSlash;
+	private final boolean foldCase;
+	private final boolean decodePercent;
+
+	private UriNormalization(final boolean mergeSlashes, final TrailingSlash trailingSlash,
+							 final boolean foldCase, final boolean decodePercent) {
+		this.mergeSlashes = mergeSlashes;
+		this.trailingSlash = trailingSlash;
+		this.foldCase = foldCase;
+		this.decodePercent = decodePercent;
+	}
+
+	public UriNormalization withSlashMerging(final boolean mergeSlashes) {
+		return new UriNormalization(mergeSlashes, trailingSlash, foldCase, decodePercent);
+	}
+
+	public UriNormalization withTrailingSlash(final TrailingSlash trailingSlash) {
+		return new UriNormalization(mergeSlashes, trailingSlash, foldCase, decodePercent);
+	}
+
+	public UriNormalization withCaseFolding(final boolean foldCase) {
+		return new UriNormalization(mergeSlashes, trailingSlash, foldCase, decodePercent);
+	}
+
+	public UriNormalization withPercentDecoding(final boolean decodePercent) {
+		return new UriNormalization(mergeSlashes, trailingSlash, foldCase, decodePercent);
+	}
+
+	public boolean mergesSlashes() {
+		return mergeSlashes;
+	}
+
+	public TrailingSlash getTrailingSlash() {
+		return trailingSlash;
+	}
+
+	public boolean foldsCase() {
+		return foldCase;
+	}
+
+	public boolean decodesPercent() {
+		return decodePercent;
+	}
+
+	/**
+	 * Folds a key as it is stored in the tree, so that registered segments
+	 * compare equal to normalized request segments. Returns the same instance
+	 * when nothing changes.
+	 */
+	public String foldKey(final String key) {
+		if (!foldCase) {
+			return key;
+		}
+		for (int i = 0; i < key.length(); i++) {
+			final char c = key.charAt(i);
+			if (fold(c) != c) {
+				return foldFrom(key, i);
+			}
+		}
+		return key;
+	}
+
+	private static String foldFrom(final String key, final int from) {
+		final char[] chars = key.toCharArray();
+		for (int i = from; i < chars.length; i++) {
+			chars[i] = fold(chars[i]);
+		}
+		return new String(chars);
+	}
+
+	private static char fold(final char c) {
+		if (c < 0x80) {
+			return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+		}
+		return Character.toLowerCase(c);
+	}
+
+	/**
+	 * Index of the first raw separator at or after {@code from}, or {@code end}.
+	 * An encoded separator ({@code %2F}) never splits a segment.
+	 */
+	public int segmentEnd(final CharSequence path, final int from, final int end) {
+		for (int i = from; i < end; i++) {
+			if (path.charAt(i) == '/') {
+				return i;
+			}
+		}
+		return end;
+	}
+
+	/**
+	 * Same value as {@link String#hashCode()} of the normalized segment.
+	 */
+	public int hash(final CharSequence path, final int start, final int end) {
+		int h = 0;
+		int i = start;
+		while (i < end) {
+			final long decoded = decodeAt(path, i, end);
+			final int codePoint = codePoint(decoded);
+			if (Character.isBmpCodePoint(codePoint)) {
+				h = 31 * h + comparable((char) codePoint);
+			} else {
+				h = 31 * h + comparable(Character.highSurrogate(codePoint));
+				h = 31 * h + comparable(Character.lowSurrogate(codePoint));
+			}
+			i = next(decoded);
+		}
+		return h;
+	}
+
+	/**
+	 * Compares the normalized segment with a key as stored in the tree.
+	 */
+	public boolean regionMatches(final CharSequence path, final int start, final int end, final String key) {
+		final int length = key.length();
+		int k = 0;
+		int i = start;
+		while (i < end) {
+			final long decoded = decodeAt(path, i, end);
+			final int codePoint = codePoint(decoded);
+			if (Character.isBmpCodePoint(codePoint)) {
+				if (k >= length || comparable((char) codePoint) != key.charAt(k++)) {
+					return false;
+				}
+			} else {
+				if (k + 1 >= length
+						|| comparable(Character.highSurrogate(codePoint)) != key.charAt(k++)
+						|| comparable(Character.lowSurrogate(codePoint)) != key.charAt(k++)) {
+					return false;
+				}
+			}
+			i = next(decoded);
+		}
+		return k == length;
+	}
+
+	/**
+	 * Appends the decoded segment to {@code out}. Case is preserved, since
+	 * folding only applies to matching.
+	 */
+	public StringBuilder decode(final CharSequence path, final int start, final int end, final StringBuilder out) {
+		int i = start;
+		while (i < end) {
+			final long decoded = decodeAt(path, i, end);
+			out.appendCodePoint(codePoint(decoded));
+			i = next(decoded);
+		}
+		return out;
+	}
+
+	private char comparable(final char c) {
+		return foldCase ? fold(c) : c;
+	}
+
+	private long decodeAt(final CharSequence path, final int i, final int end) {
+		if (!decodePercent) {
+			return PercentDecoder.literal(path, i);
+		}
+		return PercentDecoder.decodeAt(path, i, end);
+	}
+
+	private static int codePoint(final long decoded) {
+		return PercentDecoder.codePoint(decoded);
+	}
+
+	private static int next(final long decoded) {
+		return PercentDecoder.next(decoded);
+	}
+
+}
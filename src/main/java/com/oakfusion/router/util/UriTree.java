@@ -1,7 +1,16 @@
 package com.oakfusion.router.util;
 
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 import static java.lang.String.format;
 import static org.apache.commons.lang3.StringUtils.isEmpty;
@@ -12,17 +21,40 @@ public class UriTree<V> {
 	public static final String PATH_SEPARATOR = "/";
 
 	private final String key;
+	private final UriNormalization normalization;
 	private String parameter;
-	private Map<String, UriTree<V>> children = new HashMap<>();
+	private ChildTable<V> children;
 	private V data;
+	private boolean frozen;
+	/** Fewest and most segments left to a node with data, -1 when no node below has data */
+	private int minDepth = -1;
+	private int maxDepth = -1;
+	/** Sampled matches that went through the edge into this node, see {@link #adaptChildOrder} */
+	private int hits;
+	/** Children removed so far; hot children picked before a removal are not used */
+	private int removals;
+	private HotChildren<V> hot;
+	/** Last child order published by {@link #reorderChildren()} on this node */
+	private volatile ChildOrder order;
+	private volatile ChildOrderProfile profile;
 
 	public UriTree(final String root) {
+		this(root, UriNormalization.DEFAULT);
+	}
+
+	public UriTree(final String root, final UriNormalization normalization) {
 		this.key = root;
+		this.normalization = normalization;
 	}
 
 	public UriTree(final String key, final V data) {
 		this(key);
-		this.data = data;
+		setData(data);
+	}
+
+	private UriTree(final String key, final V data, final UriNormalization normalization) {
+		this(key, normalization);
+		setData(data);
 	}
 
 	public boolean hasData() {
@@ -35,20 +67,112 @@ public class UriTree<V> {
 
 	private void setData(final V data) {
 		this.data = data;
+		if (data != null) {
+			minDepth = 0;
+			maxDepth = Math.max(maxDepth, 0);
+		} else if (minDepth == 0) {
+			updateDepths();
+		}
+	}
+
+	/**
+	 * Recomputes the depth bounds of this node from its data and children,
+	 * whose bounds have to be up to date.
+	 */
+	private void updateDepths() {
+		int min = data != null ? 0 : -1;
+		int max = min;
+		for (int i = 0; children != null && i < children.slots(); i++) {
+			final UriTree<V> child = children.nodeAt(i);
+			if (children.keyAt(i) != null && child.minDepth >= 0) {
+				min = min < 0 ? child.minDepth + 1 : Math.min(min, child.minDepth + 1);
+				max = Math.max(max, child.maxDepth + 1);
+			}
+		}
+		minDepth = min;
+		maxDepth = max;
+	}
+
+	/**
+	 * Brings the depth bounds of this node up to date once those of
+	 * {@code child} went from {@code oldMin} and {@code oldMax} to its current
+	 * ones, or once it was removed. The new bounds of the child are folded in;
+	 * all children are looked at again only when the child narrowed a bound
+	 * it may have been the one to set, so adding children stays O(1) each.
+	 */
+	private void childDepthsChanged(final UriTree<V> child, final int oldMin, final int oldMax) {
+		final boolean narrowed = oldMin >= 0
+				&& (child.minDepth < 0 || child.minDepth > oldMin || child.maxDepth < oldMax);
+		if (narrowed && (oldMin + 1 == minDepth || oldMax + 1 == maxDepth)) {
+			updateDepths();
+		} else if (child.minDepth >= 0) {
+			minDepth = minDepth < 0 ? child.minDepth + 1 : Math.min(minDepth, child.minDepth + 1);
+			maxDepth = Math.max(maxDepth, child.maxDepth + 1);
+		}
+	}
+
+	int getMinDepth() {
+		return minDepth;
+	}
+
+	int getMaxDepth() {
+		return maxDepth;
 	}
 
 	public String getKey() {
 		return key;
 	}
 
+	public UriNormalization getNormalization() {
+		return normalization;
+	}
+
 	public boolean isLeaf() {
-		return children.isEmpty();
+		return children == null;
+	}
+
+	public int getChildCount() {
+		return children == null ? 0 : children.size();
 	}
 
 	@Override
 	public String toString() {
 		return format("UriTree %s: [%s], data: [%s], children: [%d]",
-				isLeaf() ? "leaf" : "node", key, data, children.size());
+				isLeaf() ? "leaf" : "node", key, data, getChildCount());
+	}
+
+	private UriTree<V> child(final String key) {
+		return children == null ? null : children.get(key);
+	}
+
+	/**
+	 * Key of the edge a pattern segment takes from this node. Parameter
+	 * segments all take the single parameter edge, keyed by the name it was
+	 * first registered with; names of the parameters of a route are the ones
+	 * in its own pattern.
+	 */
+	private String edgeKey(final String segment) {
+		final String key = foldKey(segment);
+		return parameter != null && isParameterName(key) ? parameter : key;
+	}
+
+	private void addChild(final String key, final UriTree<V> node) {
+		if (children == null) {
+			children = new ChildTable<>();
+		}
+		children.put(key, node);
+	}
+
+	private void removeChild(final String key) {
+		children.remove(key);
+		removals++;
+		hot = null;
+		if (key.equals(parameter)) {
+			parameter = null;
+		}
+		if (children.size() == 0) {
+			children = null;
+		}
 	}
 
 	public UriTree put(final String[] path) {
@@ -66,6 +190,9 @@ public class UriTree<V> {
 	}
 
 	public UriTree put(final String[] path, final V data) {
+		if (frozen) {
+			throw new IllegalStateException("tree is frozen");
+		}
 		if (path.length == 0) {
 			throw new IllegalArgumentException("path cannot be empty");
 		}
@@ -81,36 +208,100 @@ public class UriTree<V> {
 		return getRecursive(this, path, 0);
 	}
 
+	/**
+	 * Node registered under exactly {@code pathString} (parameters given in
+	 * braces under any name, e.g. {@code {id}}), or <code>null</code> if there
+	 * is none.
+	 */
+	public UriTree<V> find(final String pathString) {
+		UriTree<V> node = this;
+		for (String segment : split(pathString, PATH_SEPARATOR)) {
+			node = node.child(node.edgeKey(segment));
+			if (node == null) {
+				return null;
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Removes the data stored under {@code pathString} (parameters given in
+	 * braces under any name, e.g. {@code {id}}) and prunes nodes left without
+	 * data and children.
+	 *
+	 * @return the removed data, or <code>null</code> if there was none
+	 */
+	public V remove(final String pathString) {
+		if (frozen) {
+			throw new IllegalStateException("tree is frozen");
+		}
+		final String[] path = split(pathString, PATH_SEPARATOR);
+		if (path.length == 0) {
+			throw new IllegalArgumentException("path cannot be empty");
+		}
+		return removeRecursive(this, path, 0);
+	}
+
+	private V removeRecursive(final UriTree<V> tree, final String[] path, final int idx) {
+		final String currentKey = tree.edgeKey(path[idx]);
+		final UriTree<V> node = tree.child(currentKey);
+		if (node == null) {
+			return null;
+		}
+		final int oldMin = node.minDepth;
+		final int oldMax = node.maxDepth;
+		final V removed;
+		if (idx == path.length - 1) {
+			removed = node.data;
+			node.setData(null);
+		} else {
+			removed = removeRecursive(node, path, idx + 1);
+		}
+		if (node.data == null && node.isLeaf()) {
+			tree.removeChild(currentKey);
+		}
+		tree.childDepthsChanged(node, oldMin, oldMax);
+		return removed;
+	}
+
 	private UriTree putRecursive(final UriTree<V> tree, final String[] path, final int idx, final V data) {
-		final String currentKey = path[idx];
-		if (isEmpty(currentKey)) {
+		if (isEmpty(path[idx])) {
 			throw new IllegalArgumentException("path cannot contain empty elements");
 		}
+		final String currentKey = tree.edgeKey(path[idx]);
 		if (isParameterName(currentKey)) {
 			tree.parameter = currentKey;
 		}
 		final boolean isTerminalNode = path.length == idx + 1;
-		UriTree<V> node = tree.children.get(currentKey);
+		UriTree<V> node = tree.child(currentKey);
 		if (node == null) {
-			node = new UriTree<>(currentKey, isTerminalNode ? data : null);
-			tree.children.put(currentKey, node);
+			node = new UriTree<>(currentKey, isTerminalNode ? data : null, normalization);
+			tree.addChild(currentKey, node);
 		}
+		final int oldMin = node.minDepth;
+		final int oldMax = node.maxDepth;
 		if (isTerminalNode) {
 			node.setData(data);
 		}
-		return isTerminalNode ? node : putRecursive(node, path, idx + 1, data);
+		final UriTree result = isTerminalNode ? node : putRecursive(node, path, idx + 1, data);
+		tree.childDepthsChanged(node, oldMin, oldMax);
+		return result;
 	}
 
-	private boolean isParameterName(String currentKey) {
+	static boolean isParameterName(String currentKey) {
 		return currentKey.startsWith("{") && currentKey.endsWith("}");
 	}
 
+	private String foldKey(final String key) {
+		return isParameterName(key) ? key : normalization.foldKey(key);
+	}
+
 	private UriTree<V> getRecursive(final UriTree<V> tree, final String[] path, final int idx) {
 		if (escapeRecursion(tree, path, idx)) {
 			return null;
 		}
-		final String currentKey = path[idx];
-		final UriTree<V> currentChild = tree.children.get(currentKey);
+		final String currentKey = tree.edgeKey(path[idx]);
+		final UriTree<V> currentChild = tree.child(currentKey);
 		if (currentChild == null) {
 			return null;
 		}
@@ -125,26 +316,54 @@ public class UriTree<V> {
 		return tree.isLeaf() || length == 0 || idx >= length || isEmpty(path[idx]);
 	}
 
+	/**
+	 * Node with data reached by {@code path}, every segment consumed. A static
+	 * child is preferred over the parameter child, falling back to the latter
+	 * when the static branch dead-ends; see {@link #match(CharSequence)}.
+	 */
 	public UriTree<V> matchedBySegments(final String[] path) {
-		UriTree<V> currentNode = this;
-		for (String pathString : path) {
-			UriTree<V> node = currentNode.get(pathString);
-			if (node == null) {
-				node = currentNode.getParameterized();
-				if (node == null) {
-					return null;
-				}
-			}
-			if (node.hasData() && node.isLeaf()) {
-				return node;
+		return matchSegments(path, 0);
+	}
+
+	private UriTree<V> matchSegments(final String[] path, final int i) {
+		final int remaining = path.length - i;
+		if (remaining < minDepth || remaining > maxDepth) {
+			return null;
+		}
+		if (remaining == 0) {
+			return this;
+		}
+		final UriTree<V> child = staticChild(child(normalization.foldKey(path[i])));
+		if (child != null) {
+			final UriTree<V> matched = child.matchSegments(path, i + 1);
+			if (matched != null) {
+				return matched;
 			}
-			currentNode = node;
 		}
-		return null;
+		final UriTree<V> parameterized = getParameterized();
+		return parameterized == null ? null : parameterized.matchSegments(path, i + 1);
+	}
+
+	/**
+	 * {@code child} unless it is a parameter child, which a request segment
+	 * spelling out the parameter key (e.g. {@code {id}} or {@code %7Bid%7D})
+	 * reaches by the static lookup as well; such a segment is a value for the
+	 * parameter like any other.
+	 */
+	private static <V> UriTree<V> staticChild(final UriTree<V> child) {
+		return child == null || isParameterName(child.key) ? null : child;
 	}
 
-	private UriTree<V> getParameterized() {
-		return get(parameter);
+	UriTree<V> getParameterized() {
+		return parameter == null ? null : children.get(parameter);
+	}
+
+	ChildTable<V> getChildren() {
+		return children;
+	}
+
+	HotChildren<V> getHotChildren() {
+		return hot;
 	}
 
 	public UriTree<V> matchedBySegments(final String pathString) {
@@ -161,4 +380,452 @@ public class UriTree<V> {
 		return matchesBySegments(path);
 	}
 
+	/**
+	 * Matches a request path against the tree without splitting it. Separators,
+	 * escapes and case are normalized on the fly according to this tree's
+	 * {@link UriNormalization}. The whole path has to be consumed, ending on a
+	 * node with data.
+	 *
+	 * A static child is preferred over the parameter child of a node; when the
+	 * static branch dead-ends, matching backtracks to the parameter child. Each
+	 * node keeps the fewest and most segments left to a node with data below
+	 * it, so branches that cannot end on data for the segments left in the
+	 * path are never entered; see {@link #matchCostBound()} for the worst case.
+	 *
+	 * @return the node with data reached by the path, or <code>null</code> if there is none
+	 */
+	public UriTree<V> match(final CharSequence path) {
+		return match(path, 0, path.length(), null);
+	}
+
+	/**
+	 * Same as {@link #match(CharSequence)} for {@code path[start, end)}, recording
+	 * parameter segments of the match into {@code captures} (if not null).
+	 */
+	public UriTree<V> match(final CharSequence path, final int start, final int end, final Captures captures) {
+		return match(path, start, end, captures, null);
+	}
+
+	/**
+	 * Same as {@link #match(CharSequence, int, int, Captures)}, taking a node
+	 * with data only when {@code accepted} (if not null) accepts its data; at
+	 * any other node matching backtracks as if the branch had dead-ended.
+	 */
+	public UriTree<V> match(final CharSequence path, final int start, final int end, final Captures captures,
+							final Predicate<? super V> accepted) {
+		final int pos = skipSeparators(path, start, start, end);
+		if (pos < 0) {
+			return null;
+		}
+		final int segments = countSegments(path, pos, end);
+		if (captures != null) {
+			captures.startWalk(segments);
+		}
+		final ChildOrderProfile profile = this.profile;
+		final boolean sampled = profile != null && (ThreadLocalRandom.current().nextInt() & profile.mask) == 0;
+		final UriTree<V> matched = matchFrom(path, start, pos, end, segments, captures, accepted, order, sampled);
+		if (sampled && matched != null && profile.sampled()) {
+			profile.reorder(this);
+		}
+		return matched;
+	}
+
+	private UriTree<V> matchFrom(final CharSequence path, final int start, final int pos, final int end,
+								 final int remaining, final Captures captures, final Predicate<? super V> accepted,
+								 final ChildOrder order, final boolean sampled) {
+		if (remaining < minDepth || remaining > maxDepth) {
+			return null;
+		}
+		if (captures != null) {
+			captures.reach(remaining);
+		}
+		if (remaining == 0) {
+			return accepted == null || accepted.test(data) ? this : null;
+		}
+		final int segmentEnd = normalization.segmentEnd(path, pos, end);
+		final int next = skipSeparators(path, start, segmentEnd, end);
+		if (next < 0) {
+			return null;
+		}
+		final int hash = normalization.hash(path, pos, segmentEnd);
+		final HotChildren<V> hot = this.hot;
+		UriTree<V> child = hot == null || !hot.isCurrent(order, removals) ? null
+				: hot.get(path, pos, segmentEnd, hash, normalization);
+		if (child == null) {
+			child = staticChild(children.get(path, pos, segmentEnd, hash, normalization));
+		}
+		if (child != null) {
+			final UriTree<V> matched = child.matchFrom(path, start, next, end, remaining - 1, captures, accepted,
+					order, sampled);
+			if (matched != null) {
+				if (sampled) {
+					child.hits++;
+				}
+				return matched;
+			}
+		}
+		final UriTree<V> parameterized = getParameterized();
+		if (parameterized == null) {
+			return null;
+		}
+		final int captured = captures == null ? 0 : captures.size();
+		if (captures != null) {
+			captures.add(parameterized.key, pos, segmentEnd);
+		}
+		final UriTree<V> matched = parameterized.matchFrom(path, start, next, end, remaining - 1, captures,
+				accepted, order, sampled);
+		if (matched == null && captures != null) {
+			captures.truncate(captured);
+		} else if (matched != null && sampled) {
+			parameterized.hits++;
+		}
+		return matched;
+	}
+
+	/**
+	 * Orders children by the traffic matching sends through them, rebuilding
+	 * the order on the common {@link ForkJoinPool}; see
+	 * {@link #adaptChildOrder(int, int, Executor)}.
+	 */
+	public UriTree<V> adaptChildOrder(final int sampleEvery, final int reorderEvery) {
+		return adaptChildOrder(sampleEvery, reorderEvery, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Orders children by the traffic matching sends through them. One match in
+	 * {@code sampleEvery} (rounded up to a power of two) counts the edges it
+	 * takes; every {@code reorderEvery} sampled matches, {@link #reorderChildren()}
+	 * is handed to {@code executor}, so the thread that completed the last of
+	 * them does not pay for walking the tree. One rebuild runs at a time;
+	 * samples completed meanwhile do not start another. Counting is racy and
+	 * may lose samples, which only blurs the ordering.
+	 *
+	 * Configured on the node matching starts from; {@code sampleEvery} of 0
+	 * switches sampling off again.
+	 */
+	public UriTree<V> adaptChildOrder(final int sampleEvery, final int reorderEvery, final Executor executor) {
+		if (sampleEvery < 0 || reorderEvery < 1) {
+			throw new IllegalArgumentException(format("invalid sampling: every %d, reorder every %d",
+					sampleEvery, reorderEvery));
+		}
+		profile = sampleEvery == 0 ? null : new ChildOrderProfile(sampleEvery, reorderEvery, executor);
+		return this;
+	}
+
+	/**
+	 * Puts the hottest static children of every node, by sampled hits, in a
+	 * small inline check ahead of the child table. A child makes it there when
+	 * it took at least a quarter of the node's sampled traffic, the parameter
+	 * child included, so a node whose traffic goes mostly to its parameter does
+	 * not pay for extra checks. Hits are halved afterwards, so the ordering
+	 * follows shifts in traffic. Works on frozen and deduplicated trees alike;
+	 * a subtree shared by several parents pools its hits.
+	 *
+	 * The new ordering of all nodes is published at once, by a single volatile
+	 * write on this node: matching from here reads it once and only uses hot
+	 * children picked by that rebuild, so a concurrent match sees either the
+	 * previous ordering or the new one, and both lead to the same results. Hot
+	 * children of a node that lost a child since are not used.
+	 */
+	public void reorderChildren() {
+		final ChildOrder order = new ChildOrder();
+		final Map<UriTree<V>, Boolean> visited = new IdentityHashMap<>();
+		reorder(this, order, visited);
+		for (UriTree<V> node : visited.keySet()) {
+			node.hits >>>= 1;
+		}
+		this.order = order;
+	}
+
+	private static <V> void reorder(final UriTree<V> tree, final ChildOrder order,
+									final Map<UriTree<V>, Boolean> visited) {
+		if (visited.put(tree, Boolean.TRUE) != null) {
+			return;
+		}
+		final int removals = tree.removals;
+		final ChildTable<V> children = tree.children;
+		if (children == null) {
+			tree.hot = null;
+			return;
+		}
+		long total = 0;
+		int first = -1;
+		int second = -1;
+		for (int i = 0; i < children.slots(); i++) {
+			final UriTree<V> child = children.nodeAt(i);
+			if (children.keyAt(i) == null) {
+				continue;
+			}
+			total += child.hits;
+			if (isParameterName(children.keyAt(i)) || child.hits == 0) {
+				continue;
+			}
+			if (first < 0 || child.hits > children.nodeAt(first).hits) {
+				second = first;
+				first = i;
+			} else if (second < 0 || child.hits > children.nodeAt(second).hits) {
+				second = i;
+			}
+		}
+		if (second >= 0 && children.nodeAt(second).hits * 4L < total) {
+			second = -1;
+		}
+		if (first >= 0 && children.nodeAt(first).hits * 4L < total) {
+			first = -1;
+		}
+		final boolean inPlace = !children.isHashed() && first == 0 && (second < 0 || second == 1);
+		tree.hot = first < 0 || inPlace ? null : new HotChildren<>(order, removals,
+				children.keyAt(first), children.nodeAt(first),
+				second < 0 ? null : children.keyAt(second), second < 0 ? null : children.nodeAt(second));
+		for (int i = 0; i < children.slots(); i++) {
+			if (children.keyAt(i) != null) {
+				reorder(children.nodeAt(i), order, visited);
+			}
+		}
+	}
+
+	static int countSegments(final CharSequence path, final int from, final int end) {
+		int count = 0;
+		boolean inSegment = false;
+		for (int i = from; i < end; i++) {
+			if (path.charAt(i) == '/') {
+				inSegment = false;
+			} else if (!inSegment) {
+				inSegment = true;
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Most nodes a single match can visit: at every node the static child
+	 * matching the segment may be walked in full before the parameter child is.
+	 * Subtrees left without data are not counted, as matching never enters them.
+	 */
+	public int matchCostBound() {
+		return matchCost(this, new IdentityHashMap<UriTree<V>, Integer>());
+	}
+
+	private static <V> int matchCost(final UriTree<V> tree, final Map<UriTree<V>, Integer> costs) {
+		final Integer known = costs.get(tree);
+		if (known != null) {
+			return known;
+		}
+		int cost = 1;
+		if (tree.minDepth >= 0 && tree.children != null) {
+			final UriTree<V> parameterized = tree.getParameterized();
+			int staticCost = 0;
+			for (int i = 0; i < tree.children.slots(); i++) {
+				final UriTree<V> child = tree.children.nodeAt(i);
+				final String childKey = tree.children.keyAt(i);
+				if (childKey != null && !isParameterName(childKey) && child.minDepth >= 0) {
+					staticCost = Math.max(staticCost, matchCost(child, costs));
+				}
+			}
+			cost += staticCost;
+			if (parameterized != null && parameterized.minDepth >= 0) {
+				cost += matchCost(parameterized, costs);
+			}
+		}
+		costs.put(tree, cost);
+		return cost;
+	}
+
+	/**
+	 * Skips the separators at {@code from}. Returns the start of the next segment,
+	 * {@code end} when the path is exhausted, or -1 when the separators found are
+	 * not allowed by the normalization rules.
+	 */
+	int skipSeparators(final CharSequence path, final int start, final int from, final int end) {
+		int pos = from;
+		while (pos < end && path.charAt(pos) == '/') {
+			pos++;
+		}
+		final int separators = pos - from;
+		if (separators > 1 && !normalization.mergesSlashes()) {
+			return -1;
+		}
+		final boolean trailing = separators > 0 && pos == end && from > start;
+		if (trailing && normalization.getTrailingSlash() == UriNormalization.TrailingSlash.REJECT) {
+			return -1;
+		}
+		return pos;
+	}
+
+	/**
+	 * Makes this tree read-only; any later {@code put} throws {@link IllegalStateException}.
+	 */
+	public UriTree<V> freeze() {
+		if (!frozen) {
+			frozen = true;
+			for (int i = 0; children != null && i < children.slots(); i++) {
+				if (children.keyAt(i) != null) {
+					children.nodeAt(i).freeze();
+				}
+			}
+		}
+		return this;
+	}
+
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	/**
+	 * Freezes the tree and shares structurally identical subtrees, turning it into
+	 * a DAG. Two subtrees are identical when their keys, parameters and data
+	 * ({@link Object#equals(Object)}) are equal all the way down, so every path
+	 * still leads to the same data. Lookups are not affected.
+	 *
+	 * @return the number of nodes left in the tree
+	 */
+	public int deduplicate() {
+		freeze();
+		final Map<Shape<V>, UriTree<V>> canonical = new HashMap<>();
+		canonicalize(this, canonical, new IdentityHashMap<UriTree<V>, UriTree<V>>());
+		return countNodes();
+	}
+
+	/**
+	 * Number of distinct nodes reachable from this one, itself included.
+	 */
+	public int countNodes() {
+		final Map<UriTree<V>, Boolean> visited = new IdentityHashMap<>();
+		countNodes(this, visited);
+		return visited.size();
+	}
+
+	private static <V> void countNodes(final UriTree<V> tree, final Map<UriTree<V>, Boolean> visited) {
+		if (visited.put(tree, Boolean.TRUE) == null && tree.children != null) {
+			for (int i = 0; i < tree.children.slots(); i++) {
+				if (tree.children.keyAt(i) != null) {
+					countNodes(tree.children.nodeAt(i), visited);
+				}
+			}
+		}
+	}
+
+	private static <V> UriTree<V> canonicalize(final UriTree<V> tree, final Map<Shape<V>, UriTree<V>> canonical,
+											   final Map<UriTree<V>, UriTree<V>> done) {
+		final UriTree<V> known = done.get(tree);
+		if (known != null) {
+			return known;
+		}
+		for (int i = 0; tree.children != null && i < tree.children.slots(); i++) {
+			if (tree.children.keyAt(i) != null) {
+				tree.children.setNodeAt(i, canonicalize(tree.children.nodeAt(i), canonical, done));
+			}
+		}
+		tree.hot = null;
+		final Shape<V> shape = new Shape<>(tree);
+		UriTree<V> result = canonical.get(shape);
+		if (result == null) {
+			canonical.put(shape, tree);
+			result = tree;
+		}
+		done.put(tree, result);
+		return result;
+	}
+
+	/**
+	 * Identity of one run of {@link #reorderChildren()}, which the hot children
+	 * it picked carry.
+	 */
+	static final class ChildOrder {
+	}
+
+	/**
+	 * Sampling state of {@link #adaptChildOrder}, held by the node matching
+	 * starts from.
+	 */
+	private static final class ChildOrderProfile {
+
+		private final int mask;
+		private final int reorderEvery;
+		private final Executor executor;
+		private final AtomicInteger samples = new AtomicInteger();
+		private final AtomicBoolean reordering = new AtomicBoolean();
+
+		private ChildOrderProfile(final int sampleEvery, final int reorderEvery, final Executor executor) {
+			this.mask = sampleEvery <= 1 ? 0 : Integer.highestOneBit(sampleEvery - 1) * 2 - 1;
+			this.reorderEvery = reorderEvery;
+			this.executor = executor;
+		}
+
+		private boolean sampled() {
+			return samples.incrementAndGet() % reorderEvery == 0;
+		}
+
+		private void reorder(final UriTree<?> tree) {
+			if (!reordering.compareAndSet(false, true)) {
+				return;
+			}
+			try {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							tree.reorderChildren();
+						} finally {
+							reordering.set(false);
+						}
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				reordering.set(false);
+			}
+		}
+
+	}
+
+	/**
+	 * Structural identity of a node whose children are already canonical, so
+	 * that children compare by reference.
+	 */
+	private static final class Shape<V> {
+
+		private final UriTree<V> tree;
+		private final int hash;
+
+		private Shape(final UriTree<V> tree) {
+			this.tree = tree;
+			int h = Objects.hash(tree.key, tree.parameter, tree.data);
+			for (int i = 0; tree.children != null && i < tree.children.slots(); i++) {
+				final String childKey = tree.children.keyAt(i);
+				if (childKey != null) {
+					h += childKey.hashCode() ^ System.identityHashCode(tree.children.nodeAt(i));
+				}
+			}
+			this.hash = h;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Shape)) {
+				return false;
+			}
+			final UriTree<?> other = ((Shape<?>) o).tree;
+			if (!tree.key.equals(other.key)
+					|| !Objects.equals(tree.parameter, other.parameter)
+					|| !Objects.equals(tree.data, other.data)
+					|| tree.getChildCount() != other.getChildCount()) {
+				return false;
+			}
+			for (int i = 0; tree.children != null && i < tree.children.slots(); i++) {
+				final String childKey = tree.children.keyAt(i);
+				if (childKey != null && other.child(childKey) != tree.children.nodeAt(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+	}
+
 }
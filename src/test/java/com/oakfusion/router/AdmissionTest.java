@@ -0,0 +1,65 @@
+package com.oakfusion.router;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdmissionTest {
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	@Test
+	public void should_cap_concurrent_invocations() {
+		// given
+		Admission admission = Admission.concurrency(2);
+
+		// when
+		boolean first = admission.tryAcquire();
+		boolean second = admission.tryAcquire();
+		boolean third = admission.tryAcquire();
+		admission.release();
+		boolean afterRelease = admission.tryAcquire();
+
+		// then
+		assertThat(first).isTrue();
+		assertThat(second).isTrue();
+		assertThat(third).isFalse();
+		assertThat(afterRelease).isTrue();
+		assertThat(admission.getInFlight()).isEqualTo(2);
+		assertThat(admission.getRejected()).isEqualTo(1);
+	}
+
+	@Test
+	public void should_admit_burst_then_refill_at_rate() {
+		// given
+		Admission admission = Admission.rate(10, 3);
+		long now = 1000 * SECOND;
+
+		// then
+		assertThat(admission.tryAcquire(now)).isTrue();
+		assertThat(admission.tryAcquire(now)).isTrue();
+		assertThat(admission.tryAcquire(now)).isTrue();
+		assertThat(admission.tryAcquire(now)).isFalse();
+		assertThat(admission.tryAcquire(now + SECOND / 10)).isTrue();
+		assertThat(admission.tryAcquire(now + SECOND / 10)).isFalse();
+		assertThat(admission.tryAcquire(now + 10 * SECOND)).isTrue();
+	}
+
+	@Test
+	public void should_give_back_concurrency_slot_when_rate_refuses() {
+		// given
+		Admission admission = Admission.concurrency(5).withRate(1, 1);
+		long now = 1000 * SECOND;
+
+		// when
+		admission.tryAcquire(now);
+		admission.tryAcquire(now);
+
+		// then
+		assertThat(admission.getInFlight()).isEqualTo(1);
+		assertThat(admission.getRejected()).isEqualTo(1);
+	}
+
+}
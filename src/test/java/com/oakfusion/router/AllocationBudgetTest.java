@@ -0,0 +1,173 @@
+package com.oakfusion.router;
+
+import com.oakfusion.router.util.FrozenSparseArray;
+import com.oakfusion.router.util.SparseArray;
+import com.oakfusion.router.util.UriTree;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Bytes allocated per operation on the routing hot path, measured with
+ * {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)} after a
+ * warm-up. Each operation declares its budget; a refactoring that starts
+ * allocating where it did not fails here.
+ */
+public class AllocationBudgetTest {
+
+	private static final int WARMUP = 20000;
+	private static final int OPERATIONS = 100000;
+	/** Allowance for the measurement itself, spread over all operations */
+	private static final long SLACK = 4096;
+
+	private static final String[] URIS = {"/users/42/files/readme", "/users", "/users/7", "/static/app.js"};
+	private static final String[][] SEGMENTS = {{"users", "42", "files", "readme"}, {"users", "7"}, {"static", "app.js"}};
+
+	private final Router router = new Router();
+	private final Router pathFirstRouter = new Router().pathFirst();
+	private final Router compiledRouter = new Router().compiledMatching();
+	private final UriTree<String> tree = new UriTree<>("/");
+	private final SparseArray<String> sparseArray = new SparseArray<>();
+
+	private FrozenSparseArray<String> frozenSparseArray;
+
+	private Object sink;
+
+	@Before
+	public void setUp() {
+		for (Router r : new Router[]{router, pathFirstRouter, compiledRouter}) {
+			r.route("/users").whenGET().handleIn(SampleController.class).by("simpleCall")
+					.route("/users/{id}").whenGET().handleIn(SampleController.class).by("simpleCall")
+					.whenPUT().handleIn(SampleController.class).by("simpleCall")
+					.route("/users/{id}/files/{name}").whenGET().handleIn(SampleController.class).by("simpleCall")
+					.route("/static/app.js").whenGET().handleIn(SampleController.class).by("simpleCall");
+		}
+		tree.put("/users/{id}/files/{name}", "file");
+		tree.put("/users/{id}", "user");
+		tree.put("/static/app.js", "script");
+		for (int i = 0; i < 1000; i++) {
+			sparseArray.put(i * 7, "value" + i);
+		}
+		frozenSparseArray = sparseArray.freeze();
+	}
+
+	@Test
+	public void should_not_allocate_in_getRouteFor() {
+		assertThat(bytesPerOperation(new Operation() {
+			@Override
+			void run(int i) {
+				sink = router.getRouteFor("GET", URIS[i & 3]);
+			}
+		})).isEqualTo(0);
+	}
+
+	@Test
+	public void should_not_allocate_in_path_first_getRouteFor() {
+		assertThat(bytesPerOperation(new Operation() {
+			@Override
+			void run(int i) {
+				sink = pathFirstRouter.getRouteFor("GET", URIS[i & 3]);
+			}
+		})).isEqualTo(0);
+	}
+
+	@Test
+	public void should_not_allocate_in_compiled_getRouteFor() {
+		assertThat(bytesPerOperation(new Operation() {
+			@Override
+			void run(int i) {
+				sink = compiledRouter.getRouteFor("GET", URIS[i & 3]);
+			}
+		})).isEqualTo(0);
+	}
+
+	@Test
+	public void should_not_allocate_in_missed_getRouteFor() {
+		assertThat(bytesPerOperation(new Operation() {
+			@Override
+			void run(int i) {
+				sink = router.getRouteFor("DELETE", URIS[i & 3]);
+			}
+		})).isEqualTo(0);
+	}
+
+	@Test
+	public void should_not_allocate_in_dispatch_of_primitive_arguments() {
+		// given
+		router.route("/sizes/{id}/{size}").whenGET().handleIn(SampleController.class).by("primitiveCall");
+		final RouteMatch match = router.match("GET", "/sizes/100000/5000000000");
+
+		// then
+		assertThat(bytesPerOperation(new Operation() {
+			@Override
+			void run(int i) {
+				sink = router.dispatch(match);
+			}
+		})).isEqualTo(0);
+	}
+
+	@Test
+	public void should_not_allocate_in_matchedBySegments() {
+		assertThat(bytesPerOperation(new Operation() {
+			@Override
+			void run(int i) {
+				sink = tree.matchedBySegments(SEGMENTS[i % 3]);
+			}
+		})).isEqualTo(0);
+	}
+
+	@Test
+	public void should_not_allocate_in_sparse_array_get() {
+		assertThat(bytesPerOperation(new Operation() {
+			@Override
+			void run(int i) {
+				sink = sparseArray.get(i % 7000);
+			}
+		})).isEqualTo(0);
+	}
+
+	@Test
+	public void should_not_allocate_in_frozen_sparse_array_get() {
+		assertThat(bytesPerOperation(new Operation() {
+			@Override
+			void run(int i) {
+				sink = frozenSparseArray.get(i % 7000);
+			}
+		})).isEqualTo(0);
+	}
+
+	@Test
+	public void should_keep_match_within_its_budget() {
+		// RouteMatch and its Captures, with room for the capture arrays
+		assertThat(bytesPerOperation(new Operation() {
+			@Override
+			void run(int i) {
+				sink = router.match("GET", URIS[i & 3]);
+			}
+		})).isLessThanOrEqualTo(256);
+	}
+
+	private static long bytesPerOperation(Operation operation) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		for (int i = 0; i < WARMUP; i++) {
+			operation.run(i);
+		}
+		long before = threads.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < OPERATIONS; i++) {
+			operation.run(i);
+		}
+		long allocated = threads.getThreadAllocatedBytes(thread) - before;
+		return Math.max(0, allocated - SLACK) / OPERATIONS;
+	}
+
+	private abstract static class Operation {
+
+		abstract void run(int i);
+
+	}
+
+}
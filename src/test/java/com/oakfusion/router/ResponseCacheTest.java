@@ -0,0 +1,209 @@
+package com.oakfusion.router;
+
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ResponseCacheTest {
+
+	private final Router router = new Router();
+	private final AtomicInteger calls = new AtomicInteger();
+	private final FakeClock clock = new FakeClock();
+
+	@Test
+	public void should_memoize_by_path_parameters() throws Exception {
+		// given
+		ResponseCache cache = cache(ResponseCache.expiringAfter(1, TimeUnit.MINUTES));
+
+		// when
+		Object first = cache.get(match("/users/1"), counting("one"));
+		Object second = cache.get(match("/users/1?other=query"), counting("two"));
+		Object third = cache.get(match("/users/2"), counting("three"));
+
+		// then
+		assertThat(first).isEqualTo("one");
+		assertThat(second).isEqualTo("one");
+		assertThat(third).isEqualTo("three");
+		assertThat(calls.get()).isEqualTo(2);
+		assertThat(cache.getHitRatio()).isEqualTo(1.0 / 3);
+	}
+
+	@Test
+	public void should_expire_entries_after_ttl() throws Exception {
+		// given
+		ResponseCache cache = cache(ResponseCache.expiringAfter(10, TimeUnit.SECONDS));
+		cache.get(match("/users/1"), counting("old"));
+
+		// when
+		clock.now += TimeUnit.SECONDS.toNanos(10);
+		Object result = cache.get(match("/users/1"), counting("new"));
+
+		// then
+		assertThat(result).isEqualTo("new");
+		assertThat(cache.getEvictions()).isEqualTo(1);
+	}
+
+	@Test
+	public void should_purge_expired_entries_when_loading() throws Exception {
+		// given
+		ResponseCache cache = cache(ResponseCache.expiringAfter(10, TimeUnit.SECONDS));
+		cache.get(match("/users/1"), counting("one"));
+		cache.get(match("/users/2"), counting("two"));
+		clock.now += TimeUnit.SECONDS.toNanos(5);
+		cache.get(match("/users/3"), counting("three"));
+
+		// when
+		clock.now += TimeUnit.SECONDS.toNanos(5);
+		cache.get(match("/users/4"), counting("four"));
+
+		// then
+		assertThat(cache.size()).isEqualTo(2);
+		assertThat(cache.getEvictions()).isEqualTo(2);
+		assertThat(cache.get(match("/users/3"), counting("reloaded"))).isEqualTo("three");
+	}
+
+	@Test
+	public void should_evict_oldest_entries_over_maximum_weight() throws Exception {
+		// given
+		ResponseCache cache = cache(ResponseCache.expiringAfter(1, TimeUnit.MINUTES)
+				.withMaximumWeight(5, new ResponseCache.Weigher() {
+					@Override
+					public long weigh(Object result) {
+						return ((String) result).length();
+					}
+				}));
+
+		// when
+		cache.get(match("/users/1"), counting("aa"));
+		cache.get(match("/users/2"), counting("bb"));
+		cache.get(match("/users/3"), counting("cc"));
+
+		// then
+		assertThat(cache.size()).isEqualTo(2);
+		assertThat(cache.getEvictions()).isEqualTo(1);
+		assertThat(cache.get(match("/users/1"), counting("reloaded"))).isEqualTo("reloaded");
+	}
+
+	@Test
+	public void should_collapse_concurrent_misses() throws Exception {
+		// given
+		final ResponseCache cache = cache(ResponseCache.expiringAfter(1, TimeUnit.MINUTES));
+		final CountDownLatch release = new CountDownLatch(1);
+		final Callable<Object> slow = new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				calls.incrementAndGet();
+				release.await();
+				return "slow";
+			}
+		};
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+
+		// when
+		Future<?>[] results = new Future<?>[4];
+		for (int i = 0; i < results.length; i++) {
+			results[i] = executor.submit(new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					return cache.get(match("/users/1"), slow);
+				}
+			});
+		}
+		while (cache.getHits() + cache.getMisses() < results.length) {
+			Thread.sleep(1);
+		}
+		release.countDown();
+
+		// then
+		for (Future<?> result : results) {
+			assertThat(result.get()).isEqualTo("slow");
+		}
+		assertThat(calls.get()).isEqualTo(1);
+		executor.shutdown();
+	}
+
+	@Test
+	public void should_not_cache_failures() throws Exception {
+		// given
+		ResponseCache cache = cache(ResponseCache.expiringAfter(1, TimeUnit.MINUTES));
+		try {
+			cache.get(match("/users/1"), new Callable<Object>() {
+				@Override
+				public Object call() {
+					throw new IllegalStateException("failed");
+				}
+			});
+		} catch (IllegalStateException expected) {
+			// failure goes to the caller
+		}
+
+		// when
+		Object result = cache.get(match("/users/1"), counting("ok"));
+
+		// then
+		assertThat(result).isEqualTo("ok");
+	}
+
+	@Test
+	public void should_dispatch_through_route_cache() {
+		// given
+		router.route("/cached/{id}").whenGET().handleIn(SampleController.class)
+				.cached(ResponseCache.expiringAfter(1, TimeUnit.MINUTES)).by("simpleCall");
+
+		// when
+		Object first = router.dispatch(router.match("GET", "/cached/1"));
+		Object second = router.dispatch(router.match("GET", "/cached/1"));
+
+		// then
+		assertThat(second).isSameAs(first);
+		assertThat(router.getRouteFor("GET", "/cached/1").getResponseCache().getHits()).isEqualTo(1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void should_not_cache_non_idempotent_route() {
+		// when
+		router.route("/cached").whenPOST().handleIn(SampleController.class)
+				.cached(ResponseCache.expiringAfter(1, TimeUnit.MINUTES)).by("simpleCall");
+	}
+
+	private ResponseCache cache(ResponseCache configuration) {
+		ResponseCache cache = configuration.copy();
+		cache.clock = clock;
+		if (router.getRoutes().isEmpty()) {
+			router.route("/users/{id}").whenGET().handleIn(SampleController.class).by("simpleCall");
+		}
+		return cache;
+	}
+
+	private RouteMatch match(String uri) {
+		return router.match("GET", uri);
+	}
+
+	private Callable<Object> counting(final String result) {
+		return new Callable<Object>() {
+			@Override
+			public Object call() {
+				calls.incrementAndGet();
+				return result;
+			}
+		};
+	}
+
+	private static class FakeClock extends ResponseCache.Clock {
+		private long now;
+
+		@Override
+		long nanoTime() {
+			return now;
+		}
+	}
+
+}
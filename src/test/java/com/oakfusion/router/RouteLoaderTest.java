@@ -0,0 +1,119 @@
+package com.oakfusion.router;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Enumeration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RouteLoaderTest {
+
+	private static final String CONTROLLER = SampleController.class.getName();
+
+	private final Router router = new Router();
+	private final RouteLoader loader = new RouteLoader(router);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void should_load_routes_from_file() throws IOException {
+		// given
+		Path file = folder.newFile("routes.txt").toPath();
+		Files.write(file, ("# users\n"
+				+ "GET /users " + CONTROLLER + " simpleCall\n"
+				+ "\n"
+				+ "  PUT\t/users/{id}   " + CONTROLLER + "  intCall  \n").getBytes(StandardCharsets.UTF_8));
+
+		// when
+		RouteLoader.Report report = loader.load(file);
+
+		// then
+		assertThat(report.getLoaded()).isEqualTo(2);
+		assertThat(report.getRejected()).isEqualTo(0);
+		assertThat(router.getRouteFor("GET", "/users").getControllerMethod().getName()).isEqualTo("simpleCall");
+		assertThat(router.dispatch(router.match("PUT", "/users/5"))).isEqualTo(5);
+		assertThat(router.urlFor(SampleController.class, "intCall").expand(7)).isEqualTo("/users/7");
+	}
+
+	@Test
+	public void should_report_malformed_lines_and_keep_loading() throws IOException {
+		// given
+		String routes = "GET /a " + CONTROLLER + "\n"
+				+ "GET a " + CONTROLLER + " simpleCall\n"
+				+ "GET /b com.example.Missing simpleCall\n"
+				+ "GET /c " + CONTROLLER + " missing\n"
+				+ "GET /d " + CONTROLLER + " untypedCall\n"
+				+ "GET /e " + CONTROLLER + " simpleCall extra\n"
+				+ "GET /f " + CONTROLLER + " simpleCall\n";
+
+		// when
+		RouteLoader.Report report = loader.load(stream(routes));
+
+		// then
+		assertThat(report.getLoaded()).isEqualTo(1);
+		assertThat(report.getRejected()).isEqualTo(6);
+		assertThat(report.getProblems()).extracting("lineNumber").containsExactly(1L, 2L, 3L, 4L, 5L, 6L);
+		assertThat(report.getProblems().get(2).getMessage()).contains("com.example.Missing");
+		assertThat(router.getRoutes()).extracting("uri").containsExactly("/f");
+	}
+
+	@Test
+	public void should_load_custom_methods_only_when_allowed() throws IOException {
+		// given
+		String routes = "PURGE /a " + CONTROLLER + " simpleCall\n"
+				+ "GE(T /b " + CONTROLLER + " simpleCall\n"
+				+ "REPORT /c " + CONTROLLER + " simpleCall\n";
+		loader.allowMethod("REPORT");
+
+		// when
+		RouteLoader.Report report = loader.load(stream(routes));
+
+		// then
+		assertThat(report.getLoaded()).isEqualTo(1);
+		assertThat(report.getProblems()).extracting("message")
+				.containsExactly("unknown HTTP method PURGE", "not an HTTP method token: GE(T");
+		assertThat(router.getRoutes()).extracting("uri").containsExactly("/c");
+		assertThat(HttpMethods.idOf("PURGE")).isEqualTo(-1);
+	}
+
+	@Test
+	public void should_stream_many_routes() throws IOException {
+		// given
+		final int count = 20000;
+		InputStream routes = new SequenceInputStream(new Enumeration<InputStream>() {
+			private int i;
+
+			@Override
+			public boolean hasMoreElements() {
+				return i < count;
+			}
+
+			@Override
+			public InputStream nextElement() {
+				return stream("GET /resource" + i++ + "/{id} " + CONTROLLER + " intCall\n");
+			}
+		});
+
+		// when
+		RouteLoader.Report report = loader.load(routes);
+
+		// then
+		assertThat(report.getLoaded()).isEqualTo(count);
+		assertThat(router.dispatch(router.match("GET", "/resource19999/3"))).isEqualTo(3);
+	}
+
+	private static InputStream stream(String content) {
+		return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+	}
+
+}
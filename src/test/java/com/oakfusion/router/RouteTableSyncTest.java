@@ -0,0 +1,229 @@
+package com.oakfusion.router;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RouteTableSyncTest {
+
+	private final Router source = new Router();
+	private final Publisher publisher = new Publisher(source);
+
+	@Rule
+	public ExpectedException thrown = ExpectedException.none();
+
+	@Test
+	public void should_converge_subscribers_with_deltas() {
+		// given
+		Subscriber methodFirst = publisher.subscribe(new Router());
+		Subscriber pathFirst = publisher.subscribe(new Router().pathFirst());
+		source.route("/users").whenGET().handleIn(SampleController.class).by("simpleCall")
+				.route("/users/{id}").whenGET().handleIn(SampleController.class).by("intCall")
+				.whenPUT().handleIn(SampleController.class).by("intCall");
+		publisher.publish();
+
+		// when
+		source.route("/users/{id}").whenGET().handleIn(SampleController.class).by("simpleCall")
+				.route("/files/{name}").whenGET().handleIn(SampleController.class).by("simpleCall");
+		publisher.publish();
+
+		// then
+		for (Subscriber subscriber : new Subscriber[]{methodFirst, pathFirst}) {
+			assertThat(subscriber.snapshots).isEqualTo(0);
+			assertThat(subscriber.router.getChecksum()).isEqualTo(source.getChecksum());
+			assertThat(subscriber.router.getRouteFor("GET", "/users/7").getControllerMethod().getName())
+					.isEqualTo("simpleCall");
+			assertThat(subscriber.router.dispatch(subscriber.router.match("PUT", "/users/7"))).isEqualTo(7);
+			assertThat(subscriber.router.urlFor(SampleController.class, "intCall")
+					.getPattern()).isEqualTo("/users/{id}");
+		}
+	}
+
+	@Test
+	public void should_remove_routes_with_delta() {
+		// given
+		Subscriber subscriber = publisher.subscribe(new Router().pathFirst());
+		Router next = new Router();
+		source.route("/users/{id}").whenGET().handleIn(SampleController.class).by("intCall")
+				.whenPUT().handleIn(SampleController.class).by("intCall")
+				.route("/static/app.js").whenGET().handleIn(SampleController.class).by("simpleCall");
+		next.route("/users/{id}").whenGET().handleIn(SampleController.class).by("intCall");
+		publisher.publish();
+
+		// when
+		subscriber.receive(next.exportDelta(source));
+
+		// then
+		assertThat(subscriber.router.getChecksum()).isEqualTo(next.getChecksum());
+		assertThat(subscriber.router.getRouteFor("GET", "/static/app.js")).isSameAs(Router.R_404);
+		assertThat(subscriber.router.match("PUT", "/users/1").getStatus()).isEqualTo(405);
+	}
+
+	@Test
+	public void should_fall_back_to_snapshot_after_missed_delta() {
+		// given
+		Subscriber subscriber = publisher.subscribe(new Router());
+		source.route("/users").whenGET().handleIn(SampleController.class).by("simpleCall");
+		publisher.publish();
+		subscriber.offline = true;
+		source.route("/users/{id}").whenGET().handleIn(SampleController.class).by("intCall");
+		publisher.publish();
+		subscriber.offline = false;
+
+		// when
+		source.route("/files/{name}").whenGET().handleIn(SampleController.class).by("simpleCall");
+		publisher.publish();
+
+		// then
+		assertThat(subscriber.snapshots).isEqualTo(1);
+		assertThat(subscriber.router.getChecksum()).isEqualTo(source.getChecksum());
+		assertThat(subscriber.router.getRoutes()).hasSize(3);
+	}
+
+	@Test
+	public void should_keep_routes_when_delta_does_not_apply() {
+		// given
+		Router router = new Router();
+		router.route("/users").whenGET().handleIn(SampleController.class).by("simpleCall");
+		int checksum = router.getChecksum();
+		Router target = new Router();
+		target.route("/files").whenGET().handleIn(SampleController.class).by("simpleCall");
+		thrown.expect(IllegalStateException.class);
+
+		// when
+		try {
+			router.apply(target.exportDelta(new Router()));
+		} finally {
+			// then
+			assertThat(router.getChecksum()).isEqualTo(checksum);
+		}
+	}
+
+	@Test
+	public void should_keep_routes_when_update_does_not_lead_to_its_checksum() {
+		// given
+		Router router = new Router();
+		router.route("/users").whenGET().handleIn(SampleController.class).by("simpleCall");
+		int checksum = router.getChecksum();
+		source.route("/files").whenGET().handleIn(SampleController.class).by("simpleCall");
+		byte[] snapshot = source.exportSnapshot();
+		snapshot[6] ^= 1;
+		thrown.expect(IllegalStateException.class);
+
+		// when
+		try {
+			router.apply(snapshot);
+		} finally {
+			// then
+			assertThat(router.getChecksum()).isEqualTo(checksum);
+			assertThat(router.getRouteFor("GET", "/files")).isSameAs(Router.R_404);
+		}
+	}
+
+	@Test
+	public void should_encode_repeated_names_once() {
+		// given
+		for (int i = 0; i < 100; i++) {
+			source.route("/resource" + i).whenGET().handleIn(SampleController.class).by("simpleCall");
+		}
+
+		// when
+		byte[] snapshot = source.exportSnapshot();
+
+		// then
+		assertThat(snapshot.length).isLessThan(100 * 20);
+		assertThat(new Router().apply(snapshot).getChecksum()).isEqualTo(source.getChecksum());
+	}
+
+	@Test
+	public void should_reject_unknown_format_version() {
+		// given
+		byte[] snapshot = source.exportSnapshot();
+		snapshot[0] = (byte) (RouteTableCodec.FORMAT_VERSION + 1);
+		thrown.expect(IllegalArgumentException.class);
+		thrown.expectMessage("Malformed route table update");
+
+		// when
+		new Router().apply(snapshot);
+	}
+
+	@Test
+	public void should_reject_unknown_operation_as_malformed() {
+		// given
+		source.route("/users").whenGET().handleIn(SampleController.class).by("simpleCall");
+		byte[] snapshot = source.exportSnapshot();
+		snapshot[11] = 9;
+		thrown.expect(IllegalArgumentException.class);
+		thrown.expectMessage("Malformed route table update");
+
+		// when
+		new Router().apply(snapshot);
+	}
+
+	/**
+	 * Stand-in for the node publishing route changes to the fleet.
+	 */
+	private static final class Publisher {
+
+		private final Router source;
+		private final Router published = new Router();
+		private final List<Subscriber> subscribers = new ArrayList<>();
+
+		Publisher(Router source) {
+			this.source = source;
+		}
+
+		Subscriber subscribe(Router router) {
+			Subscriber subscriber = new Subscriber(router, this);
+			subscribers.add(subscriber);
+			return subscriber;
+		}
+
+		void publish() {
+			byte[] delta = source.exportDelta(published);
+			published.apply(delta);
+			for (Subscriber subscriber : subscribers) {
+				if (!subscriber.offline) {
+					subscriber.receive(delta);
+				}
+			}
+		}
+
+		byte[] snapshot() {
+			return published.exportSnapshot();
+		}
+
+	}
+
+	/**
+	 * Stand-in for a router node, asking for a snapshot when it fell behind.
+	 */
+	private static final class Subscriber {
+
+		private final Router router;
+		private final Publisher publisher;
+		private boolean offline;
+		private int snapshots;
+
+		Subscriber(Router router, Publisher publisher) {
+			this.router = router;
+			this.publisher = publisher;
+		}
+
+		void receive(byte[] delta) {
+			try {
+				router.apply(delta);
+			} catch (IllegalStateException e) {
+				snapshots++;
+				router.apply(publisher.snapshot());
+			}
+		}
+
+	}
+
+}
@@ -1,9 +1,18 @@
 package com.oakfusion.router;
 
+import com.oakfusion.router.util.UriNormalization;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class RouterTest {
@@ -132,4 +141,733 @@ public class RouterTest {
 		router.whenGET();
 	}
 
+	@Test
+	public void should_find_route_by_parameterized_uri() {
+		// given
+		router.route("/users/{id}").whenGET().handleIn(SampleController.class).by(METHOD_NAME);
+
+		// when
+		Route route = router.getRouteFor("GET", "/users/42?expand=true");
+
+		// then
+		assertThat(route.getUri()).isEqualTo("/users/{id}");
+	}
+
+	@Test
+	public void should_return_404_for_unknown_route() {
+		// given
+		router.route(URI_TO_RESOURCE).whenGET().handleIn(SampleController.class).by(METHOD_NAME);
+
+		// then
+		assertThat(router.getRouteFor("GET", "/uri/to")).isSameAs(Router.R_404);
+		assertThat(router.getRouteFor("PUT", URI_TO_RESOURCE)).isSameAs(Router.R_404);
+	}
+
+	@Test
+	public void should_decode_path_parameter_only_when_asked_for() {
+		// given
+		Router decodingRouter = new Router(UriNormalization.DEFAULT.withPercentDecoding(true));
+		decodingRouter.route("/files/{name}").whenGET().handleIn(SampleController.class).by(METHOD_NAME);
+
+		// when
+		RouteMatch match = decodingRouter.match("GET", "/files/a%2Fb%20c");
+
+		// then
+		assertThat(match.isFound()).isTrue();
+		assertThat(match.getParameterCount()).isEqualTo(1);
+		assertThat(match.getParameter("name")).isEqualTo("a/b c");
+		assertThat(match.getParameter("missing")).isNull();
+	}
+
+	@Test
+	public void should_bind_segment_spelling_out_parameter_key() {
+		// given
+		router.route("/numbers/{value}").whenGET().handleIn(SampleController.class).by("stringCall");
+
+		// when
+		RouteMatch match = router.match("GET", "/numbers/{value}");
+
+		// then
+		assertThat(match.getStatus()).isEqualTo(200);
+		assertThat(match.getParameterCount()).isEqualTo(1);
+		assertThat(router.dispatch(match)).isEqualTo("{value}");
+	}
+
+	@Test
+	public void should_expose_path_and_query_parameters_of_match() {
+		// given
+		router.route("/users/{id}/orders/{orderId}").whenGET().handleIn(SampleController.class).by(METHOD_NAME);
+
+		// when
+		RouteMatch match = router.match("GET", "/users/42/orders/9000000000?page=3");
+
+		// then
+		assertThat(match.getInt("id")).isEqualTo(42);
+		assertThat(match.getLong("orderId")).isEqualTo(9000000000L);
+		assertThat(match.getQuery().getInt("page", 1)).isEqualTo(3);
+	}
+
+	@Test
+	public void should_route_by_exact_wildcard_and_default_host() {
+		// given
+		Router exact = new Router();
+		exact.route("/exact").whenGET().handleIn(SampleController.class).by(METHOD_NAME);
+		Router wildcard = new Router();
+		wildcard.route("/wildcard").whenGET().handleIn(SampleController.class).by(METHOD_NAME);
+		router.route("/default").whenGET().handleIn(SampleController.class).by(METHOD_NAME);
+		router.host("api.example.com", exact).host("*.tenants.example.com", wildcard);
+
+		// then
+		assertThat(router.getRouteFor("API.example.com:8080", "GET", "/exact").getUri()).isEqualTo("/exact");
+		assertThat(router.getRouteFor("acme.tenants.example.com", "GET", "/wildcard").getUri()).isEqualTo("/wildcard");
+		assertThat(router.getRouteFor("a.b.tenants.example.com", "GET", "/default").getUri()).isEqualTo("/default");
+		assertThat(router.getRouteFor("other.com", "GET", "/default").getUri()).isEqualTo("/default");
+		assertThat(router.getRouteFor("other.com", "GET", "/exact")).isSameAs(Router.R_404);
+	}
+
+	@Test
+	public void should_share_router_between_tenants_with_same_routes() {
+		// given
+		Router first = new Router();
+		first.route(URI_TO_RESOURCE).whenGET().handleIn(SampleController.class).by(METHOD_NAME);
+		Router second = new Router();
+		second.route(URI_TO_RESOURCE).whenGET().handleIn(SampleController.class).by(METHOD_NAME);
+
+		// when
+		router.host("first.com", first).host("second.com", second);
+
+		// then
+		assertThat(router.forHost("second.com")).isSameAs(first);
+		assertThat(first.getRoutes().get(0)).isNotEqualTo(second.getRoutes().get(0));
+	}
+
+	@Test
+	public void should_not_share_router_between_tenants_differing_in_mounts_or_admission() {
+		// given
+		Router users = new Router();
+		users.route("/x").whenGET().handleIn(SampleController.class).by(METHOD_NAME);
+		Router orders = new Router();
+		orders.route("/x").whenGET().handleIn(SampleController.class).by(METHOD_NAME);
+		Router first = new Router().mount("/a", users);
+		Router second = new Router().mount("/b", orders);
+		Router limited = new Router();
+		limited.route(URI_TO_RESOURCE).whenGET().handleIn(SampleController.class)
+				.withAdmission(Admission.concurrency(1)).by(METHOD_NAME);
+		Router unlimited = new Router();
+		unlimited.route(URI_TO_RESOURCE).whenGET().handleIn(SampleController.class).by(METHOD_NAME);
+
+		// when
+		router.host("a.com", first).host("b.com", second).host("limited.com", limited).host("unlimited.com", unlimited);
+
+		// then
+		assertThat(router.match("b.com", "GET", "/b/x").getStatus()).isEqualTo(200);
+		assertThat(router.forHost("b.com")).isSameAs(second);
+		assertThat(router.forHost("unlimited.com")).isSameAs(unlimited);
+	}
+
+	@Test
+	public void should_serve_routes_added_to_tenant_after_host() {
+		// given
+		Router tenant = new Router();
+		router.host("tenant.com", tenant);
+
+		// when
+		tenant.route(URI_TO_RESOURCE).whenGET().handleIn(SampleController.class).by(METHOD_NAME);
+
+		// then
+		assertThat(router.getRouteFor("tenant.com", "GET", URI_TO_RESOURCE).getUri()).isEqualTo(URI_TO_RESOURCE);
+	}
+
+	@Test
+	public void should_refuse_changes_to_shared_tenant() {
+		// given
+		Router first = new Router();
+		first.route(URI_TO_RESOURCE).whenGET().handleIn(SampleController.class).by(METHOD_NAME);
+		Router second = new Router();
+		second.route(URI_TO_RESOURCE).whenGET().handleIn(SampleController.class).by(METHOD_NAME);
+		router.host("first.com", first).host("second.com", second);
+
+		// then
+		thrown.expect(IllegalStateException.class);
+
+		// when
+		second.route("/other").whenGET().handleIn(SampleController.class).by(METHOD_NAME);
+	}
+
+	@Test
+	public void should_build_url_for_handler_and_route_name() {
+		// given
+		router.route("/users/{id}/files/{name}").named("userFile")
+				.whenGET().handleIn(SampleController.class).by(METHOD_NAME);
+
+		// when
+		StringBuilder byHandler = router.urlFor(SampleController.class, METHOD_NAME)
+				.appendTo(new StringBuilder(), 42L, "my file.txt");
+		String byName = router.urlFor("userFile").expand(7, "a/b");
+
+		// then
+		assertThat(byHandler.toString()).isEqualTo("/users/42/files/my%20file.txt");
+		assertThat(byName).isEqualTo("/users/7/files/a%2Fb");
+	}
+
+	@Test
+	public void should_write_url_to_byte_buffer() {
+		// given
+		router.route("/users/{id}").whenGET().handleIn(SampleController.class).by(METHOD_NAME);
+		ByteBuffer buffer = ByteBuffer.allocate(64);
+
+		// when
+		router.urlFor(SampleController.class, METHOD_NAME).writeTo(buffer, "żółw");
+
+		// then
+		buffer.flip();
+		assertThat(StandardCharsets.US_ASCII.decode(buffer).toString()).isEqualTo("/users/%C5%BC%C3%B3%C5%82w");
+	}
+
+	@Test
+	public void should_throw_for_url_of_unknown_route() {
+		// given
+		thrown.expect(IllegalArgumentException.class);
+		thrown.expectMessage("unknown");
+
+		// when
+		router.urlFor("unknown");
+	}
+
+	@Test
+	public void should_tell_404_from_405_in_single_walk_of_path_first_layout() {
+		// given
+		router.pathFirst()
+				.route("/users/{id}")
+				.whenGET().handleIn(SampleController.class).by(METHOD_NAME)
+				.whenDELETE().handleIn(SampleController.class).by(METHOD_NAME);
+
+		// when
+		RouteMatch found = router.match("GET", "/users/42");
+		RouteMatch notAllowed = router.match("PATCH", "/users/42");
+		RouteMatch notFound = router.match("GET", "/users");
+
+		// then
+		assertThat(found.getStatus()).isEqualTo(200);
+		assertThat(found.getParameter("id")).isEqualTo("42");
+		assertThat(notAllowed.getStatus()).isEqualTo(405);
+		assertThat(notAllowed.getAllowedMethods()).containsExactly("GET", "DELETE");
+		assertThat(notAllowed.isAllowed("DELETE")).isTrue();
+		assertThat(notFound.getStatus()).isEqualTo(404);
+		assertThat(router.getRouteFor("DELETE", "/users/42").getHttpMethod()).isEqualTo("DELETE");
+	}
+
+	@Test
+	public void should_tell_405_by_probing_methods_in_default_layout() {
+		// given
+		router.route(URI_TO_RESOURCE)
+				.whenGET().handleIn(SampleController.class).by(METHOD_NAME)
+				.when(CUSTOM_HTTP_METHOD).handleIn(SampleController.class).by(METHOD_NAME);
+
+		// when
+		RouteMatch notAllowed = router.match("POST", URI_TO_RESOURCE);
+
+		// then
+		assertThat(router.isPathFirst()).isFalse();
+		assertThat(notAllowed.getStatus()).isEqualTo(405);
+		assertThat(notAllowed.getAllowedMethods()).containsOnly("GET", CUSTOM_HTTP_METHOD);
+	}
+
+	@Test
+	public void should_match_alike_with_compiled_matching_in_both_layouts() {
+		String[][] requests = {{"GET", "/users/42"}, {"DELETE", "/users/new"}, {"GET", "/users/new"},
+				{"GET", "/users/7/files/a.txt"}, {"PUT", "/users/7"}, {"GET", "//users//7/"}, {"GET", "/items"},
+				{"POST", "/users"}, {"GET", "/"}, {"GET", "/users/7/files"}};
+		for (boolean pathFirst : new boolean[]{false, true}) {
+			// given
+			Router walking = pathFirst ? new Router().pathFirst() : new Router();
+			Router compiled = (pathFirst ? new Router().pathFirst() : new Router()).compiledMatching();
+			for (Router layout : new Router[]{walking, compiled}) {
+				layout.route("/users/{id}").whenGET().handleIn(SampleController.class).by(METHOD_NAME)
+						.whenDELETE().handleIn(SampleController.class).by(METHOD_NAME)
+						.route("/users/new").whenGET().handleIn(SampleController.class).by(METHOD_NAME)
+						.route("/users/{id}/files/{name}").whenGET().handleIn(SampleController.class).by(METHOD_NAME)
+						.route("/users").whenGET().handleIn(SampleController.class).by(METHOD_NAME);
+			}
+
+			for (String[] request : requests) {
+				// when
+				RouteMatch expected = walking.match(request[0], request[1]);
+				RouteMatch match = compiled.match(request[0], request[1]);
+
+				// then
+				String description = (pathFirst ? "path first " : "") + request[0] + " " + request[1];
+				assertThat(match.getStatus()).as(description).isEqualTo(expected.getStatus());
+				assertThat(match.getRoute().getUri()).as(description).isEqualTo(expected.getRoute().getUri());
+				assertThat(match.getAllowedMethods()).as(description).isEqualTo(expected.getAllowedMethods());
+				assertThat(match.getParameterCount()).as(description).isEqualTo(expected.getParameterCount());
+				assertThat(match.getParameter("id")).as(description).isEqualTo(expected.getParameter("id"));
+				assertThat(match.getDepth()).as(description).isEqualTo(expected.getDepth());
+			}
+			assertThat(compiled.isCompiledMatching()).isTrue();
+			assertThat(walking.isCompiledMatching()).isFalse();
+		}
+	}
+
+	@Test
+	public void should_match_routes_added_after_compiled_matching_started() {
+		// given
+		router.compiledMatching()
+				.route("/users/{id}").whenGET().handleIn(SampleController.class).by(METHOD_NAME);
+		RouteMatch before = router.match("GET", "/users/new");
+
+		// when
+		router.route("/users/new").whenGET().handleIn(SampleController.class).by(METHOD_NAME);
+		RouteMatch after = router.match("GET", "/users/new");
+
+		// then
+		assertThat(before.getRoute().getUri()).isEqualTo("/users/{id}");
+		assertThat(after.getRoute().getUri()).isEqualTo("/users/new");
+		assertThat(router.getRouteFor("GET", "/users/7").getUri()).isEqualTo("/users/{id}");
+	}
+
+	@Test
+	public void should_match_routes_naming_parameters_differently_alike_in_both_layouts() {
+		for (Router layout : new Router[]{new Router(), new Router().pathFirst()}) {
+			// given
+			layout.route("/users/{id}").whenGET().handleIn(SampleController.class).by(METHOD_NAME)
+					.route("/users/{userId}").whenDELETE().handleIn(SampleController.class).by(METHOD_NAME)
+					.route("/items/new").whenGET().handleIn(SampleController.class).by(METHOD_NAME)
+					.route("/items/{id}").whenDELETE().handleIn(SampleController.class).by(METHOD_NAME);
+
+			// when
+			RouteMatch get = layout.match("GET", "/users/42");
+			RouteMatch delete = layout.match("DELETE", "/users/42");
+			RouteMatch deleteNew = layout.match("DELETE", "/items/new");
+			RouteMatch putNew = layout.match("PUT", "/items/new");
+
+			// then
+			assertThat(get.getStatus()).isEqualTo(200);
+			assertThat(get.getParameter("id")).isEqualTo("42");
+			assertThat(get.getParameter("userId")).isNull();
+			assertThat(delete.getStatus()).isEqualTo(200);
+			assertThat(delete.getParameter("userId")).isEqualTo("42");
+			assertThat(deleteNew.getStatus()).isEqualTo(200);
+			assertThat(deleteNew.getParameter("id")).isEqualTo("new");
+			assertThat(layout.getRouteFor("DELETE", "/items/new").getUri()).isEqualTo("/items/{id}");
+			assertThat(putNew.getStatus()).isEqualTo(405);
+			assertThat(putNew.getAllowedMethods()).containsOnly("GET", "DELETE");
+		}
+	}
+
+	@Test
+	public void should_not_switch_layout_after_registering_routes() {
+		// given
+		router.route(URI_TO_RESOURCE).whenGET().handleIn(SampleController.class).by(METHOD_NAME);
+		thrown.expect(IllegalStateException.class);
+
+		// when
+		router.pathFirst();
+	}
+
+	@Test
+	public void should_dispatch_to_handler() {
+		// given
+		router.route(URI_TO_RESOURCE).whenGET().handleIn(SampleController.class).by(METHOD_NAME);
+
+		// when
+		Object result = router.dispatch(router.match("GET", URI_TO_RESOURCE));
+
+		// then
+		assertThat(result).isInstanceOf(SampleController.Pojo.class);
+	}
+
+	@Test
+	public void should_reject_dispatch_over_admission_limits() {
+		// given
+		Object tooBusy = "429";
+		router.rejectWith(tooBusy)
+				.route(URI_TO_RESOURCE).whenGET().handleIn(SampleController.class)
+				.withAdmission(Admission.rate(0.001, 1)).by(METHOD_NAME)
+				.whenPUT().handleIn(SampleController.class).by(METHOD_NAME);
+
+		// when
+		Object first = router.dispatch(router.match("GET", URI_TO_RESOURCE));
+		Object second = router.dispatch(router.match("GET", URI_TO_RESOURCE));
+		Object unlimited = router.dispatch(router.match("PUT", URI_TO_RESOURCE));
+
+		// then
+		assertThat(first).isInstanceOf(SampleController.Pojo.class);
+		assertThat(second).isSameAs(tooBusy);
+		assertThat(unlimited).isInstanceOf(SampleController.Pojo.class);
+		assertThat(router.getRouteFor("GET", URI_TO_RESOURCE).getAdmission().getRejected()).isEqualTo(1);
+		assertThat(router.getRouteFor("PUT", URI_TO_RESOURCE).getAdmission()).isNull();
+	}
+
+	@Test
+	public void should_release_admission_when_handler_fails() {
+		// given
+		router.route("/values/{value}").whenGET().handleIn(SampleController.class)
+				.withAdmission(Admission.concurrency(1)).by("intCall");
+		Admission admission = router.getRouteFor("GET", "/values/1").getAdmission();
+		try {
+			router.dispatch(router.match("GET", "/values/x1"));
+		} catch (NumberFormatException expected) {
+			// the handler argument could not be parsed
+		}
+
+		// when
+		Object result = router.dispatch(router.match("GET", "/values/7"));
+
+		// then
+		assertThat(result).isEqualTo(7);
+		assertThat(admission.getInFlight()).isEqualTo(0);
+		assertThat(admission.getRejected()).isEqualTo(0);
+	}
+
+	@Test
+	public void should_dispatch_every_route_through_the_same_invoker_class() {
+		// given
+		router.intercept("/cached", recording("outer", new ArrayList<String>()))
+				.route(URI_TO_RESOURCE).whenGET().handleIn(SampleController.class).by(METHOD_NAME)
+				.route("/limited").whenGET().handleIn(SampleController.class)
+				.withAdmission(Admission.concurrency(1)).by(METHOD_NAME)
+				.route("/cached").whenGET().handleIn(SampleController.class)
+				.cached(ResponseCache.expiringAfter(1, TimeUnit.MINUTES)).by(METHOD_NAME);
+
+		// when
+		Invoker plain = router.getRouteFor("GET", URI_TO_RESOURCE).getInvoker();
+		Invoker limited = router.getRouteFor("GET", "/limited").getInvoker();
+		Invoker cached = router.getRouteFor("GET", "/cached").getInvoker();
+
+		// then
+		assertThat(limited.getClass()).isEqualTo(plain.getClass());
+		assertThat(cached.getClass()).isEqualTo(plain.getClass());
+	}
+
+	@Test
+	public void should_run_interceptors_in_registration_order() {
+		// given
+		final List<String> calls = new ArrayList<>();
+		router.route(URI_TO_RESOURCE).whenGET().handleIn(SampleController.class).by(METHOD_NAME);
+		router.intercept(recording("outer", calls)).intercept("/uri", recording("inner", calls));
+
+		// when
+		Object result = router.dispatch(router.match("GET", URI_TO_RESOURCE));
+
+		// then
+		assertThat(result).isInstanceOf(SampleController.Pojo.class);
+		assertThat(calls).containsExactly("outer", "inner");
+	}
+
+	@Test
+	public void should_scope_interceptors_to_prefix_segments() {
+		// given
+		final List<String> calls = new ArrayList<>();
+		router.intercept("/uri/to", recording("scoped", calls))
+				.route(URI_TO_RESOURCE).whenGET().handleIn(SampleController.class).by(METHOD_NAME)
+				.route("/uri/tomato").whenGET().handleIn(SampleController.class).by(METHOD_NAME);
+
+		// when
+		router.dispatch(router.match("GET", "/uri/tomato"));
+		router.dispatch(router.match("GET", URI_TO_RESOURCE));
+
+		// then
+		assertThat(calls).containsExactly("scoped");
+	}
+
+	@Test
+	public void should_short_circuit_dispatch_in_interceptor() {
+		// given
+		router.route(URI_TO_RESOURCE).whenGET().handleIn(SampleController.class).by(METHOD_NAME);
+		router.intercept(new Interceptor() {
+			@Override
+			public Object intercept(RouteMatch match, Invoker next) {
+				return "401";
+			}
+		});
+
+		// when
+		Object result = router.dispatch(router.match("GET", URI_TO_RESOURCE));
+
+		// then
+		assertThat(result).isEqualTo("401");
+	}
+
+	@Test
+	public void should_bind_path_parameters_to_typed_arguments() {
+		// given
+		router.route("/users/{id}/{kind}/{file}/{name}").whenGET()
+				.handleIn(SampleController.class).by("typedCall");
+
+		// when
+		Object result = router.dispatch(router.match("GET",
+				"/users/42/IMAGE/123e4567-e89b-12d3-a456-426614174000/avatar.png"));
+
+		// then
+		assertThat(result).isEqualTo("42 IMAGE 123e4567-e89b-12d3-a456-426614174000 avatar.png 4");
+	}
+
+	@Test
+	public void should_reject_malformed_typed_parameter_per_request() {
+		// given
+		router.route("/values/{value}").whenGET().handleIn(SampleController.class).by("intCall");
+		thrown.expect(NumberFormatException.class);
+
+		// when
+		router.dispatch(router.match("GET", "/values/x1"));
+	}
+
+	@Test
+	public void should_fail_registration_of_unbindable_argument() {
+		// given
+		thrown.expect(IllegalArgumentException.class);
+
+		// when
+		router.route("/values/{value}").whenGET().handleIn(SampleController.class).by("untypedCall");
+	}
+
+	@Test
+	public void should_fail_registration_of_more_arguments_than_parameters() {
+		// given
+		thrown.expect(IllegalArgumentException.class);
+
+		// when
+		router.route("/values").whenGET().handleIn(SampleController.class).by("intCall");
+	}
+
+	@Test
+	public void should_delegate_lookup_to_mounted_router() {
+		// given
+		Router users = new Router();
+		users.route("/{id}").whenGET().handleIn(SampleController.class).by("intCall");
+		router.mount("/api/users", users);
+
+		// when
+		RouteMatch match = router.match("GET", "/api/users/42?verbose");
+
+		// then
+		assertThat(match.getRoute()).isSameAs(users.getRouteFor("GET", "/42"));
+		assertThat(match.getParameter("id")).isEqualTo("42");
+		assertThat(router.dispatch(match)).isEqualTo(42);
+		assertThat(router.getRouteFor("GET", "/api/usersx/42")).isSameAs(Router.R_404);
+		assertThat(router.match("PUT", "/api/users/42").getStatus()).isEqualTo(405);
+	}
+
+	@Test
+	public void should_prefer_own_routes_and_longest_mount_prefix() {
+		// given
+		Router api = new Router();
+		api.route("/users/{id}").whenGET().handleIn(SampleController.class).by(METHOD_NAME);
+		Router users = new Router();
+		users.route("/{id}").whenGET().handleIn(SampleController.class).by(METHOD_NAME);
+		router.route("/api/users/me").whenGET().handleIn(SampleController.class).by(METHOD_NAME)
+				.mount("/api", api)
+				.mount("/api/users", users);
+
+		// then
+		assertThat(router.getRouteFor("GET", "/api/users/me").getUri()).isEqualTo("/api/users/me");
+		assertThat(router.getRouteFor("GET", "/api/users/7")).isSameAs(users.getRouteFor("GET", "/7"));
+	}
+
+	@Test
+	public void should_flatten_mounted_routers() {
+		// given
+		Router files = new Router();
+		files.route("/{name}").whenGET().handleIn(SampleController.class).by(METHOD_NAME);
+		Router users = new Router();
+		users.route("/{id}").whenGET().handleIn(SampleController.class).by("intCall")
+				.mount("/files", files);
+		router.mount("/users", users);
+
+		// when
+		router.flatten();
+
+		// then
+		assertThat(router.getRoutes()).extracting("uri").containsExactly("/users/{id}", "/users/files/{name}");
+		RouteMatch match = router.match("GET", "/users/42");
+		assertThat(match.getRoute().getControllerMethod()).isSameAs(users.getRouteFor("GET", "/42").getControllerMethod());
+		assertThat(router.dispatch(match)).isEqualTo(42);
+	}
+
+	@Test
+	public void should_reject_parameterized_mount_prefix() {
+		// given
+		thrown.expect(IllegalArgumentException.class);
+
+		// when
+		router.mount("/tenants/{tenant}", new Router());
+	}
+
+	@Test
+	public void should_backtrack_from_static_route_to_parameter_route() {
+		// given
+		router.route("/users/new").whenGET().handleIn(SampleController.class).by(METHOD_NAME)
+				.route("/users/{id}/edit").whenGET().handleIn(SampleController.class).by(METHOD_NAME);
+
+		// when
+		RouteMatch match = router.match("GET", "/users/new/edit");
+
+		// then
+		assertThat(match.getRoute().getUri()).isEqualTo("/users/{id}/edit");
+		assertThat(match.getParameter("id")).isEqualTo("new");
+		assertThat(router.getRouteFor("GET", "/users/new").getUri()).isEqualTo("/users/new");
+	}
+
+	@Test
+	public void should_keep_results_while_adapting_child_order() {
+		// given
+		router.adaptChildOrder(1, 8).pathFirst();
+		router.route("/users").whenGET().handleIn(SampleController.class).by(METHOD_NAME)
+				.route("/users/new").whenGET().handleIn(SampleController.class).by(METHOD_NAME)
+				.route("/users/{id}").whenGET().handleIn(SampleController.class).by("intCall")
+				.route("/orders").whenGET().handleIn(SampleController.class).by(METHOD_NAME);
+
+		// when
+		for (int i = 0; i < 100; i++) {
+			router.match("GET", "/users/" + i);
+		}
+
+		// then
+		assertThat(router.match("GET", "/users/new").getRoute().getUri()).isEqualTo("/users/new");
+		assertThat(router.match("GET", "/users/5").getParameter("id")).isEqualTo("5");
+		assertThat(router.match("GET", "/orders").isFound()).isTrue();
+		assertThat(router.match("GET", "/carts").getStatus()).isEqualTo(404);
+	}
+
+	@Test
+	public void should_select_route_by_accepted_media_type() {
+		// given
+		router.route("/users/{id}").whenGET().handleIn(SampleController.class).producing("application/vnd.v1+json").by("intCall")
+				.whenGET().handleIn(SampleController.class).producing("application/vnd.v2+json").by("intCall")
+				.whenGET().handleIn(SampleController.class).producing("text/html").by("intCall");
+
+		// then
+		assertThat(acceptedBy("application/vnd.v2+json")).isEqualTo("accept: application/vnd.v2+json");
+		assertThat(acceptedBy("text/plain, Application/VND.v1+JSON;q=0.9")).isEqualTo("accept: application/vnd.v1+json");
+		assertThat(acceptedBy("text/*")).isEqualTo("accept: text/html");
+		assertThat(acceptedBy("*/*")).isEqualTo("accept: application/vnd.v1+json");
+		assertThat(router.match("GET", "/users/1").getRoute().getHeaderConditions())
+				.isEqualTo("accept: application/vnd.v1+json");
+		assertThat(router.dispatch(router.match("GET", "/users/3", headers("accept", "text/html")))).isEqualTo(3);
+		RouteMatch unacceptable = router.match("GET", "/users/1", headers("accept", "image/png"));
+		assertThat(unacceptable.isFound()).isFalse();
+		assertThat(unacceptable.getStatus()).isEqualTo(406);
+		assertThat(router.match("GET", "/orders", headers("accept", "image/png")).getStatus()).isEqualTo(404);
+	}
+
+	@Test
+	public void should_select_route_by_content_type_and_custom_header() {
+		// given
+		router.pathFirst()
+				.route("/users").whenPOST().handleIn(SampleController.class).consuming("application/json")
+				.withHeader("API-Version", "2").by(METHOD_NAME)
+				.whenPOST().handleIn(SampleController.class).consuming("application/json").by(METHOD_NAME)
+				.whenPOST().handleIn(SampleController.class).by(METHOD_NAME);
+
+		// when
+		RouteMatch v2 = router.match("POST", "/users", headers("content-type", "application/json; charset=UTF-8",
+				"api-version", " 2 "));
+		RouteMatch v1 = router.match("POST", "/users", headers("content-type", "application/json",
+				"api-version", "1"));
+		RouteMatch fallback = router.match("POST", "/users", headers("content-type", "text/csv"));
+
+		// then
+		assertThat(v2.getRoute().getHeaderConditions()).isEqualTo("api-version: 2, content-type: application/json");
+		assertThat(v1.getRoute().getHeaderConditions()).isEqualTo("content-type: application/json");
+		assertThat(fallback.getRoute().getHeaderConditions()).isEmpty();
+		assertThat(router.getRoutes()).hasSize(3);
+	}
+
+	@Test
+	public void should_report_unsupported_media_type_when_content_type_rules_out_every_route() {
+		// given
+		router.route("/users").whenPOST().handleIn(SampleController.class).consuming("application/json")
+				.producing("application/json").by(METHOD_NAME);
+
+		// when
+		RouteMatch unsupported = router.match("POST", "/users", headers("content-type", "text/plain",
+				"accept", "application/json"));
+		RouteMatch missing = router.match("POST", "/users", headers());
+
+		// then
+		assertThat(unsupported.isFound()).isFalse();
+		assertThat(unsupported.getStatus()).isEqualTo(415);
+		assertThat(missing.getStatus()).isEqualTo(415);
+	}
+
+	@Test
+	public void should_report_not_acceptable_when_accept_rules_out_every_route() {
+		// given
+		router.route("/users").whenPOST().handleIn(SampleController.class).consuming("application/json")
+				.producing("application/json").by(METHOD_NAME);
+
+		// when
+		RouteMatch unacceptable = router.match("POST", "/users", headers("content-type", "application/json",
+				"accept", "text/html"));
+
+		// then
+		assertThat(unacceptable.isFound()).isFalse();
+		assertThat(unacceptable.getStatus()).isEqualTo(406);
+	}
+
+	@Test
+	public void should_report_not_acceptable_when_custom_header_rules_out_every_route() {
+		// given
+		router.route("/users").whenPOST().handleIn(SampleController.class).consuming("application/json")
+				.withHeader("API-Version", "2").by(METHOD_NAME);
+
+		// when
+		RouteMatch unacceptable = router.match("POST", "/users", headers("content-type", "application/json",
+				"api-version", "1"));
+
+		// then
+		assertThat(unacceptable.isFound()).isFalse();
+		assertThat(unacceptable.getStatus()).isEqualTo(406);
+	}
+
+	@Test
+	public void should_replace_and_remove_header_variants() {
+		// given
+		Router next = new Router();
+		next.route("/users").whenGET().handleIn(SampleController.class).producing("text/html").by(METHOD_NAME);
+		router.route("/users").whenGET().handleIn(SampleController.class).producing("application/json").by(METHOD_NAME)
+				.whenGET().handleIn(SampleController.class).producing("text/html").by("otherCall")
+				.whenGET().handleIn(SampleController.class).producing("text/html").by(METHOD_NAME);
+
+		// when
+		RouteMatch replaced = router.match("GET", "/users", headers("accept", "text/html"));
+		router.apply(next.exportDelta(router));
+
+		// then
+		assertThat(replaced.getRoute().getControllerMethod().getName()).isEqualTo(METHOD_NAME);
+		assertThat(router.getRoutes()).hasSize(1);
+		assertThat(router.getChecksum()).isEqualTo(next.getChecksum());
+		assertThat(router.match("GET", "/users", headers("accept", "application/json")).getStatus()).isEqualTo(406);
+		assertThat(router.match("GET", "/users", headers("accept", "text/html")).getRoute().getControllerMethod()
+				.getName()).isEqualTo(METHOD_NAME);
+	}
+
+	private String acceptedBy(String accept) {
+		return router.match("GET", "/users/1", headers("accept", accept)).getRoute().getHeaderConditions();
+	}
+
+	private static Headers headers(String... namesAndValues) {
+		final Map<String, String> headers = new HashMap<>();
+		for (int i = 0; i < namesAndValues.length; i += 2) {
+			headers.put(namesAndValues[i], namesAndValues[i + 1]);
+		}
+		return new Headers() {
+			@Override
+			public CharSequence get(String name) {
+				return headers.get(name);
+			}
+		};
+	}
+
+	private static Interceptor recording(final String name, final List<String> calls) {
+		return new Interceptor() {
+			@Override
+			public Object intercept(RouteMatch match, Invoker next) throws Exception {
+				calls.add(name);
+				return next.invoke(match);
+			}
+		};
+	}
+
 }
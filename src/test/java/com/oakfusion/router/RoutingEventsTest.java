@@ -0,0 +1,169 @@
+package com.oakfusion.router;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RoutingEventsTest {
+
+	private static final String LOOKUP = "com.oakfusion.router.Lookup";
+	private static final String DISPATCH = "com.oakfusion.router.Dispatch";
+
+	private final Router router = new Router();
+	private Recording recording;
+	private List<RecordedEvent> recorded;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Before
+	public void setUp() {
+		router.route("/users/{id}").whenGET().handleIn(SampleController.class).by("intCall");
+		recording = new Recording();
+	}
+
+	@After
+	public void tearDown() {
+		recording.close();
+	}
+
+	@Test
+	public void should_record_lookups_and_dispatches() throws IOException {
+		// given
+		recording.enable(LOOKUP).withThreshold(Duration.ZERO);
+		recording.enable(DISPATCH).withThreshold(Duration.ZERO);
+		recording.start();
+
+		// when
+		router.dispatch(router.match("GET", "/users/7?x=1"));
+		router.match("PUT", "/users/7");
+		router.match("GET", "/orders");
+
+		// then
+		List<RecordedEvent> lookups = events(LOOKUP);
+		assertThat(lookups).hasSize(3);
+		assertThat(lookups.get(0).getString("method")).isEqualTo("GET");
+		assertThat(lookups.get(0).getString("path")).isEqualTo("/users/7");
+		assertThat(lookups.get(0).getString("pattern")).isEqualTo("/users/{id}");
+		assertThat(lookups.get(0).getInt("status")).isEqualTo(200);
+		assertThat(lookups.get(0).getInt("depth")).isEqualTo(2);
+		assertThat(lookups.get(1).getInt("status")).isEqualTo(405);
+		assertThat(lookups.get(1).getString("pattern")).isNull();
+		assertThat(lookups.get(2).getInt("depth")).isEqualTo(0);
+		List<RecordedEvent> dispatches = events(DISPATCH);
+		assertThat(dispatches).hasSize(1);
+		assertThat(dispatches.get(0).getString("handler")).isEqualTo(SampleController.class.getName() + "#intCall");
+		assertThat(dispatches.get(0).getString("failure")).isNull();
+	}
+
+	@Test
+	public void should_record_route_lookups_with_depth_reached() throws IOException {
+		// given
+		router.route("/orders/{id}/items/{item}").whenGET().handleIn(SampleController.class).by("simpleCall");
+		recording.enable(LOOKUP).withThreshold(Duration.ZERO);
+		recording.start();
+
+		// when
+		router.getRouteFor("GET", "/orders/7/lines/1");
+		router.getRouteFor("GET", "/orders/7/items/1");
+
+		// then
+		List<RecordedEvent> lookups = events(LOOKUP);
+		assertThat(lookups).hasSize(2);
+		assertThat(lookups.get(0).getInt("status")).isEqualTo(404);
+		assertThat(lookups.get(0).getInt("depth")).isEqualTo(2);
+		assertThat(lookups.get(1).getString("pattern")).isEqualTo("/orders/{id}/items/{item}");
+		assertThat(lookups.get(1).getInt("depth")).isEqualTo(4);
+	}
+
+	@Test
+	public void should_record_dispatch_failure() throws IOException {
+		// given
+		recording.enable(DISPATCH).withThreshold(Duration.ZERO);
+		recording.start();
+
+		// when
+		try {
+			router.dispatch(router.match("GET", "/users/x"));
+		} catch (NumberFormatException expected) {
+			// reported below
+		}
+
+		// then
+		assertThat(events(DISPATCH).get(0).getString("failure")).isEqualTo(NumberFormatException.class.getName());
+	}
+
+	@Test
+	public void should_drop_lookups_under_threshold() throws IOException {
+		// given
+		recording.enable(LOOKUP).withThreshold(Duration.ofHours(1));
+		recording.start();
+
+		// when
+		for (int i = 0; i < 100; i++) {
+			router.match("GET", "/users/" + i);
+		}
+
+		// then
+		assertThat(events(LOOKUP)).isEmpty();
+	}
+
+	@Test
+	public void should_sample_lookups() throws IOException {
+		// given
+		recording.enable(LOOKUP).withThreshold(Duration.ZERO).with("sampling", "10");
+		recording.start();
+
+		// when
+		for (int i = 0; i < 1000; i++) {
+			router.match("GET", "/users/" + i);
+		}
+
+		// then
+		assertThat(events(LOOKUP).size()).isBetween(30, 250);
+	}
+
+	@Test
+	public void should_combine_sampling_rates_to_densest() {
+		// given
+		SamplingControl control = new SamplingControl();
+
+		// then
+		assertThat(control.combine(Collections.<String>emptySet())).isEqualTo("1");
+		assertThat(control.combine(new HashSet<>(Arrays.asList("100", "20", "x")))).isEqualTo("1");
+		assertThat(control.combine(new HashSet<>(Arrays.asList("100", "20")))).isEqualTo("20");
+	}
+
+	private List<RecordedEvent> events(String name) throws IOException {
+		if (recorded == null) {
+			recording.stop();
+			Path file = folder.newFile().toPath();
+			recording.dump(file);
+			recorded = RecordingFile.readAllEvents(file);
+		}
+		List<RecordedEvent> events = new ArrayList<>();
+		for (RecordedEvent event : recorded) {
+			if (event.getEventType().getName().equals(name)) {
+				events.add(event);
+			}
+		}
+		return events;
+	}
+
+}
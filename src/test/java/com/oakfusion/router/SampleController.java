@@ -1,11 +1,41 @@
 package com.oakfusion.router;
 
+import java.util.UUID;
+
 public class SampleController {
 
+	public enum Kind {
+		DOCUMENT, IMAGE
+	}
+
 	public Pojo simpleCall() {
 		return new Pojo();
 	}
 
+	public String otherCall() {
+		return "other";
+	}
+
+	public String typedCall(long userId, Kind kind, UUID fileId, RouteMatch match, String name) {
+		return userId + " " + kind + " " + fileId + " " + name + " " + match.getParameterCount();
+	}
+
+	public String stringCall(String value) {
+		return value;
+	}
+
+	public int intCall(int value) {
+		return value;
+	}
+
+	public Kind primitiveCall(int id, long size) {
+		return id < size ? Kind.DOCUMENT : Kind.IMAGE;
+	}
+
+	public Object untypedCall(Object value) {
+		return value;
+	}
+
 	public static class Pojo {
 	}
 
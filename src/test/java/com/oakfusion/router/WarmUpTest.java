@@ -0,0 +1,132 @@
+package com.oakfusion.router;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WarmUpTest {
+
+	private final Router router = new Router();
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Before
+	public void setUp() {
+		Router files = new Router();
+		files.route("/{id}/{kind}/{file}/{name}").whenGET().handleIn(SampleController.class).by("typedCall");
+		router.route("/users").whenGET().handleIn(SampleController.class).by("simpleCall")
+				.route("/users/{id}").whenPUT().handleIn(SampleController.class).by("intCall")
+				.mount("/files", files);
+	}
+
+	@Test
+	public void should_bind_every_synthetic_request() {
+		// when
+		WarmUp.Report report = router.warmUp().synthetic().maxRequests(3000).run();
+
+		// then
+		assertThat(report.getRequests()).isEqualTo(3000);
+		assertThat(report.getRounds()).isEqualTo(3);
+		assertThat(report.getMisses()).isEqualTo(0);
+		assertThat(report.getFailures()).isEqualTo(0);
+		assertThat(report.isSteady()).isFalse();
+	}
+
+	@Test
+	public void should_replay_synthetic_requests_of_tenants_on_their_hosts() {
+		// given
+		Router tenant = new Router();
+		tenant.route("/reports").whenGET().handleIn(SampleController.class).by("simpleCall");
+		router.route("/reports").whenPUT().handleIn(SampleController.class).by("simpleCall")
+				.host("*.example.com", tenant);
+
+		// when
+		WarmUp.Report report = router.warmUp().synthetic().maxRequests(1000).run();
+
+		// then
+		assertThat(report.getMisses()).isEqualTo(0);
+		assertThat(report.getFailures()).isEqualTo(0);
+	}
+
+	@Test
+	public void should_not_record_lookups_while_warming_up() throws IOException {
+		// given
+		Path dump = folder.newFile().toPath();
+		try (Recording recording = new Recording()) {
+			recording.enable("com.oakfusion.router.Lookup").withThreshold(Duration.ZERO);
+			recording.start();
+
+			// when
+			router.warmUp().synthetic().maxRequests(1000).run();
+			recording.stop();
+			recording.dump(dump);
+		}
+
+		// then
+		for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+			assertThat(event.getEventType().getName()).isNotEqualTo("com.oakfusion.router.Lookup");
+		}
+	}
+
+	@Test
+	public void should_count_misses_and_failures_of_recorded_requests() throws IOException {
+		// given
+		Path sample = folder.newFile().toPath();
+		Files.write(sample, ("# sample\n"
+				+ "GET /users\n"
+				+ "GET /orders\n"
+				+ "\n"
+				+ "PUT /users/x\n"
+				+ "PUT /users/2\n").getBytes(StandardCharsets.UTF_8));
+
+		// when
+		WarmUp.Report report = router.warmUp().recorded(sample).maxRequests(1000).run();
+
+		// then
+		assertThat(report.getRequests()).isEqualTo(1000);
+		assertThat(report.getMisses()).isEqualTo(250);
+		assertThat(report.getFailures()).isEqualTo(250);
+	}
+
+	@Test
+	public void should_reach_steady_state_within_budget() {
+		// when
+		WarmUp.Report report = router.warmUp().synthetic().steadyAfter(3, 1.0)
+				.timeLimit(60, TimeUnit.SECONDS).run();
+
+		// then
+		assertThat(report.isSteady()).as(report.toString()).isTrue();
+		assertThat(report.getNanosPerRequest()).isGreaterThan(0);
+	}
+
+	@Test
+	public void should_stop_at_time_limit() {
+		// when
+		WarmUp.Report report = router.warmUp().request("GET", "/users").steadyAfter(2, 0)
+				.timeLimit(50, TimeUnit.MILLISECONDS).run();
+
+		// then
+		assertThat(report.getElapsedNanos()).isLessThan(TimeUnit.SECONDS.toNanos(5));
+		assertThat(report.getRounds()).isGreaterThan(0);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void should_not_run_without_requests() {
+		router.warmUp().run();
+	}
+
+}
@@ -0,0 +1,60 @@
+package com.oakfusion.router.util;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ChildTableTest {
+
+	private final ChildTable<String> table = new ChildTable<>();
+
+	@Test
+	public void should_stay_linear_up_to_limit() {
+		// when
+		for (int i = 0; i < ChildTable.LINEAR_LIMIT; i++) {
+			table.put("k" + i, new UriTree<String>("k" + i));
+		}
+
+		// then
+		assertThat(table.isHashed()).isFalse();
+		assertThat(table.size()).isEqualTo(ChildTable.LINEAR_LIMIT);
+	}
+
+	@Test
+	public void should_switch_to_hashed_layout_and_back() {
+		// given
+		for (int i = 0; i <= ChildTable.LINEAR_LIMIT; i++) {
+			table.put("k" + i, new UriTree<String>("k" + i));
+		}
+		assertThat(table.isHashed()).isTrue();
+
+		// when
+		for (int i = 0; i <= ChildTable.LINEAR_LIMIT - ChildTable.SHRINK_LIMIT; i++) {
+			table.remove("k" + i);
+		}
+
+		// then
+		assertThat(table.isHashed()).isFalse();
+		assertThat(table.size()).isEqualTo(ChildTable.SHRINK_LIMIT);
+		assertThat(table.get("k" + ChildTable.LINEAR_LIMIT).getKey()).isEqualTo("k" + ChildTable.LINEAR_LIMIT);
+	}
+
+	@Test
+	public void should_keep_colliding_keys_reachable_after_removal() {
+		// given "Aa" and "BB" share their hash code
+		for (int i = 0; i < 20; i++) {
+			table.put("k" + i, new UriTree<String>("k" + i));
+		}
+		table.put("Aa", new UriTree<String>("Aa"));
+		table.put("BB", new UriTree<String>("BB"));
+
+		// when
+		table.remove("Aa");
+
+		// then
+		assertThat(table.get("Aa")).isNull();
+		assertThat(table.get("BB").getKey()).isEqualTo("BB");
+		assertThat(table.get("BB", 0, 2, "BB".hashCode(), UriNormalization.DEFAULT).getKey()).isEqualTo("BB");
+	}
+
+}
@@ -0,0 +1,182 @@
+package com.oakfusion.router.util;
+
+import org.junit.Test;
+
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CompiledMatcherTest {
+
+	private final UriTree<String> tree = new UriTree<String>("root");
+
+	@Test
+	public void should_generate_matcher_with_same_results_as_tree() {
+		// given
+		tree.put("users/{id}", "user");
+		tree.put("users/new", "new");
+		tree.put("users/{id}/items/{itemId}", "item");
+		tree.put("orders", "orders");
+		tree.put("odors", "odors");
+		tree.put("owners", "owners");
+		tree.put("abc/def", "abc");
+		tree.put("abd/def", "abd");
+		tree.put("abe/def", "abe");
+		tree.put("quo\"te\\/x", "quote");
+		tree.put("zażółć", "unicode");
+		String[] paths = {"users/42", "users/new", "users/42/items/7", "users/42/items", "orders", "odors",
+				"owners", "oxders", "abc/def", "abd/def", "abe/def", "abf/def", "quo\"te\\/x", "zażółć", "", "x"};
+
+		// when
+		CompiledMatcher<String> matcher = CompiledMatcher.compile(tree);
+
+		// then
+		assertThat(matcher.isGenerated()).isTrue();
+		assertThat(matcher.getFallbackReason()).isNull();
+		for (String path : paths) {
+			assertThat(matcher.matchedBySegments(path)).as(path).isSameAs(tree.matchedBySegments(path));
+		}
+		assertThat(matcher.matchedBySegments("users/42/items/7").getData()).isEqualTo("item");
+	}
+
+	@Test
+	public void should_backtrack_to_parameter_in_generated_matcher() {
+		// given
+		tree.put("users/new", "new");
+		tree.put("users/{id}/edit", "edit");
+		tree.put("users/{id}", "user");
+
+		// when
+		CompiledMatcher<String> matcher = CompiledMatcher.compile(tree);
+
+		// then
+		assertThat(matcher.matchedBySegments("users/new/edit").getData()).isEqualTo("edit");
+		assertThat(matcher.matchedBySegments("users/new").getData()).isEqualTo("new");
+		assertThat(matcher.matchedBySegments("users/7").getData()).isEqualTo("user");
+		assertThat(matcher.matchedBySegments("users/new/edit/x")).isNull();
+		assertThat(matcher.matchedBySegments("users")).isNull();
+	}
+
+	@Test
+	public void should_compile_deduplicated_tree() {
+		// given
+		tree.put("users/{id}/items/{itemId}", "item");
+		tree.put("orders/{id}/items/{itemId}", "item");
+		tree.deduplicate();
+
+		// when
+		CompiledMatcher<String> matcher = CompiledMatcher.compile(tree);
+
+		// then
+		assertThat(matcher.matchedBySegments("orders/1/items/2").getData()).isEqualTo("item");
+		assertThat(matcher.matchesBySegments(new String[]{"carts", "1"})).isFalse();
+	}
+
+	@Test
+	public void should_find_same_data_and_captures_as_tree_match() {
+		// given
+		tree.put("users/{id}", "user");
+		tree.put("users/new", "new");
+		tree.put("users/{id}/edit", "edit");
+		tree.put("users/{id}/items/{itemId}", "item");
+		tree.put("orders", "orders");
+		tree.put("odors", "odors");
+		tree.put("owners", "owners");
+		tree.put("zażółć", "unicode");
+		String[] paths = {"/users/42", "/users/new", "/users/new/edit", "//users/7/items/8/", "/users/42/items",
+				"/orders", "/odors", "/owners", "/oxders", "/zażółć", "/", "", "/x", "/users/new/edit/x"};
+		CompiledMatcher<String> matcher = CompiledMatcher.snapshot(tree);
+
+		for (String path : paths) {
+			Captures expectedCaptures = new Captures();
+			Captures captures = new Captures();
+
+			// when
+			UriTree<String> expected = tree.match(path, 0, path.length(), expectedCaptures);
+			String found = matcher.find(path, 0, path.length(), captures, null);
+
+			// then
+			assertThat(found).as(path).isEqualTo(expected == null ? null : expected.getData());
+			assertThat(captures.size()).as(path).isEqualTo(expectedCaptures.size());
+			for (int i = 0; i < captures.size(); i++) {
+				assertThat(captures.key(i)).isEqualTo(expectedCaptures.key(i));
+				assertThat(captures.start(i)).isEqualTo(expectedCaptures.start(i));
+				assertThat(captures.end(i)).isEqualTo(expectedCaptures.end(i));
+			}
+			assertThat(captures.depth()).as(path).isEqualTo(expectedCaptures.depth());
+		}
+		assertThat(matcher.isGenerated()).isTrue();
+		assertThat(tree.isFrozen()).isFalse();
+	}
+
+	@Test
+	public void should_backtrack_past_data_not_accepted() {
+		// given
+		tree.put("users/new", "new");
+		tree.put("users/{id}", "user");
+		CompiledMatcher<String> matcher = CompiledMatcher.snapshot(tree);
+		Captures captures = new Captures();
+
+		// when
+		String found = matcher.find("/users/new", 0, 10, captures, new Predicate<String>() {
+			@Override
+			public boolean test(String data) {
+				return !data.equals("new");
+			}
+		});
+
+		// then
+		assertThat(found).isEqualTo("user");
+		assertThat(captures.size()).isEqualTo(1);
+		assertThat(captures.key(0)).isEqualTo("{id}");
+	}
+
+	@Test
+	public void should_leave_escaped_segments_to_tree() {
+		// given
+		UriTree<String> decoding = new UriTree<>("/", UriNormalization.DEFAULT.withPercentDecoding(true)
+				.withTrailingSlash(UriNormalization.TrailingSlash.REJECT));
+		decoding.put("files/a b", "spaced");
+		decoding.put("files/{name}", "file");
+		CompiledMatcher<String> matcher = CompiledMatcher.snapshot(decoding);
+
+		// then
+		assertThat(matcher.isGenerated()).isTrue();
+		assertThat(matcher.find("/files/a%20b", 0, 12, null, null)).isEqualTo("spaced");
+		assertThat(matcher.find("/files/a", 0, 8, null, null)).isEqualTo("file");
+		assertThat(matcher.find("/files/a/", 0, 9, null, null)).isNull();
+	}
+
+	@Test
+	public void should_fall_back_to_tree_when_too_large_for_a_class() {
+		// given
+		for (int i = 0; i < 20000; i++) {
+			tree.put("users/u" + i, "user" + i);
+		}
+
+		// when
+		CompiledMatcher<String> matcher = CompiledMatcher.compile(tree);
+
+		// then
+		assertThat(matcher.isGenerated()).isFalse();
+		assertThat(matcher.getFallbackReason()).contains("too large");
+		assertThat(matcher.matchedBySegments("users/u17").getData()).isEqualTo("user17");
+	}
+
+	@Test
+	public void should_fall_back_to_tree_when_folding_case() {
+		// given
+		UriTree<String> folding = new UriTree<>("root", UriNormalization.DEFAULT.withCaseFolding(true));
+		folding.put("Users/{id}", "user");
+
+		// when
+		CompiledMatcher<String> matcher = CompiledMatcher.compile(folding);
+
+		// then
+		assertThat(matcher.isGenerated()).isFalse();
+		assertThat(matcher.getFallbackReason()).contains("folds case");
+		assertThat(matcher.matchedBySegments("USERS/1").getData()).isEqualTo("user");
+		assertThat(folding.isFrozen()).isTrue();
+	}
+
+}
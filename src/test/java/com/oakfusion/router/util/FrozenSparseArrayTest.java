@@ -0,0 +1,109 @@
+package com.oakfusion.router.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FrozenSparseArrayTest {
+
+	private static final int[] SIZES = {0, 1, 2, EytzingerLayout.LINEAR_LIMIT, EytzingerLayout.LINEAR_LIMIT + 1, 100, 1023, 1024, 5000};
+
+	@Rule
+	public ExpectedException thrown = ExpectedException.none();
+
+	@Test
+	public void should_find_same_values_as_sparse_array() {
+		Random random = new Random(7);
+		for (int size : SIZES) {
+			// given
+			SparseArray<String> array = new SparseArray<>();
+			for (int i = 0; i < size; i++) {
+				int key = random.nextInt(size * 4 + 1) - size * 2;
+				array.put(key, "v" + key);
+			}
+
+			// when
+			FrozenSparseArray<String> frozen = array.freeze();
+
+			// then
+			assertThat(frozen.size()).isEqualTo(array.size());
+			for (int key = -size * 2 - 2; key <= size * 2 + 2; key++) {
+				assertThat(frozen.get(key)).isEqualTo(array.get(key));
+			}
+			assertThat(frozen.get(Integer.MIN_VALUE, "none")).isEqualTo(array.get(Integer.MIN_VALUE, "none"));
+			assertThat(frozen.get(Integer.MAX_VALUE, "none")).isEqualTo(array.get(Integer.MAX_VALUE, "none"));
+		}
+	}
+
+	@Test
+	public void should_find_int_values_without_boxing() {
+		for (int size : SIZES) {
+			// given
+			int[] keys = new int[size];
+			int[] values = new int[size];
+			for (int i = 0; i < size; i++) {
+				keys[i] = i * 3;
+				values[i] = -i;
+			}
+
+			// when
+			FrozenSparseIntArray frozen = FrozenSparseIntArray.of(keys, values, size);
+
+			// then
+			for (int i = 0; i < size; i++) {
+				assertThat(frozen.get(i * 3, Integer.MAX_VALUE)).isEqualTo(-i);
+				assertThat(frozen.containsKey(i * 3 + 1)).isFalse();
+			}
+			assertThat(frozen.get(-1, 42)).isEqualTo(42);
+		}
+	}
+
+	@Test
+	public void should_skip_deleted_mappings_when_frozen() {
+		// given
+		SparseArray<String> array = new SparseArray<>();
+		array.put(1, "one");
+		array.put(2, "two");
+		array.delete(1);
+
+		// when
+		FrozenSparseArray<String> frozen = array.freeze();
+
+		// then
+		assertThat(frozen.size()).isEqualTo(1);
+		assertThat(frozen.containsKey(1)).isFalse();
+		assertThat(frozen.get(2)).isEqualTo("two");
+	}
+
+	@Test
+	public void should_append_ascending_keys_in_bulk() {
+		// given
+		SparseArray<String> array = new SparseArray<>();
+		array.put(1, "one");
+
+		// when
+		array.appendAll(new int[]{5, 7, 9}, new String[]{"five", "seven", "nine"}, 3);
+		array.appendAll(new int[]{8, 3}, new String[]{"eight", "three"}, 2);
+
+		// then
+		assertThat(array.size()).isEqualTo(6);
+		assertThat(array.keyAt(0)).isEqualTo(1);
+		assertThat(array.keyAt(1)).isEqualTo(3);
+		assertThat(array.keyAt(5)).isEqualTo(9);
+		assertThat(array.get(8)).isEqualTo("eight");
+	}
+
+	@Test
+	public void should_reject_unsorted_keys() {
+		// given
+		thrown.expect(IllegalArgumentException.class);
+
+		// when
+		FrozenSparseIntArray.of(new int[]{1, 3, 2}, new int[3], 3);
+	}
+
+}
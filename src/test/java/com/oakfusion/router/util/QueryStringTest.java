@@ -0,0 +1,60 @@
+package com.oakfusion.router.util;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class QueryStringTest {
+
+	@Test
+	public void should_be_empty_without_query() {
+		// when
+		QueryString query = QueryString.of("/users/42");
+
+		// then
+		assertThat(query.size()).isEqualTo(0);
+		assertThat(query.get("id")).isNull();
+	}
+
+	@Test
+	public void should_index_parameters_of_request_uri() {
+		// when
+		QueryString query = QueryString.of("/users?page=2&&sort=name&flag#fragment");
+
+		// then
+		assertThat(query.size()).isEqualTo(3);
+		assertThat(query.getName(1)).isEqualTo("sort");
+		assertThat(query.get("sort")).isEqualTo("name");
+		assertThat(query.get("flag")).isEqualTo("");
+		assertThat(query.contains("fragment")).isFalse();
+	}
+
+	@Test
+	public void should_decode_names_and_values() {
+		// when
+		QueryString query = QueryString.of("/search?q=caf%C3%A9+au+lait&my%20key=1");
+
+		// then
+		assertThat(query.get("q")).isEqualTo("café au lait");
+		assertThat(query.get("my key")).isEqualTo("1");
+	}
+
+	@Test
+	public void should_parse_numbers_in_place() {
+		// when
+		QueryString query = QueryString.of("?page=2&offset=-9000000000&encoded=%34%32");
+
+		// then
+		assertThat(query.getInt("page", 0)).isEqualTo(2);
+		assertThat(query.getLong("offset", 0)).isEqualTo(-9000000000L);
+		assertThat(query.getInt("encoded", 0)).isEqualTo(42);
+		assertThat(query.getInt("missing", 7)).isEqualTo(7);
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void should_reject_malformed_number() {
+		// when
+		QueryString.of("?page=2x").getInt("page", 0);
+	}
+
+}
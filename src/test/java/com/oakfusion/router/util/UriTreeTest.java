@@ -2,6 +2,9 @@ package com.oakfusion.router.util;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class UriTreeTest {
@@ -290,4 +293,413 @@ public class UriTreeTest {
 		assertThat(matched.getData()).isEqualTo("1");
 	}
 
+	@Test
+	public void should_match_path_without_splitting_it() {
+		// given
+		tree.put("s1/s2/s3", "1");
+
+		// when
+		final UriTree<String> matched = tree.match("//s1//s2/s3/");
+
+		// then
+		assertThat(matched.getData()).isEqualTo("1");
+	}
+
+	@Test
+	public void should_prefer_static_child_over_parameter_while_matching() {
+		// given
+		tree.put("users/{id}", "param");
+		tree.put("users/new", "static");
+
+		// when
+		final UriTree<String> matchedStatic = tree.match("/users/new");
+		final UriTree<String> matchedParameter = tree.match("/users/42");
+
+		// then
+		assertThat(matchedStatic.getData()).isEqualTo("static");
+		assertThat(matchedParameter.getData()).isEqualTo("param");
+	}
+
+	@Test
+	public void should_capture_parameter_bounds_while_matching() {
+		// given
+		tree.put("users/{id}/items/{itemId}", "1");
+		final Captures captures = new Captures();
+		final String path = "/users/42/items/7";
+
+		// when
+		tree.match(path, 0, path.length(), captures);
+
+		// then
+		assertThat(captures.size()).isEqualTo(2);
+		assertThat(captures.key(0)).isEqualTo("{id}");
+		assertThat(path.substring(captures.start(0), captures.end(0))).isEqualTo("42");
+		assertThat(captures.indexOf("itemId")).isEqualTo(1);
+		assertThat(path.substring(captures.start(1), captures.end(1))).isEqualTo("7");
+	}
+
+	@Test
+	public void should_share_one_parameter_edge_between_parameter_names() {
+		// given
+		tree.put("users/{id}", "get");
+		tree.put("users/{userId}/files", "files");
+
+		// when
+		final UriTree<String> users = tree.find("users");
+
+		// then
+		assertThat(users.getChildCount()).isEqualTo(1);
+		assertThat(tree.find("users/{userId}").getData()).isEqualTo("get");
+		assertThat(tree.match("/users/42/files").getData()).isEqualTo("files");
+		assertThat(tree.remove("users/{other}/files")).isEqualTo("files");
+		assertThat(tree.match("/users/42").getData()).isEqualTo("get");
+	}
+
+	@Test
+	public void should_backtrack_past_nodes_whose_data_is_not_accepted() {
+		// given
+		tree.put("users/new", "static");
+		tree.put("users/{id}", "param");
+		final Captures captures = new Captures();
+		final String path = "/users/new";
+
+		// when
+		final UriTree<String> matched = tree.match(path, 0, path.length(), captures, data -> !data.equals("static"));
+
+		// then
+		assertThat(matched.getData()).isEqualTo("param");
+		assertThat(captures.size()).isEqualTo(1);
+		assertThat(tree.match(path, 0, path.length(), null, data -> false)).isNull();
+	}
+
+	@Test
+	public void should_capture_segment_spelling_out_parameter_key() {
+		// given
+		final UriTree<String> decoding = new UriTree<>("/", UriNormalization.DEFAULT.withPercentDecoding(true));
+		decoding.put("users/{id}", "param");
+		final Captures captures = new Captures();
+		final String path = "/users/%7Bid%7D";
+
+		// when
+		final UriTree<String> matched = decoding.match(path, 0, path.length(), captures);
+
+		// then
+		assertThat(matched.getData()).isEqualTo("param");
+		assertThat(captures.size()).isEqualTo(1);
+		assertThat(path.substring(captures.start(0), captures.end(0))).isEqualTo("%7Bid%7D");
+		assertThat(decoding.match("/users/{id}").getData()).isEqualTo("param");
+		assertThat(decoding.matchedBySegments("users/{id}").getData()).isEqualTo("param");
+	}
+
+	@Test
+	public void should_backtrack_to_parameter_when_static_branch_dead_ends() {
+		// given
+		tree.put("users/new", "new");
+		tree.put("users/new/{tab}/x", "tab");
+		tree.put("users/{id}/edit", "edit");
+		final Captures captures = new Captures();
+		final String path = "/users/new/edit";
+
+		// when
+		final UriTree<String> matched = tree.match(path, 0, path.length(), captures);
+
+		// then
+		assertThat(matched.getData()).isEqualTo("edit");
+		assertThat(captures.size()).isEqualTo(1);
+		assertThat(captures.key(0)).isEqualTo("{id}");
+		assertThat(path.substring(captures.start(0), captures.end(0))).isEqualTo("new");
+		assertThat(tree.matchedBySegments("users/new/edit").getData()).isEqualTo("edit");
+		assertThat(tree.match("/users/new").getData()).isEqualTo("new");
+	}
+
+	@Test
+	public void should_match_only_nodes_with_data() {
+		// given
+		tree.put("s1/s2/s3", "1");
+		tree.put("s1/{id}", "2");
+		tree.put("s4/s5");
+
+		// then
+		assertThat(tree.match("/s1/s2").getData()).isEqualTo("2");
+		assertThat(tree.match("/s1")).isNull();
+		assertThat(tree.match("/s4/s5")).isNull();
+		assertThat(tree.matchedBySegments("s1/s2/s3/s4")).isNull();
+	}
+
+	@Test
+	public void should_bound_match_cost() {
+		// given
+		tree.put("users/new", "new");
+		tree.put("users/{id}/edit", "edit");
+		tree.put("orders/{id}", "order");
+		tree.put("dead/end");
+
+		// then
+		// root, users, new, then {id} and edit after backtracking
+		assertThat(tree.matchCostBound()).isEqualTo(5);
+	}
+
+	@Test
+	public void should_keep_depth_bounds_after_remove() {
+		// given
+		tree.put("users/{id}/edit", "edit");
+		tree.put("users/{id}", "user");
+
+		// when
+		tree.remove("users/{id}/edit");
+
+		// then
+		assertThat(tree.match("/users/1/edit")).isNull();
+		assertThat(tree.match("/users/1").getData()).isEqualTo("user");
+	}
+
+	@Test(timeout = 5000)
+	public void should_add_siblings_in_constant_time_each() {
+		// given
+		tree.put("users/deep/er/still", "deep");
+
+		// when
+		for (int i = 0; i < 200000; i++) {
+			tree.put("users/u" + i, "data" + i);
+		}
+		tree.remove("users/deep/er/still");
+
+		// then
+		assertThat(tree.get("users").getChildCount()).isEqualTo(200000);
+		assertThat(tree.getMinDepth()).isEqualTo(2);
+		assertThat(tree.getMaxDepth()).isEqualTo(2);
+		assertThat(tree.match("/users/u199999").getData()).isEqualTo("data199999");
+	}
+
+	@Test
+	public void should_not_match_partially_consumed_path() {
+		// given
+		tree.put("s1/s2", "1");
+
+		// when
+		final UriTree<String> matched = tree.match("/s1/s2/s3");
+
+		// then
+		assertThat(matched).isNull();
+	}
+
+	@Test
+	public void should_apply_normalization_rules_while_matching() {
+		// given
+		final UriNormalization normalization = UriNormalization.DEFAULT
+				.withCaseFolding(true)
+				.withPercentDecoding(true)
+				.withTrailingSlash(UriNormalization.TrailingSlash.REJECT);
+		final UriTree<String> normalizingTree = new UriTree<>("root", normalization);
+		normalizingTree.put("Users/{name}", "1");
+
+		// then
+		assertThat(normalizingTree.match("/USERS/j%C3%B3zef").getData()).isEqualTo("1");
+		assertThat(normalizingTree.match("/%75sers/x").getData()).isEqualTo("1");
+		assertThat(normalizingTree.get("users/{name}").getData()).isEqualTo("1");
+		assertThat(normalizingTree.match("/users/x/")).isNull();
+	}
+
+	@Test
+	public void should_not_merge_slashes_when_disabled() {
+		// given
+		final UriTree<String> strictTree = new UriTree<>("root", UriNormalization.DEFAULT.withSlashMerging(false));
+		strictTree.put("s1/s2", "1");
+
+		// then
+		assertThat(strictTree.match("/s1/s2").getData()).isEqualTo("1");
+		assertThat(strictTree.match("/s1//s2")).isNull();
+	}
+
+	@Test
+	public void should_share_identical_subtrees() {
+		// given
+		tree.put("users/{id}/items/{itemId}", DATA);
+		tree.put("users/{id}/tags", "tags");
+		tree.put("orders/{id}/items/{itemId}", DATA);
+		tree.put("orders/{id}/tags", "tags");
+		tree.put("carts/{id}/items/{itemId}", DATA);
+		final int before = tree.countNodes();
+
+		// when
+		final int after = tree.deduplicate();
+
+		// then
+		assertThat(before).isEqualTo(15);
+		assertThat(after).isEqualTo(9);
+		assertThat(tree.match("/orders/1/items/2").getData()).isEqualTo(DATA);
+		assertThat(tree.match("/users/1/tags").getData()).isEqualTo("tags");
+		assertThat(tree.match("/carts/1/tags")).isNull();
+		assertThat(tree.get("users/{id}")).isSameAs(tree.get("orders/{id}"));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void should_not_allow_to_modify_frozen_tree() {
+		// given
+		tree.put("s1", DATA);
+		tree.freeze();
+
+		// when
+		tree.get("s1").put("s2", DATA);
+	}
+
+	@Test
+	public void should_switch_children_layout_while_growing_and_shrinking() {
+		// given
+		for (int i = 0; i < 40; i++) {
+			tree.put("s" + i, "data" + i);
+		}
+
+		// when
+		for (int i = 0; i < 37; i++) {
+			assertThat(tree.remove("s" + i)).isEqualTo("data" + i);
+		}
+
+		// then
+		assertThat(tree.getChildCount()).isEqualTo(3);
+		assertThat(tree.match("/s36")).isNull();
+		assertThat(tree.match("/s39").getData()).isEqualTo("data39");
+		assertThat(tree.get("s37").getData()).isEqualTo("data37");
+	}
+
+	@Test
+	public void should_find_all_children_of_wide_node() {
+		// given
+		for (int i = 0; i < 100; i++) {
+			tree.put("s" + i + "/{id}", "data" + i);
+		}
+
+		// then
+		for (int i = 0; i < 100; i++) {
+			assertThat(tree.match("/s" + i + "/x").getData()).isEqualTo("data" + i);
+		}
+		assertThat(tree.match("/s100/x")).isNull();
+	}
+
+	@Test
+	public void should_prune_empty_nodes_on_remove() {
+		// given
+		tree.put("s1/s2/s3", DATA);
+		tree.put("s1/{id}", DATA);
+
+		// when
+		tree.remove("s1/s2/s3");
+		tree.remove("/s1/{id}/");
+
+		// then
+		assertThat(tree.isLeaf()).isTrue();
+		assertThat(tree.remove("s1")).isNull();
+	}
+
+	@Test
+	public void should_move_hottest_children_ahead_of_table() {
+		// given
+		tree.put("a", "a");
+		tree.put("b", "b");
+		tree.put("c", "c");
+		tree.put("d/{id}", "d");
+		tree.adaptChildOrder(1, Integer.MAX_VALUE);
+		for (int i = 0; i < 60; i++) {
+			tree.match("/d/1");
+		}
+		for (int i = 0; i < 30; i++) {
+			tree.match("/c");
+		}
+		tree.match("/a");
+
+		// when
+		tree.reorderChildren();
+
+		// then
+		HotChildren<String> hot = tree.getHotChildren();
+		assertThat(hot.firstKey()).isEqualTo("d");
+		assertThat(hot.secondKey()).isEqualTo("c");
+		assertThat(tree.match("/a").getData()).isEqualTo("a");
+		assertThat(tree.match("/c").getData()).isEqualTo("c");
+		assertThat(tree.match("/d/7").getData()).isEqualTo("d");
+		assertThat(tree.match("/e")).isNull();
+	}
+
+	@Test
+	public void should_skip_hot_check_when_parameter_takes_the_traffic() {
+		// given
+		tree.put("a", "a");
+		tree.put("b", "b");
+		tree.put("{id}", "id");
+		tree.adaptChildOrder(1, Integer.MAX_VALUE);
+		for (int i = 0; i < 100; i++) {
+			tree.match("/x" + i);
+		}
+		tree.match("/b");
+
+		// when
+		tree.reorderChildren();
+
+		// then
+		assertThat(tree.getHotChildren()).isNull();
+	}
+
+	@Test
+	public void should_follow_shifting_traffic() {
+		// given
+		tree.put("a", "a");
+		tree.put("b", "b");
+		tree.put("c", "c");
+		tree.adaptChildOrder(1, 16, Runnable::run);
+
+		// when
+		for (int i = 0; i < 64; i++) {
+			tree.match("/c");
+		}
+		String before = tree.getHotChildren().firstKey();
+		for (int i = 0; i < 256; i++) {
+			tree.match("/b");
+		}
+
+		// then
+		assertThat(before).isEqualTo("c");
+		assertThat(tree.getHotChildren().firstKey()).isEqualTo("b");
+		assertThat(tree.getHotChildren().secondKey()).isNull();
+	}
+
+	@Test
+	public void should_rebuild_child_order_off_the_matching_thread() {
+		// given
+		final List<Runnable> rebuilds = new ArrayList<>();
+		tree.put("a", "a");
+		tree.put("b", "b");
+		tree.adaptChildOrder(1, 4, rebuilds::add);
+
+		// when
+		for (int i = 0; i < 8; i++) {
+			tree.match("/b");
+		}
+		final HotChildren<String> before = tree.getHotChildren();
+		rebuilds.get(0).run();
+
+		// then
+		assertThat(before).isNull();
+		assertThat(rebuilds).hasSize(1);
+		assertThat(tree.getHotChildren().firstKey()).isEqualTo("b");
+		assertThat(tree.match("/a").getData()).isEqualTo("a");
+		assertThat(tree.match("/b").getData()).isEqualTo("b");
+	}
+
+	@Test
+	public void should_drop_hot_children_on_remove() {
+		// given
+		tree.put("a", "a");
+		tree.put("b", "b");
+		tree.adaptChildOrder(1, Integer.MAX_VALUE);
+		tree.match("/b");
+		tree.reorderChildren();
+
+		// when
+		tree.remove("b");
+
+		// then
+		assertThat(tree.getHotChildren()).isNull();
+		assertThat(tree.match("/b")).isNull();
+	}
+
 }